@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.mojos;
+
+import com.viae.maven.sonar.utils.SpecialCharacterUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the branch diff of {@link SonarGitBranchDeletionSyncMojo}: half of the SONAR branches no longer exist in the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BranchDiffBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int branchCount;
+
+	private final Set<String> existingRepoBranches = new HashSet<>();
+	private final Set<String> sonarBranchNames = new HashSet<>();
+
+	@Setup
+	public void setup() {
+		for ( int i = 0; i < branchCount; i++ ) {
+			final String branchName = String.format( "feature/JIRA-%s", i );
+			if ( i % 2 == 0 ) {
+				existingRepoBranches.add( branchName );
+				existingRepoBranches.add( SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( branchName ) );
+			}
+			sonarBranchNames.add( SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( branchName ) );
+		}
+	}
+
+	@Benchmark
+	public List<String> findBranchesToDelete() {
+		return SonarGitBranchDeletionSyncMojo.findBranchesToDelete( existingRepoBranches, sonarBranchNames );
+	}
+}
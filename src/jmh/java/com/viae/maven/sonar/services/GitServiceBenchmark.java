@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.GitException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link GitService#getBranchName(Runtime)}: forking the git process ({@link GitServiceImpl})
+ * against reading the git metadata in-process ({@link FileSystemGitServiceImpl}), both on the checkout the benchmark runs in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GitServiceBenchmark {
+	private final GitService processGitService = new GitServiceImpl( new SystemStreamLog() );
+	private final GitService fileSystemGitService = new FileSystemGitServiceImpl( new SystemStreamLog() );
+
+	@Benchmark
+	public String processSpawn() throws GitException {
+		return processGitService.getBranchName( Runtime.getRuntime() );
+	}
+
+	@Benchmark
+	public String fileSystem() throws GitException {
+		return fileSystemGitService.getBranchName( Runtime.getRuntime() );
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link QualityGateEvaluator#evaluate(QualityGateDefinition, Map)}: one quality gate evaluated for many projects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityGateEvaluatorBenchmark {
+	private static final String[] OPS = { "GT", "LT", "EQ", "NE" };
+
+	@Param({ "10", "100" })
+	public int conditionCount;
+
+	@Param({ "1", "1000" })
+	public int projectCount;
+
+	private QualityGateDefinition qualityGate;
+	private List<Map<String, String>> projectMeasures;
+
+	@Setup
+	public void setup() {
+		final List<QualityGateStatus.Condition> conditions = new ArrayList<>();
+		for ( int i = 0; i < conditionCount; i++ ) {
+			conditions.add( new QualityGateStatus.Condition( "metric_" + i, OPS[i % OPS.length], null, "10", "20", null, null, null ) );
+		}
+		qualityGate = new QualityGateDefinition( "1", "benchmark", conditions );
+		projectMeasures = new ArrayList<>();
+		for ( int p = 0; p < projectCount; p++ ) {
+			final Map<String, String> measures = new HashMap<>();
+			for ( int i = 0; i < conditionCount; i++ ) {
+				measures.put( "metric_" + i, String.valueOf( ( p + i ) % 30 ) + ".5" );
+			}
+			projectMeasures.add( measures );
+		}
+	}
+
+	@Benchmark
+	public int evaluate() {
+		int errors = 0;
+		for ( final Map<String, String> measures : projectMeasures ) {
+			if ( QualityGateEvaluator.evaluate( qualityGate, measures ).isError() ) {
+				errors++;
+			}
+		}
+		return errors;
+	}
+}
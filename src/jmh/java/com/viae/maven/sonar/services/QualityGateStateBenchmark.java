@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.model.QualityGateStatus;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link SonarQualityGateServiceImpl#handleQualityGateState(QualityGateStatus)} on large condition arrays,
+ * built from the condition used in {@link SonarQualityGateResponses#CRITICAL_VIOLATIONS_TOO_HIGH}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityGateStateBenchmark {
+	private static final String CONDITION = "{\"metric\":\"critical_violations\",\"op\":\"LT\",\"period\":3,\"warning\":\"1\",\"error\":\"1\",\"actual\":\"0.0\",\"level\":\"ERROR\"}";
+
+	@Param({ "10", "100", "1000" })
+	public int conditionCount;
+
+	@Param({ "OK", "ERROR" })
+	public String level;
+
+	private final SonarQualityGateServiceImpl qualityGateService = new SonarQualityGateServiceImpl( new SystemStreamLog() );
+	private String qualityGateDetails;
+
+	@Setup
+	public void setup() {
+		final StringBuilder builder = new StringBuilder( "[{\"msr\":{\"data\":{\"level\":\"" ).append( level ).append( "\",\"conditions\":[" );
+		for ( int i = 0; i < conditionCount; i++ ) {
+			builder.append( i > 0 ? "," : "" ).append( CONDITION );
+		}
+		qualityGateDetails = builder.append( "]}}}]" ).toString();
+	}
+
+	@Benchmark
+	public Object handleQualityGateState() {
+		try {
+			qualityGateService.handleQualityGateState( QualityGateStatus.parse( qualityGateDetails ) );
+			return null;
+		}
+		catch ( final SonarQualityException e ) {
+			return e;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for {@link JsonUtil} (json-simple) against {@link JsonPath} (streaming) on quality gate responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+	private static final JsonPath LEVEL = JsonPath.compile( "msr.data.level" );
+	private static final JsonPath CONDITIONS = JsonPath.compile( "msr.data.conditions" );
+
+	@Param({ "10", "100", "1000" })
+	public int conditionCount;
+
+	private String qualityGateDetails;
+
+	@Setup
+	public void setup() {
+		qualityGateDetails = qualityGateDetails( conditionCount );
+	}
+
+	static String qualityGateDetails( final int conditionCount ) {
+		final StringBuilder builder = new StringBuilder( "[{\"id\":20035,\"key\":\"groupId:artifactId:master\",\"msr\":[{\"key\":\"quality_gate_details\",\"data\":" );
+		builder.append( "{\"level\":\"ERROR\",\"conditions\":[" );
+		for ( int i = 0; i < conditionCount; i++ ) {
+			if ( i > 0 ) {
+				builder.append( ',' );
+			}
+			builder.append( "{\"metric\":\"metric_" ).append( i )
+			       .append( "\",\"op\":\"LT\",\"period\":3,\"warning\":\"1\",\"error\":\"1\",\"actual\":\"0.0\",\"level\":\"" )
+			       .append( i == conditionCount - 1 ? "ERROR" : "OK" ).append( "\"}" );
+		}
+		return builder.append( "]}}]}]" ).toString();
+	}
+
+	@Benchmark
+	public JSONObject jsonUtilParse() throws SonarQualityException {
+		return JsonUtil.parse( qualityGateDetails );
+	}
+
+	@Benchmark
+	public JSONArray jsonUtilParseArray() throws SonarQualityException {
+		return JsonUtil.parseArray( qualityGateDetails );
+	}
+
+	@Benchmark
+	public String jsonUtilLevelViaGetOnMainLevel() throws SonarQualityException {
+		// the msr > data > level lookup as done before JsonPath: every step re-parses the nested json
+		final String msr = toStringValue( JsonUtil.parse( qualityGateDetails ).get( "msr" ) );
+		final String data = toStringValue( JsonUtil.parse( msr ).get( "data" ) );
+		return toStringValue( JsonUtil.parse( data ).get( "level" ) );
+	}
+
+	@Benchmark
+	public String jsonUtilGetIdOnMainLevel() throws SonarQualityException {
+		return JsonUtil.getIdOnMainLevel( qualityGateDetails );
+	}
+
+	@Benchmark
+	public String jsonPathLevel() throws SonarQualityException {
+		return LEVEL.read( qualityGateDetails );
+	}
+
+	@Benchmark
+	public List<String> jsonPathConditions() throws SonarQualityException {
+		return CONDITIONS.readArray( qualityGateDetails );
+	}
+
+	private static String toStringValue( final Object value ) {
+		return value != null ? value.toString() : null;
+	}
+}
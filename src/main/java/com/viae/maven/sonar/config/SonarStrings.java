@@ -11,18 +11,51 @@ public class SonarStrings {
 	public static final String SERVER = "sonar.host.url";
 	public static final String PROJECT_KEY = "sonar.projectKey"; // TODO compose out of maven group and artifact id
 	public static final String BRANCH = "sonar.branch";
+	public static final String PROJECT_KEYS = "sonar.projectKeys";
+	public static final String BRANCHES = "sonar.branches";
 	public static final String LOGIN = "sonar.login";
 	public static final String PASSWORD = "sonar.password";
 	public static final String REPO_LOGIN = "repo.login";
 	public static final String REPO_PASSWORD = "repo.password";
 	public static final String QUALITY_GATE = "sonar.qualitygate";
 	public static final String REPO_CONFIGURATION = "sonar.repo-configuration";
+	public static final String POLL_INITIAL_INTERVAL = "sonar.poll.initial-interval";
+	public static final String POLL_MAX_INTERVAL = "sonar.poll.max-interval";
+	public static final String POLL_MULTIPLIER = "sonar.poll.multiplier";
+	public static final String POLL_JITTER = "sonar.poll.jitter";
+	public static final String POLL_TIMEOUT = "sonar.poll.timeout";
+	public static final String COMPLETION_MODE = "sonar.completion-mode";
+	public static final String COMPLETION_MODE_TIMESTAMP = "timestamp";
+	public static final String COMPLETION_MODE_CE_TASK = "ce-task";
+	public static final String REPORT_TASK_FILE = "sonar.report-task-file";
+	public static final String WEBHOOK_PORT = "sonar.webhook.port";
+	public static final String WEBHOOK_PATH = "sonar.webhook.path";
+	public static final String WEBHOOK_ADDRESS = "sonar.webhook.address";
+	public static final String WEBHOOK_SECRET = "sonar.webhook.secret";
+	public static final String PROJECT_READY_TIMEOUT = "sonar.project-ready.timeout";
+	public static final String CACHE_PERSISTENT = "sonar.cache.persistent";
+	public static final String CACHE_DIRECTORY = "sonar.cache.directory";
+	public static final String CACHE_TTL = "sonar.cache.ttl";
+	public static final String VALIDATE_REACTOR = "sonar.validate.reactor";
+	public static final String VALIDATE_PARALLELISM = "sonar.validate.parallelism";
+	public static final String VALIDATE_BULK = "sonar.validate.bulk";
+	public static final String SYNC_PARALLELISM = "sonar.sync.parallelism";
+	public static final String SYNC_MAX_CALLS_PER_HOST = "sonar.sync.max-calls-per-host";
+	public static final String SYNC_PAGE_SIZE = "sonar.sync.page-size";
+	public static final String METRICS_EXPORT = "sonar.metrics.export";
+	public static final String METRICS_DIRECTORY = "sonar.metrics.directory";
+	public static final String LOG_PAYLOAD_SIZE = "sonar.log.payload-size";
+	public static final String RETRY_MAX_RETRIES = "sonar.retry.max-retries";
+	public static final String RETRY_INTERVAL = "sonar.retry.interval";
+	public static final String RATE_LIMIT_REQUESTS_PER_SECOND = "sonar.rate-limit.requests-per-second";
+	public static final String RATE_LIMIT_BURST = "sonar.rate-limit.burst";
 	public static final String LOG_PREFIX = "VIAE log:";
 	public static final String MOJO_NAME_SET_GIT_BRANCH = "set-git-branch";
 	public static final String MOJO_NAME_SYNC_GIT_REPO = "sync-git-branches";
 	public static final String MOJO_NAME_SET_EXECUTION_START = "set-sonar-execution-start";
 	public static final String MOJO_NAME_LINK_QUALITY_GATE = "link-project-to-qualitygate";
 	public static final String MOJO_NAME_VALIDATE_QUALITY_GATE = "validate-qualitygate";
+	public static final String MOJO_NAME_VALIDATE_QUALITY_GATES = "validate-qualitygates";
 	private SonarStrings() {
 	}
 }
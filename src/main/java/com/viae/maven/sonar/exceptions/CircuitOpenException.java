@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.exceptions;
+
+/**
+ * Exception that will be thrown when a call is refused because the circuit breaker of its server is open (i.e. the server keeps failing).
+ * <p>
+ * It is unchecked, like the HTTP exceptions of the SONAR client it takes the place of.
+ */
+public class CircuitOpenException extends RuntimeException {
+	private final long retryInMillis;
+
+	/**
+	 * @param method,        the HTTP method of the refused call.
+	 * @param url,           the url of the refused call.
+	 * @param retryInMillis, the time left before the circuit breaker lets a trial call through.
+	 */
+	public CircuitOpenException( final String method, final String url, final long retryInMillis ) {
+		super( String.format( "%s %s not sent: the server keeps failing, the next call is allowed in %s ms", method, url, retryInMillis ) );
+		this.retryInMillis = retryInMillis;
+	}
+
+	public long retryInMillis() {
+		return retryInMillis;
+	}
+}
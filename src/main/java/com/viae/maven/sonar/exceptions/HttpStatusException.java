@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.exceptions;
+
+/**
+ * Exception that will be thrown when a server answers an HTTP call with a non successful status code.
+ */
+public class HttpStatusException extends SonarQualityException {
+	private final int status;
+	private final long retryAfterSeconds;
+
+	/**
+	 * @param method,            the HTTP method of the call.
+	 * @param url,               the called url.
+	 * @param status,            the status code the server answered with.
+	 * @param body,              the body the server answered with.
+	 * @param retryAfterSeconds, the Retry-After header value in seconds, -1 when absent.
+	 */
+	public HttpStatusException( final String method, final String url, final int status, final String body, final long retryAfterSeconds ) {
+		super( String.format( "Failed : HTTP error code : %s for %s %s ;\n%s", status, method, url, body ) );
+		this.status = status;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public int status() {
+		return status;
+	}
+
+	/**
+	 * @return the number of seconds the server asked to wait before a retry, -1 when the server didn't say.
+	 */
+	public long retryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
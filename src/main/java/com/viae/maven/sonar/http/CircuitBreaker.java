@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import org.apache.commons.lang3.Validate;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one server: after a number of consecutive server errors (i.e. 5xx) it opens and refuses all calls for a while,
+ * so an overloaded server gets room to recover instead of more load.
+ * Once that time has passed, one trial call is let through (i.e. half open): a success closes the breaker, a failure opens it again.
+ * <p>
+ * There is one breaker per host, shared by the clients of {@link SonarClientRegistry} and the raw HTTP calls (see {@link HttpTransport}) to it,
+ * so the breaker of a server sheds load for all goals, threads and credentials of a maven session.
+ */
+public class CircuitBreaker {
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	public static final long DEFAULT_OPEN_DURATION = TimeUnit.SECONDS.toMillis( 30 );
+	private static final Map<SonarClient, CircuitBreaker> SESSION_BREAKERS = Collections.synchronizedMap( new WeakHashMap<>() );
+	private static final Map<String, CircuitBreaker> SESSION_HOST_BREAKERS = new ConcurrentHashMap<>();
+
+	private final int failureThreshold;
+	private final long openDuration;
+	private final LongSupplier clock;
+	private int consecutiveFailures;
+	private long openedAt = -1;
+	private boolean trialInFlight;
+
+	/**
+	 * @param failureThreshold, the number of consecutive server errors that opens the breaker, at least 1.
+	 * @param openDuration,     the time in milliseconds the breaker refuses calls once opened, at least 0.
+	 * @param clock,            the clock that returns the current time in milliseconds, can't be null.
+	 */
+	public CircuitBreaker( final int failureThreshold, final long openDuration, final LongSupplier clock ) {
+		Validate.isTrue( failureThreshold > 0, "The given failure threshold must be at least 1" );
+		Validate.isTrue( openDuration >= 0, "The given open duration can't be negative" );
+		Validate.notNull( clock, "The given clock can't be null" );
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param client, the SONAR client, can't be null.
+	 * @return the breaker of the server of the given client (see {@link #forHost(String)}) when it comes from the {@link SonarClientRegistry},
+	 * otherwise the breaker shared by all users of the given client.
+	 */
+	public static CircuitBreaker forClient( final SonarClient client ) {
+		Validate.notNull( client, "The given Sonar client can't be null" );
+		final String server = SonarClientRegistry.server( client );
+		if ( server != null ) {
+			return forHost( server );
+		}
+		synchronized ( SESSION_BREAKERS ) {
+			return SESSION_BREAKERS.computeIfAbsent( client, key -> new CircuitBreaker( DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION, System::currentTimeMillis ) );
+		}
+	}
+
+	/**
+	 * @param url, a url on the server (e.g. of SONAR or a git repository), can't be blank.
+	 * @return the breaker shared by all calls to the host of the given url.
+	 */
+	public static CircuitBreaker forHost( final String url ) {
+		return SESSION_HOST_BREAKERS.computeIfAbsent( HostConcurrencyLimiter.host( url ),
+		                                              key -> new CircuitBreaker( DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION, System::currentTimeMillis ) );
+	}
+
+	/**
+	 * @return 0 when a call can be sent now, otherwise the number of milliseconds before the next (trial) call is allowed.
+	 */
+	public synchronized long acquire() {
+		if ( openedAt < 0 ) {
+			return 0;
+		}
+		final long remaining = openedAt + openDuration - clock.getAsLong();
+		if ( remaining > 0 ) {
+			return remaining;
+		}
+		if ( trialInFlight ) {
+			// only one trial call at a time, the others wait for its outcome
+			return 1;
+		}
+		trialInFlight = true;
+		return 0;
+	}
+
+	/**
+	 * A call got an answer that is no server error: the server is healthy again.
+	 */
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		openedAt = -1;
+		trialInFlight = false;
+	}
+
+	/**
+	 * A call got a server error.
+	 *
+	 * @return true when this failure opened the breaker.
+	 */
+	public synchronized boolean recordFailure() {
+		consecutiveFailures++;
+		final boolean open = openedAt >= 0;
+		if ( trialInFlight || !open && consecutiveFailures >= failureThreshold ) {
+			openedAt = clock.getAsLong();
+			trialInFlight = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A call ended without telling anything about the health of the server (e.g. an I/O error before it got an answer).
+	 */
+	public synchronized void recordIgnored() {
+		trialInFlight = false;
+	}
+
+	public synchronized boolean isOpen() {
+		return openedAt >= 0;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.apache.commons.lang3.Validate;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of calls that run at the same time against one host, whatever the size of the thread pool that issues them.
+ */
+public class HostConcurrencyLimiter {
+	private final int maxCallsPerHost;
+	private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxCallsPerHost, the number of calls that can run concurrently against one host, at least 1.
+	 */
+	public HostConcurrencyLimiter( final int maxCallsPerHost ) {
+		Validate.isTrue( maxCallsPerHost > 0, "The given max calls per host must be at least 1" );
+		this.maxCallsPerHost = maxCallsPerHost;
+	}
+
+	/**
+	 * Run the given call as soon as the host of the given url has a free slot.
+	 *
+	 * @param url,  the url that will be called, can't be blank.
+	 * @param call, the call to run, can't be null.
+	 * @return the result of the call.
+	 * @throws SonarQualityException will be thrown when the call fails or the wait for a slot is interrupted.
+	 */
+	public <T> T call( final String url, final HttpCall<T> call ) throws SonarQualityException {
+		Validate.notNull( call, "The given call can't be null" );
+		final Semaphore semaphore = semaphores.computeIfAbsent( host( url ), host -> new Semaphore( maxCallsPerHost, true ) );
+		try {
+			semaphore.acquire();
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new SonarQualityException( String.format( "interrupted while waiting to call %s", url ), e );
+		}
+		try {
+			return call.call();
+		}
+		finally {
+			semaphore.release();
+		}
+	}
+
+	static String host( final String url ) {
+		Validate.notBlank( url, "The given url can't be blank" );
+		try {
+			final URL parsed = new URL( url );
+			return String.format( "%s:%s", parsed.getHost(), parsed.getPort() );
+		}
+		catch ( final MalformedURLException e ) {
+			return url;
+		}
+	}
+
+	/**
+	 * A call against a remote host.
+	 */
+	@FunctionalInterface
+	public interface HttpCall<T> {
+		T call() throws SonarQualityException;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The way out for every HTTP call of the plugin to one server: a call is refused while the {@link CircuitBreaker} of the server is open,
+ * retried by the {@link RetryPolicy} when the server is unavailable, held back by the {@link RateLimiter} of the host (once per attempt)
+ * and measured per endpoint in {@link PluginMetrics#HTTP_CLIENT_REQUESTS}.
+ */
+public class HttpGateway {
+	private final Log log;
+	private final RetryPolicy retryPolicy;
+	private final CircuitBreaker breaker;
+	private final RateLimiter rateLimiter;
+
+	/**
+	 * @param log,         the logging service, can't be null.
+	 * @param retryPolicy, the retry policy, can't be null.
+	 * @param breaker,     the circuit breaker of the server, can't be null.
+	 * @param rateLimiter, the rate limiter of the host of the server, can't be null.
+	 */
+	public HttpGateway( final Log log, final RetryPolicy retryPolicy, final CircuitBreaker breaker, final RateLimiter rateLimiter ) {
+		Validate.notNull( log, "The given log can't be null" );
+		Validate.notNull( retryPolicy, "The given retry policy can't be null" );
+		Validate.notNull( breaker, "The given circuit breaker can't be null" );
+		Validate.notNull( rateLimiter, "The given rate limiter can't be null" );
+		this.log = log;
+		this.retryPolicy = retryPolicy;
+		this.breaker = breaker;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * @param method, the HTTP method of the call.
+	 * @param url,    the (relative) url of the call.
+	 * @param call,   the call.
+	 * @return the result of the call.
+	 * @throws E the error of the last attempt.
+	 */
+	public <T, E extends Exception> T call( final String method, final String url, final PluginMetrics.TimedCall<T, E> call ) throws E {
+		return call( method, url, RetryPolicy.NO_LISTENER, call );
+	}
+
+	/**
+	 * @param method,   the HTTP method of the call.
+	 * @param url,      the (relative) url of the call.
+	 * @param listener, the listener that is told about every retry of the call, can't be null.
+	 * @param call,     the call.
+	 * @return the result of the call.
+	 * @throws E the error of the last attempt.
+	 */
+	public <T, E extends Exception> T call( final String method, final String url, final RetryPolicy.RetryListener listener,
+	                                        final PluginMetrics.TimedCall<T, E> call ) throws E {
+		return retryPolicy.call( breaker, method, url, listener, () -> {
+			rateLimiter.acquire( log, method, url );
+			return PluginMetrics.timeHttpCall( method, url, call );
+		} );
+	}
+}
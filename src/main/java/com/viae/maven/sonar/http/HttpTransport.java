@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP transport for the raw (i.e. non {@link org.sonar.wsclient.SonarClient}) calls, shared per set of credentials within the maven session.
+ * <p>
+ * Connections are kept alive: every response body is read completely and closed (never disconnected),
+ * so the JDK hands the connection back to its keep-alive pool and the next call to the same host skips the TCP/TLS handshake.
+ * Responses are requested gzip compressed. Send the calls through an {@link HttpGateway} to have them measured, retried and rate limited.
+ */
+public class HttpTransport {
+	public static final int CONNECT_TIMEOUT = 30000;
+	public static final int READ_TIMEOUT = 60000;
+	private static final Map<String, HttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+
+	private final String authorization;
+
+	HttpTransport( final String username, final String password ) {
+		final String userpass = String.format( "%s:%s", StringUtils.defaultString( username ), StringUtils.defaultString( password ) );
+		this.authorization = "Basic " + Base64.getEncoder().encodeToString( userpass.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * @param username, the user to authenticate with.
+	 * @param password, the password of the user.
+	 * @return the transport shared by all goals of this maven session for the given credentials.
+	 */
+	public static HttpTransport shared( final String username, final String password ) {
+		return TRANSPORTS.computeIfAbsent( SonarClientRegistry.key( "", username, password ), key -> new HttpTransport( username, password ) );
+	}
+
+	public String get( final String url ) throws SonarQualityException {
+		return execute( "GET", url );
+	}
+
+	public String delete( final String url ) throws SonarQualityException {
+		return execute( "DELETE", url );
+	}
+
+	private String execute( final String method, final String url ) throws SonarQualityException {
+		Validate.notBlank( url, "The given url can't be blank" );
+		try {
+			final HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection();
+			connection.setRequestMethod( method );
+			connection.setConnectTimeout( CONNECT_TIMEOUT );
+			connection.setReadTimeout( READ_TIMEOUT );
+			connection.setRequestProperty( "Accept", "application/json" );
+			connection.setRequestProperty( "Accept-Encoding", "gzip" );
+			connection.setRequestProperty( "Authorization", authorization );
+
+			final int status = connection.getResponseCode();
+			final InputStream inputStream = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+			final String body = read( inputStream, connection.getContentEncoding() );
+			if ( status < HttpURLConnection.HTTP_OK || status >= HttpURLConnection.HTTP_MULT_CHOICE ) {
+				throw new HttpStatusException( method, url, status, body, retryAfter( connection.getHeaderField( "Retry-After" ) ) );
+			}
+			return body;
+		}
+		catch ( final IOException e ) {
+			throw new SonarQualityException( String.format( "%s %s failed", method, url ), e );
+		}
+	}
+
+	static long retryAfter( final String retryAfter ) {
+		try {
+			return StringUtils.isNotBlank( retryAfter ) ? Math.max( 0, Long.parseLong( retryAfter.trim() ) ) : -1;
+		}
+		catch ( final NumberFormatException e ) {
+			// an HTTP date is allowed as well, but SONAR and Bitbucket send seconds
+			return -1;
+		}
+	}
+
+	private String read( final InputStream inputStream, final String contentEncoding ) throws IOException {
+		if ( inputStream == null ) {
+			return "";
+		}
+		try ( final InputStream in = "gzip".equalsIgnoreCase( contentEncoding ) ? new GZIPInputStream( inputStream ) : inputStream ) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ( ( read = in.read( buffer ) ) != -1 ) {
+				outputStream.write( buffer, 0, read );
+			}
+			return new String( outputStream.toByteArray(), StandardCharsets.UTF_8 );
+		}
+	}
+}
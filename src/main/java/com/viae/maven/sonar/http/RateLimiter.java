@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.utils.LogUtil;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that caps the rate of the calls to one host: the bucket holds at most burst tokens, refills at the given rate
+ * and every call takes one token, waiting until there is one.
+ * <p>
+ * Calls that have to wait reserve their token up front, so they are let through in the order they arrived at the configured rate.
+ * There is one bucket per host, shared by all goals and threads of a maven session (see {@link #forHost(String, double, int)}).
+ */
+public class RateLimiter {
+	public static final double DEFAULT_REQUESTS_PER_SECOND = 20;
+	public static final int DEFAULT_BURST = 40;
+	public static final RateLimiter UNLIMITED = new RateLimiter( "unlimited", 0, 1, System::nanoTime );
+	private static final long SLOW_WAIT = TimeUnit.SECONDS.toNanos( 1 );
+	private static final Map<String, RateLimiter> SESSION_LIMITERS = new ConcurrentHashMap<>();
+
+	private final String host;
+	private final LongSupplier clock;
+	private double requestsPerSecond;
+	private int burst;
+	private double tokens;
+	private long refilledAt;
+
+	/**
+	 * @param host,              the host the limiter is for, can't be blank.
+	 * @param requestsPerSecond, the number of calls per second, 0 for no limit.
+	 * @param burst,             the number of calls that can be sent at once after a quiet period, at least 1.
+	 * @param clock,             the clock that returns the current time in nanoseconds, can't be null.
+	 */
+	public RateLimiter( final String host, final double requestsPerSecond, final int burst, final LongSupplier clock ) {
+		Validate.notBlank( host, "The given host can't be blank" );
+		Validate.notNull( clock, "The given clock can't be null" );
+		this.host = host;
+		this.clock = clock;
+		this.refilledAt = clock.getAsLong();
+		configure( requestsPerSecond, burst );
+		this.tokens = burst;
+	}
+
+	/**
+	 * @param url,               a url on the host, can't be blank.
+	 * @param requestsPerSecond, the number of calls per second, 0 for no limit.
+	 * @param burst,             the number of calls that can be sent at once after a quiet period, at least 1.
+	 * @return the limiter shared by all calls to the host of the given url, set to the given rate and burst.
+	 */
+	public static RateLimiter forHost( final String url, final double requestsPerSecond, final int burst ) {
+		final RateLimiter limiter = SESSION_LIMITERS.computeIfAbsent( HostConcurrencyLimiter.host( url ),
+		                                                              host -> new RateLimiter( host, requestsPerSecond, burst, System::nanoTime ) );
+		limiter.configure( requestsPerSecond, burst );
+		return limiter;
+	}
+
+	/**
+	 * Change the rate and burst, the tokens already in the bucket are kept up to the new burst.
+	 */
+	synchronized void configure( final double requestsPerSecond, final int burst ) {
+		Validate.isTrue( requestsPerSecond >= 0, "The given requests per second can't be negative" );
+		Validate.isTrue( burst > 0, "The given burst must be at least 1" );
+		refill();
+		this.requestsPerSecond = requestsPerSecond;
+		this.burst = burst;
+		this.tokens = Math.min( tokens, burst );
+	}
+
+	/**
+	 * Take a token, the token is reserved also when it still has to be refilled.
+	 *
+	 * @return the number of nanoseconds to wait before the call can be sent, 0 when it can be sent now.
+	 */
+	public synchronized long reserve() {
+		if ( requestsPerSecond <= 0 ) {
+			return 0;
+		}
+		refill();
+		tokens -= 1;
+		return tokens >= 0 ? 0 : (long) Math.ceil( -tokens / requestsPerSecond * TimeUnit.SECONDS.toNanos( 1 ) );
+	}
+
+	/**
+	 * Wait until a call to the host can be sent. The time held back is recorded in the {@link PluginMetrics#RATE_LIMITER_WAIT} timer
+	 * and the goal timings, and logged (at info level once it takes a second or more).
+	 *
+	 * @param log,    the logging service, can't be null.
+	 * @param method, the HTTP method of the call.
+	 * @param url,    the (relative) url of the call.
+	 * @return the number of nanoseconds the call was held back.
+	 */
+	public long acquire( final Log log, final String method, final String url ) {
+		final long wait = reserve();
+		if ( wait <= 0 ) {
+			return 0;
+		}
+		Validate.notNull( log, "The given log can't be null" );
+		final long start = System.nanoTime();
+		try {
+			TimeUnit.NANOSECONDS.sleep( wait );
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		finally {
+			final long waited = System.nanoTime() - start;
+			PluginMetrics.recordTime( PluginMetrics.RATE_LIMITER_WAIT, waited, "host", host );
+			GoalTimings.record( GoalTimings.WAIT, "rate-limit", waited );
+		}
+		final String message = String.format( "%s %s %s held back %s ms by the rate limit of %s (%s requests/second)",
+		                                      SonarStrings.LOG_PREFIX, method, url, TimeUnit.NANOSECONDS.toMillis( wait ), host, getRequestsPerSecond() );
+		if ( wait >= SLOW_WAIT ) {
+			log.info( message );
+		}
+		else {
+			LogUtil.debug( log, () -> message );
+		}
+		return wait;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public synchronized double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	public synchronized int getBurst() {
+		return burst;
+	}
+
+	private void refill() {
+		final long now = clock.getAsLong();
+		if ( requestsPerSecond > 0 ) {
+			tokens = Math.min( burst, tokens + ( now - refilledAt ) * requestsPerSecond / TimeUnit.SECONDS.toNanos( 1 ) );
+		}
+		refilledAt = now;
+	}
+}
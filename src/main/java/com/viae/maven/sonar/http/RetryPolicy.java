@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.exceptions.CircuitOpenException;
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.apache.commons.lang3.Validate;
+import org.sonar.wsclient.base.HttpException;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries of the calls to a server that answers it is (temporarily) unavailable, guarded by the {@link CircuitBreaker} of that server.
+ * <p>
+ * A GET is retried on 429, 502, 503 and 504. Other methods are only retried on 429 and 503, as only those tell the call wasn't handled.
+ * The backoff doubles per attempt, unless the server sends a Retry-After header (only {@link HttpStatusException} carries it,
+ * the SONAR client doesn't expose the headers of a failed call). Instances are immutable and can be shared between threads.
+ */
+public class RetryPolicy {
+	public static final int DEFAULT_MAX_RETRIES = 3;
+	public static final long DEFAULT_RETRY_INTERVAL = 500;
+	public static final long MAX_RETRY_INTERVAL = TimeUnit.SECONDS.toMillis( 30 );
+	public static final RetryPolicy NO_RETRIES = new RetryPolicy( 0, DEFAULT_RETRY_INTERVAL );
+	public static final RetryListener NO_LISTENER = ( status, backoff ) -> {
+	};
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	private final int maxRetries;
+	private final long retryInterval;
+
+	public RetryPolicy() {
+		this( DEFAULT_MAX_RETRIES, DEFAULT_RETRY_INTERVAL );
+	}
+
+	/**
+	 * @param maxRetries,    the number of times a call is retried, at least 0.
+	 * @param retryInterval, the backoff in milliseconds before the first retry, at least 0.
+	 */
+	public RetryPolicy( final int maxRetries, final long retryInterval ) {
+		Validate.isTrue( maxRetries >= 0, "The given max retries can't be negative" );
+		Validate.isTrue( retryInterval >= 0, "The given retry interval can't be negative" );
+		this.maxRetries = maxRetries;
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Run the given call, unless the circuit breaker is open, and run it again after a backoff when the server is unavailable.
+	 * Every answer is reported to the circuit breaker.
+	 *
+	 * @param breaker, the circuit breaker of the called server, can't be null.
+	 * @param method,  the HTTP method of the call.
+	 * @param url,     the (relative) url of the call.
+	 * @param call,    the call.
+	 * @return the result of the call.
+	 * @throws E                   the error of the last attempt.
+	 * @throws CircuitOpenException will be thrown when the circuit breaker refuses the call.
+	 */
+	public <T, E extends Exception> T call( final CircuitBreaker breaker, final String method, final String url, final PluginMetrics.TimedCall<T, E> call ) throws E {
+		return call( breaker, method, url, NO_LISTENER, call );
+	}
+
+	/**
+	 * Same as {@link #call(CircuitBreaker, String, String, PluginMetrics.TimedCall)}, the given listener is told about every retry before its backoff.
+	 *
+	 * @param listener, the listener of the retries, can't be null.
+	 */
+	public <T, E extends Exception> T call( final CircuitBreaker breaker, final String method, final String url, final RetryListener listener,
+	                                        final PluginMetrics.TimedCall<T, E> call ) throws E {
+		Validate.notNull( breaker, "The given circuit breaker can't be null" );
+		Validate.notNull( listener, "The given retry listener can't be null" );
+		for ( int attempt = 0; ; attempt++ ) {
+			final long refusedFor = breaker.acquire();
+			if ( refusedFor > 0 ) {
+				PluginMetrics.increment( PluginMetrics.CIRCUIT_BREAKER_REJECTED );
+				throw new CircuitOpenException( method, url, refusedFor );
+			}
+			try {
+				final T result = call.call();
+				breaker.recordSuccess();
+				return result;
+			}
+			catch ( final Exception e ) {
+				final int status = statusOf( e );
+				if ( status < 0 ) {
+					breaker.recordIgnored();
+					throw e;
+				}
+				if ( status < HttpURLConnection.HTTP_INTERNAL_ERROR ) {
+					breaker.recordSuccess();
+				}
+				else if ( breaker.recordFailure() ) {
+					PluginMetrics.increment( PluginMetrics.CIRCUIT_BREAKER_OPENED );
+				}
+				if ( attempt >= maxRetries || !isRetryable( method, status ) ) {
+					throw e;
+				}
+				PluginMetrics.increment( PluginMetrics.HTTP_CLIENT_RETRIES );
+				final long backoff = backoff( attempt, e instanceof HttpStatusException ? ( (HttpStatusException) e ).retryAfterSeconds() : -1 );
+				listener.retrying( status, backoff );
+				await( backoff );
+			}
+		}
+	}
+
+	/**
+	 * @return true when a call with the given method can be sent again after the given status.
+	 */
+	public static boolean isRetryable( final String method, final int status ) {
+		if ( status == HTTP_TOO_MANY_REQUESTS || status == HttpURLConnection.HTTP_UNAVAILABLE ) {
+			return true;
+		}
+		return "GET".equalsIgnoreCase( method ) && ( status == HttpURLConnection.HTTP_BAD_GATEWAY || status == HttpURLConnection.HTTP_GATEWAY_TIMEOUT );
+	}
+
+	/**
+	 * @param attempt,           the number of the failed attempt, starting at 0.
+	 * @param retryAfterSeconds, the Retry-After header value in seconds, -1 when absent.
+	 * @return the milliseconds to wait before the next attempt, at most {@link #MAX_RETRY_INTERVAL}.
+	 */
+	public long backoff( final int attempt, final long retryAfterSeconds ) {
+		final long interval = retryAfterSeconds >= 0 ? TimeUnit.SECONDS.toMillis( retryAfterSeconds ) : retryInterval << Math.min( attempt, 16 );
+		return Math.min( interval, MAX_RETRY_INTERVAL );
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public long getRetryInterval() {
+		return retryInterval;
+	}
+
+	/**
+	 * Listener of the retries of a call (e.g. to report the entries that had to be retried).
+	 */
+	@FunctionalInterface
+	public interface RetryListener {
+		/**
+		 * @param status,  the HTTP status of the failed attempt.
+		 * @param backoff, the milliseconds waited before the next attempt.
+		 */
+		void retrying( int status, long backoff );
+	}
+
+	private static int statusOf( final Exception e ) {
+		if ( e instanceof HttpException ) {
+			return ( (HttpException) e ).status();
+		}
+		if ( e instanceof HttpStatusException ) {
+			return ( (HttpStatusException) e ).status();
+		}
+		return -1;
+	}
+
+	private static void await( final long millis ) {
+		final long start = System.nanoTime();
+		try {
+			Thread.sleep( millis );
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		finally {
+			GoalTimings.record( GoalTimings.WAIT, "retry", System.nanoTime() - start );
+		}
+	}
+}
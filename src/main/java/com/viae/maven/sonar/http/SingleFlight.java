@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.apache.commons.lang3.Validate;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call is in flight, the same call from other threads waits for it and shares its response
+ * (or its error) instead of sending its own request.
+ * <p>
+ * Only calls that overlap in time are coalesced, nothing is cached: a call that starts after the previous one ended is sent again,
+ * so polling still sees fresh data. There is one instance per {@link SonarClient}, so the parallel goals and modules
+ * of a maven session (i.e. mvn -T) share their in-flight calls to the same server.
+ */
+public class SingleFlight {
+	private static final Map<SonarClient, SingleFlight> SESSION_FLIGHTS = Collections.synchronizedMap( new WeakHashMap<>() );
+
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * @param client, the SONAR client, can't be null.
+	 * @return the instance shared by all users of the given client.
+	 */
+	public static SingleFlight forClient( final SonarClient client ) {
+		Validate.notNull( client, "The given Sonar client can't be null" );
+		synchronized ( SESSION_FLIGHTS ) {
+			return SESSION_FLIGHTS.computeIfAbsent( client, key -> new SingleFlight() );
+		}
+	}
+
+	/**
+	 * Run the given call, unless the same call is in flight already: then wait for that one.
+	 *
+	 * @param key,  what identifies the call (e.g. the url with its parameters), can't be null.
+	 * @param call, the call, it can only throw unchecked exceptions.
+	 * @return the response of the call, shared with the coalesced callers.
+	 */
+	public String call( final String key, final Supplier<String> call ) {
+		Validate.notNull( key, "The given key can't be null" );
+		final CompletableFuture<String> flight = new CompletableFuture<>();
+		final CompletableFuture<String> leader = inFlight.putIfAbsent( key, flight );
+		if ( leader != null ) {
+			PluginMetrics.increment( PluginMetrics.HTTP_CLIENT_COALESCED );
+			return await( leader );
+		}
+		try {
+			final String response = call.get();
+			flight.complete( response );
+			return response;
+		}
+		catch ( final RuntimeException | Error e ) {
+			flight.completeExceptionally( e );
+			throw e;
+		}
+		finally {
+			inFlight.remove( key, flight );
+		}
+	}
+
+	/**
+	 * @return the number of distinct calls in flight.
+	 */
+	public int inFlight() {
+		return inFlight.size();
+	}
+
+	private static String await( final CompletableFuture<String> leader ) {
+		try {
+			return leader.join();
+		}
+		catch ( final CompletionException e ) {
+			// hand the error of the call over as such, as the callers handle e.g. a 404 of the SONAR client
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			if ( e.getCause() instanceof Error ) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
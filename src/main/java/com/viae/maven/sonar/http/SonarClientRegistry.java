@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.utils.HashUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link SonarClient}s, shared by all goals of a maven session (i.e. the plugin class realm) per server and credentials.
+ * <p>
+ * The SONAR client runs on HttpURLConnection, so reusing it keeps its connections in the JDK keep-alive pool between goals.
+ */
+public final class SonarClientRegistry {
+	private static final Map<String, SonarClient> CLIENTS = new ConcurrentHashMap<>();
+	private static final Map<SonarClient, String> SERVERS = new ConcurrentHashMap<>();
+
+	private SonarClientRegistry() {
+	}
+
+	/**
+	 * @param server,   the root url of the SONAR server, can't be blank.
+	 * @param username, the user to log in with.
+	 * @param password, the password of the user.
+	 * @return the client shared for the given server and credentials.
+	 */
+	public static SonarClient get( final String server, final String username, final String password ) {
+		Validate.notBlank( server, "The given sonar server can't be blank" );
+		return GoalTimings.time( GoalTimings.CLIENT_SETUP, "sonar", () -> CLIENTS.computeIfAbsent( key( server, username, password ), key -> newClient( server, username, password ) ) );
+	}
+
+	/**
+	 * @param client, the SONAR client.
+	 * @return the root url of the server of the given client, null when the client doesn't come from this registry.
+	 */
+	public static String server( final SonarClient client ) {
+		return client != null ? SERVERS.get( client ) : null;
+	}
+
+	private static SonarClient newClient( final String server, final String username, final String password ) {
+		final SonarClient client = SonarClient.builder()
+		                                      .url( server )
+		                                      .login( username )
+		                                      .password( password )
+		                                      .build();
+		SERVERS.put( client, server );
+		return client;
+	}
+
+	static String key( final String server, final String username, final String password ) {
+		// never keep the plain password in the key
+		return String.format( "%s|%s|%s", StringUtils.removeEnd( StringUtils.defaultString( server ), "/" ), StringUtils.defaultString( username ),
+		                      HashUtil.sha1Hex( password ) );
+	}
+}
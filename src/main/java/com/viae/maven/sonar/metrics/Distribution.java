@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.metrics;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free distribution of recorded values (e.g. durations or poll counts): count, sum, max and counts per bucket.
+ */
+public final class Distribution {
+	private final long[] bounds;
+	private final LongAdder[] buckets;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator( Long::max, 0 );
+
+	/**
+	 * @param bounds, the ascending upper bounds (inclusive) of the buckets, a last bucket holds the values above the highest bound.
+	 */
+	Distribution( final long... bounds ) {
+		for ( int i = 1; i < bounds.length; i++ ) {
+			Validate.isTrue( bounds[i] > bounds[i - 1], "The given bucket bounds must be ascending" );
+		}
+		this.bounds = bounds.clone();
+		this.buckets = new LongAdder[bounds.length + 1];
+		for ( int i = 0; i < buckets.length; i++ ) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void record( final long value ) {
+		int bucket = 0;
+		while ( bucket < bounds.length && value > bounds[bucket] ) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		count.increment();
+		sum.add( value );
+		max.accumulate( value );
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the upper bounds of the buckets, without the last bucket.
+	 */
+	public long[] getBounds() {
+		return bounds.clone();
+	}
+
+	/**
+	 * @return the number of values per bucket (not cumulative), the last element holds the values above the highest bound.
+	 */
+	public long[] getBucketCounts() {
+		final long[] counts = new long[buckets.length];
+		for ( int i = 0; i < buckets.length; i++ ) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.metrics;
+
+import com.viae.maven.sonar.config.SonarStrings;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+import org.json.simple.JSONValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Breakdown of where the time of a goal goes: client setup, HTTP calls, waits, json parsing and git lookups.
+ * <p>
+ * A goal calls {@link #start(String)} when it begins and {@link #finish(Log, File, boolean)} when it ends,
+ * which writes the report of all goals finished so far in this maven session to {@link #FILE}.
+ * The phases are recorded on the goal that runs on the current thread, so goals running in parallel (e.g. mvn -T) are kept apart;
+ * work handed to other threads is recorded on the goal that handed it over when it is wrapped with {@link #bind(Runnable)}.
+ * Phases can overlap (e.g. a git lookup over HTTP counts as HTTP as well) and the time of parallel calls adds up,
+ * so the phase totals can exceed the wall time of the goal.
+ */
+public final class GoalTimings {
+	public static final String FILE = "sonar-plugin-timings.json";
+	public static final String CLIENT_SETUP = "client-setup";
+	public static final String HTTP = "http";
+	public static final String WAIT = "wait";
+	public static final String JSON_PARSE = "json-parse";
+	public static final String GIT_LOOKUP = "git-lookup";
+	private static final ThreadLocal<Goal> CURRENT_GOAL = new ThreadLocal<>();
+	private static final List<Map<String, Object>> FINISHED_GOALS = new CopyOnWriteArrayList<>();
+
+	private GoalTimings() {
+	}
+
+	/**
+	 * Start the breakdown of the given goal on the current thread, replacing the goal that was not finished there.
+	 *
+	 * @param goalName, the name of the goal, can't be blank.
+	 */
+	public static void start( final String goalName ) {
+		Validate.notBlank( goalName, "The given goal name can't be blank" );
+		CURRENT_GOAL.set( new Goal( goalName ) );
+	}
+
+	/**
+	 * Record the given duration on the goal of the current thread, it is dropped when no goal runs on it.
+	 *
+	 * @param phase,         the phase (e.g. {@link #HTTP}), can't be blank.
+	 * @param detail,        what was done within the phase (e.g. GET /api/ce/task), can be blank.
+	 * @param durationNanos, the measured duration in nanoseconds.
+	 */
+	public static void record( final String phase, final String detail, final long durationNanos ) {
+		Validate.notBlank( phase, "The given phase can't be blank" );
+		final Goal goal = CURRENT_GOAL.get();
+		if ( goal != null ) {
+			goal.record( phase, detail, durationNanos );
+		}
+	}
+
+	/**
+	 * @param task, the task to run on an other thread, can't be null.
+	 * @return the given task, recording on the goal of the current thread wherever it runs.
+	 */
+	public static Runnable bind( final Runnable task ) {
+		Validate.notNull( task, "The given task can't be null" );
+		final Goal goal = CURRENT_GOAL.get();
+		return () -> runWith( goal, () -> {
+			task.run();
+			return null;
+		} );
+	}
+
+	/**
+	 * @param task, the task to run on an other thread, can't be null.
+	 * @return the given task, recording on the goal of the current thread wherever it runs.
+	 */
+	public static <T> Supplier<T> bind( final Supplier<T> task ) {
+		Validate.notNull( task, "The given task can't be null" );
+		final Goal goal = CURRENT_GOAL.get();
+		return () -> runWith( goal, task );
+	}
+
+	private static <T> T runWith( final Goal goal, final Supplier<T> task ) {
+		final Goal previous = CURRENT_GOAL.get();
+		CURRENT_GOAL.set( goal );
+		try {
+			return task.get();
+		}
+		finally {
+			CURRENT_GOAL.set( previous );
+		}
+	}
+
+	/**
+	 * Run the given call and record its duration in the given phase, also when it fails.
+	 */
+	public static <T, E extends Exception> T time( final String phase, final String detail, final PluginMetrics.TimedCall<T, E> call ) throws E {
+		final long start = System.nanoTime();
+		try {
+			return call.call();
+		}
+		finally {
+			record( phase, detail, System.nanoTime() - start );
+		}
+	}
+
+	/**
+	 * End the breakdown of the goal of the current thread and write the report of all finished goals to {@link #FILE} in the given directory.
+	 * The write is best effort: a failure is logged as a warning and doesn't break the build.
+	 *
+	 * @param log,       the logging service, can't be null.
+	 * @param directory, the directory to write to (e.g. target), nothing is written when {@code null}.
+	 * @param success,   true when the goal ended without error.
+	 */
+	public static void finish( final Log log, final File directory, final boolean success ) {
+		Validate.notNull( log, "The given log can't be null" );
+		final Goal goal = CURRENT_GOAL.get();
+		CURRENT_GOAL.remove();
+		if ( goal != null ) {
+			FINISHED_GOALS.add( goal.toJson( success ) );
+		}
+		if ( directory == null ) {
+			return;
+		}
+		try {
+			write( directory );
+			log.debug( String.format( "%s timings written to %s", SonarStrings.LOG_PREFIX, directory ) );
+		}
+		catch ( final IOException e ) {
+			log.warn( String.format( "%s could not write timings to %s: %s", SonarStrings.LOG_PREFIX, directory, e.getLocalizedMessage() ) );
+		}
+	}
+
+	private static synchronized void write( final File directory ) throws IOException {
+		Files.createDirectories( directory.toPath() );
+		Files.write( new File( directory, FILE ).toPath(), toJson().getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * @return the finished goals as json, with per goal the wall time, the total per phase and the time per phase detail.
+	 */
+	public static String toJson() {
+		final Map<String, Object> json = new LinkedHashMap<>();
+		json.put( "goals", new ArrayList<>( FINISHED_GOALS ) );
+		return JSONValue.toJSONString( json );
+	}
+
+	/**
+	 * @return the total number of nanoseconds recorded in the given phase of the goal of the current thread.
+	 */
+	public static long totalNanos( final String phase ) {
+		final Goal goal = CURRENT_GOAL.get();
+		return goal == null ? 0 : goal.phases.values().stream().filter( p -> p.phase.equals( phase ) ).mapToLong( p -> p.total.sum() ).sum();
+	}
+
+	public static void reset() {
+		CURRENT_GOAL.remove();
+		FINISHED_GOALS.clear();
+	}
+
+	private static double toMillis( final long nanos ) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos( 1 );
+	}
+
+	private static final class Goal {
+		private final String name;
+		private final long startMillis = System.currentTimeMillis();
+		private final long startNanos = System.nanoTime();
+		private final Map<String, Phase> phases = new ConcurrentHashMap<>();
+
+		private Goal( final String name ) {
+			this.name = name;
+		}
+
+		private void record( final String phase, final String detail, final long durationNanos ) {
+			final String key = StringUtils.isBlank( detail ) ? phase : phase + ' ' + detail;
+			phases.computeIfAbsent( key, k -> new Phase( phase, StringUtils.defaultString( detail ) ) ).record( durationNanos );
+		}
+
+		private Map<String, Object> toJson( final boolean success ) {
+			final Map<String, Object> phaseTotals = new TreeMap<>();
+			final List<Map<String, Object>> details = new ArrayList<>();
+			for ( final Phase phase : new TreeMap<>( phases ).values() ) {
+				final long total = phase.total.sum();
+				phaseTotals.merge( phase.phase, toMillis( total ), ( a, b ) -> (Double) a + (Double) b );
+				final Map<String, Object> detail = new LinkedHashMap<>();
+				detail.put( "phase", phase.phase );
+				detail.put( "detail", phase.detail );
+				detail.put( "count", phase.count.sum() );
+				detail.put( "totalMs", toMillis( total ) );
+				detail.put( "maxMs", toMillis( phase.max.get() ) );
+				details.add( detail );
+			}
+			final Map<String, Object> json = new LinkedHashMap<>();
+			json.put( "goal", name );
+			json.put( "start", Instant.ofEpochMilli( startMillis ).toString() );
+			json.put( "wallMs", toMillis( System.nanoTime() - startNanos ) );
+			json.put( "success", success );
+			json.put( "phasesMs", phaseTotals );
+			json.put( "details", details );
+			return json;
+		}
+	}
+
+	private static final class Phase {
+		private final String phase;
+		private final String detail;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator( Long::max, 0 );
+
+		private Phase( final String phase, final String detail ) {
+			this.phase = phase;
+			this.detail = detail;
+		}
+
+		private void record( final long durationNanos ) {
+			count.increment();
+			total.add( durationNanos );
+			max.accumulate( durationNanos );
+		}
+	}
+}
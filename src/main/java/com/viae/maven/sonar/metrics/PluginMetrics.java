@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.metrics;
+
+import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+import org.json.simple.JSONValue;
+import org.sonar.wsclient.base.HttpException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counters, timers and histograms of the plugin, shared by all goals of a maven session (i.e. the plugin class realm).
+ * <p>
+ * Timers and histograms are series: a name with tags (e.g. the endpoint and status of an HTTP call).
+ * All metrics can be exported as json and in the Prometheus text format, to tell a slow SONAR server apart from a slow plugin.
+ */
+public final class PluginMetrics {
+	public static final String QUALITY_GATE_LINK_APPLIED = "quality_gate_link_applied";
+	public static final String QUALITY_GATE_LINK_SKIPPED = "quality_gate_link_skipped";
+	public static final String HTTP_CLIENT_REQUESTS = "http_client_requests";
+	public static final String HTTP_CLIENT_RETRIES = "http_client_retries";
+	public static final String HTTP_CLIENT_COALESCED = "http_client_coalesced";
+	public static final String CIRCUIT_BREAKER_OPENED = "circuit_breaker_opened";
+	public static final String CIRCUIT_BREAKER_REJECTED = "circuit_breaker_rejected";
+	public static final String RATE_LIMITER_WAIT = "rate_limiter_wait";
+	public static final String QUALITY_GATE_POLLS = "quality_gate_polls";
+	public static final String QUALITY_GATE_VERDICT = "quality_gate_verdict";
+	public static final String JSON_FILE = "sonar-plugin-metrics.json";
+	public static final String PROMETHEUS_FILE = "sonar-plugin-metrics.prom";
+	public static final String STATUS_SUCCESS = "2xx";
+	public static final String STATUS_ERROR = "error";
+	static final long[] TIME_BUCKETS = millisToNanos( 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 );
+	static final long[] COUNT_BUCKETS = { 1, 2, 3, 5, 8, 13, 21, 34, 55, 89 };
+	// numeric ids and generated keys (e.g. AVdXRfEMJ6WpmFgMY3W_) would give a series per project
+	private static final Pattern ID_SEGMENT = Pattern.compile( "(?<=/)(\\d+|(?=[A-Za-z_-]*\\d)[A-Za-z0-9_-]{16,})(?=/|$)" );
+	private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+	private static final Map<String, Series> SERIES = new ConcurrentHashMap<>();
+
+	private PluginMetrics() {
+	}
+
+	/**
+	 * @param name, the name of the counter, can't be blank.
+	 */
+	public static void increment( final String name ) {
+		Validate.notBlank( name, "The given counter name can't be blank" );
+		COUNTERS.computeIfAbsent( name, key -> new LongAdder() ).increment();
+	}
+
+	/**
+	 * @return the value of the given counter, 0 when it was never incremented.
+	 */
+	public static long count( final String name ) {
+		final LongAdder counter = COUNTERS.get( name );
+		return counter != null ? counter.sum() : 0;
+	}
+
+	/**
+	 * @return a sorted snapshot of all counters.
+	 */
+	public static Map<String, Long> counters() {
+		final Map<String, Long> snapshot = new TreeMap<>();
+		COUNTERS.forEach( ( name, counter ) -> snapshot.put( name, counter.sum() ) );
+		return Collections.unmodifiableMap( snapshot );
+	}
+
+	/**
+	 * @param name,          the name of the timer, can't be blank.
+	 * @param durationNanos, the measured duration in nanoseconds.
+	 * @param tags,          the tags of the series as key value pairs (e.g. "status", "200").
+	 */
+	public static void recordTime( final String name, final long durationNanos, final String... tags ) {
+		series( name, true, tags ).distribution.record( durationNanos );
+	}
+
+	/**
+	 * @param name,  the name of the histogram, can't be blank.
+	 * @param value, the measured value (e.g. a number of polls).
+	 * @param tags,  the tags of the series as key value pairs (e.g. "wait", "ce-task").
+	 */
+	public static void recordValue( final String name, final long value, final String... tags ) {
+		series( name, false, tags ).distribution.record( value );
+	}
+
+	/**
+	 * @return the distribution of the given series, {@code null} when nothing was recorded.
+	 */
+	public static Distribution distribution( final String name, final String... tags ) {
+		final Series series = SERIES.get( seriesKey( name, toTags( tags ) ) );
+		return series != null ? series.distribution : null;
+	}
+
+	/**
+	 * Time the given HTTP call in the {@link #HTTP_CLIENT_REQUESTS} timer, tagged with the method, the endpoint and the status.
+	 *
+	 * @param method, the HTTP method.
+	 * @param url,    the (relative) url of the call, reduced to the endpoint (i.e. without host, query and ids).
+	 * @param call,   the call.
+	 * @return the result of the call.
+	 * @throws E the error of the call.
+	 */
+	public static <T, E extends Exception> T timeHttpCall( final String method, final String url, final TimedCall<T, E> call ) throws E {
+		final long start = System.nanoTime();
+		String status = STATUS_ERROR;
+		try {
+			final T result = call.call();
+			status = STATUS_SUCCESS;
+			return result;
+		}
+		catch ( final Exception e ) {
+			status = statusOf( e );
+			throw e;
+		}
+		finally {
+			final long duration = System.nanoTime() - start;
+			final String endpoint = endpoint( url );
+			recordTime( HTTP_CLIENT_REQUESTS, duration, "method", method, "endpoint", endpoint, "status", status );
+			GoalTimings.record( GoalTimings.HTTP, method + ' ' + endpoint, duration );
+		}
+	}
+
+	static String endpoint( final String url ) {
+		String path = StringUtils.substringBefore( StringUtils.defaultString( url ), "?" );
+		final int scheme = path.indexOf( "://" );
+		if ( scheme >= 0 ) {
+			final int pathStart = path.indexOf( '/', scheme + 3 );
+			path = pathStart >= 0 ? path.substring( pathStart ) : "/";
+		}
+		return ID_SEGMENT.matcher( path ).replaceAll( "{id}" );
+	}
+
+	private static String statusOf( final Exception e ) {
+		if ( e instanceof HttpException ) {
+			return String.valueOf( ( (HttpException) e ).status() );
+		}
+		if ( e instanceof HttpStatusException ) {
+			return String.valueOf( ( (HttpStatusException) e ).status() );
+		}
+		return STATUS_ERROR;
+	}
+
+	/**
+	 * @return all metrics as json: the counters, and per series the count, sum, max and bucket counts (durations in milliseconds).
+	 */
+	public static String toJson() {
+		final List<Map<String, Object>> timers = new ArrayList<>();
+		final List<Map<String, Object>> histograms = new ArrayList<>();
+		for ( final Series series : sortedSeries() ) {
+			final Distribution distribution = series.distribution;
+			final Map<String, Object> json = new LinkedHashMap<>();
+			json.put( "name", series.name );
+			json.put( "tags", series.tags );
+			json.put( "count", distribution.getCount() );
+			if ( series.time ) {
+				json.put( "totalMs", toMillis( distribution.getSum() ) );
+				json.put( "maxMs", toMillis( distribution.getMax() ) );
+			}
+			else {
+				json.put( "sum", distribution.getSum() );
+				json.put( "max", distribution.getMax() );
+			}
+			final Map<String, Object> buckets = new LinkedHashMap<>();
+			final long[] bounds = distribution.getBounds();
+			final long[] counts = distribution.getBucketCounts();
+			for ( int i = 0; i < bounds.length; i++ ) {
+				buckets.put( String.valueOf( series.time ? TimeUnit.NANOSECONDS.toMillis( bounds[i] ) : bounds[i] ), counts[i] );
+			}
+			buckets.put( "+Inf", counts[bounds.length] );
+			json.put( series.time ? "bucketsMs" : "buckets", buckets );
+			( series.time ? timers : histograms ).add( json );
+		}
+		final Map<String, Object> json = new LinkedHashMap<>();
+		json.put( "counters", counters() );
+		json.put( "timers", timers );
+		json.put( "histograms", histograms );
+		return JSONValue.toJSONString( json );
+	}
+
+	/**
+	 * @return all metrics in the Prometheus text format: counters get the _total suffix, timers are histograms in seconds.
+	 */
+	public static String toPrometheus() {
+		final StringBuilder text = new StringBuilder();
+		counters().forEach( ( name, value ) -> {
+			text.append( String.format( "# TYPE %s_total counter\n", name ) );
+			text.append( String.format( "%s_total %s\n", name, value ) );
+		} );
+		String previousName = null;
+		for ( final Series series : sortedSeries() ) {
+			final String name = series.time ? series.name + "_seconds" : series.name;
+			if ( !name.equals( previousName ) ) {
+				text.append( String.format( "# TYPE %s histogram\n", name ) );
+				previousName = name;
+			}
+			final Distribution distribution = series.distribution;
+			final long[] bounds = distribution.getBounds();
+			final long[] counts = distribution.getBucketCounts();
+			long cumulative = 0;
+			for ( int i = 0; i < bounds.length; i++ ) {
+				cumulative += counts[i];
+				text.append( String.format( "%s_bucket%s %s\n", name, labels( series.tags, series.time ? toSeconds( bounds[i] ) : String.valueOf( bounds[i] ) ), cumulative ) );
+			}
+			text.append( String.format( "%s_bucket%s %s\n", name, labels( series.tags, "+Inf" ), distribution.getCount() ) );
+			final String sum = series.time ? toSeconds( distribution.getSum() ) : String.valueOf( distribution.getSum() );
+			text.append( String.format( "%s_sum%s %s\n", name, labels( series.tags, null ), sum ) );
+			text.append( String.format( "%s_count%s %s\n", name, labels( series.tags, null ), distribution.getCount() ) );
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Write all metrics to {@link #JSON_FILE} and {@link #PROMETHEUS_FILE} in the given directory.
+	 * The export is best effort: a failure is logged as a warning and doesn't break the build.
+	 *
+	 * @param log,       the logging service, can't be null.
+	 * @param directory, the directory to write to (e.g. target), can't be null.
+	 */
+	public static void export( final Log log, final File directory ) {
+		Validate.notNull( log, "The given log can't be null" );
+		Validate.notNull( directory, "The given directory can't be null" );
+		try {
+			Files.createDirectories( directory.toPath() );
+			Files.write( new File( directory, JSON_FILE ).toPath(), toJson().getBytes( StandardCharsets.UTF_8 ) );
+			Files.write( new File( directory, PROMETHEUS_FILE ).toPath(), toPrometheus().getBytes( StandardCharsets.UTF_8 ) );
+			log.info( String.format( "%s metrics written to %s", SonarStrings.LOG_PREFIX, directory ) );
+		}
+		catch ( final IOException e ) {
+			log.warn( String.format( "%s could not write metrics to %s: %s", SonarStrings.LOG_PREFIX, directory, e.getLocalizedMessage() ) );
+		}
+	}
+
+	public static void reset() {
+		COUNTERS.clear();
+		SERIES.clear();
+	}
+
+	private static Series series( final String name, final boolean time, final String... tags ) {
+		Validate.notBlank( name, "The given metric name can't be blank" );
+		final Map<String, String> sortedTags = toTags( tags );
+		return SERIES.computeIfAbsent( seriesKey( name, sortedTags ), key -> new Series( name, sortedTags, time ) );
+	}
+
+	private static Map<String, String> toTags( final String... tags ) {
+		Validate.isTrue( tags.length % 2 == 0, "The given tags must be key value pairs" );
+		final Map<String, String> sortedTags = new TreeMap<>();
+		for ( int i = 0; i < tags.length; i += 2 ) {
+			sortedTags.put( tags[i], StringUtils.defaultString( tags[i + 1] ) );
+		}
+		return sortedTags;
+	}
+
+	private static String seriesKey( final String name, final Map<String, String> tags ) {
+		return name + labels( tags, null );
+	}
+
+	private static List<Series> sortedSeries() {
+		return new ArrayList<>( new TreeMap<>( SERIES ).values() );
+	}
+
+	private static String labels( final Map<String, String> tags, final String bucketBound ) {
+		final List<String> labels = new ArrayList<>();
+		tags.forEach( ( key, value ) -> labels.add( String.format( "%s=\"%s\"", key, escape( value ) ) ) );
+		if ( bucketBound != null ) {
+			labels.add( String.format( "le=\"%s\"", bucketBound ) );
+		}
+		return labels.isEmpty() ? "" : "{" + StringUtils.join( labels, ',' ) + "}";
+	}
+
+	private static String escape( final String value ) {
+		return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+	}
+
+	private static double toMillis( final long nanos ) {
+		return nanos / 1_000_000d;
+	}
+
+	private static String toSeconds( final long nanos ) {
+		return String.valueOf( nanos / 1_000_000_000d );
+	}
+
+	private static long[] millisToNanos( final long... millis ) {
+		final long[] nanos = new long[millis.length];
+		for ( int i = 0; i < millis.length; i++ ) {
+			nanos[i] = TimeUnit.MILLISECONDS.toNanos( millis[i] );
+		}
+		return nanos;
+	}
+
+	/**
+	 * A measured call.
+	 */
+	@FunctionalInterface
+	public interface TimedCall<T, E extends Exception> {
+		T call() throws E;
+	}
+
+	private static final class Series {
+		private final String name;
+		private final Map<String, String> tags;
+		private final boolean time;
+		private final Distribution distribution;
+
+		private Series( final String name, final Map<String, String> tags, final boolean time ) {
+			this.name = name;
+			this.tags = tags;
+			this.time = time;
+			this.distribution = new Distribution( time ? TIME_BUCKETS : COUNT_BUCKETS );
+		}
+	}
+}
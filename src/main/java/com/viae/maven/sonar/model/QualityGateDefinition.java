@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.model;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.utils.JsonPath;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Definition of a quality gate: its conditions with their thresholds, as returned by SONAR on /api/qualitygates/show.
+ */
+public class QualityGateDefinition {
+	private static final JsonPath ID = JsonPath.field( "id" );
+	private static final JsonPath NAME = JsonPath.field( "name" );
+	private static final JsonPath CONDITIONS = JsonPath.field( "conditions" );
+
+	private final String id;
+	private final String name;
+	private final List<QualityGateStatus.Condition> conditions;
+
+	public QualityGateDefinition( final String id, final String name, final List<QualityGateStatus.Condition> conditions ) {
+		this.id = id;
+		this.name = name;
+		this.conditions = Collections.unmodifiableList( new ArrayList<>( Optional.ofNullable( conditions ).orElse( Collections.emptyList() ) ) );
+	}
+
+	/**
+	 * @param json, the response of /api/qualitygates/show.
+	 * @return the parsed definition, the conditions have no actual value nor level.
+	 * @throws SonarQualityException will be thrown when the response is no valid json.
+	 */
+	public static QualityGateDefinition parse( final String json ) throws SonarQualityException {
+		final List<QualityGateStatus.Condition> conditions = new ArrayList<>();
+		for ( final String condition : CONDITIONS.readArray( json ) ) {
+			conditions.add( QualityGateStatus.Condition.parse( condition ) );
+		}
+		return new QualityGateDefinition( ID.read( json ), NAME.read( json ), conditions );
+	}
+
+	/**
+	 * @return the distinct metrics the conditions are on, in the order of the conditions.
+	 */
+	public Set<String> getMetricKeys() {
+		final Set<String> metricKeys = new LinkedHashSet<>();
+		for ( final QualityGateStatus.Condition condition : conditions ) {
+			if ( StringUtils.isNotBlank( condition.getMetric() ) ) {
+				metricKeys.add( condition.getMetric() );
+			}
+		}
+		return metricKeys;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<QualityGateStatus.Condition> getConditions() {
+		return conditions;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.model;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.utils.JsonPath;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Quality gate state of a project, as returned by SONAR in the quality_gate_details measure.
+ */
+public class QualityGateStatus {
+	public static final String LEVEL_OK = "OK";
+	public static final String LEVEL_WARN = "WARN";
+	public static final String LEVEL_ERROR = "ERROR";
+	private static final JsonPath LEVEL = JsonPath.compile( "msr.data.level" );
+	private static final JsonPath CONDITIONS = JsonPath.compile( "msr.data.conditions" );
+	private static final JsonPath DETAILS_LEVEL = JsonPath.field( "level" );
+	private static final JsonPath DETAILS_CONDITIONS = JsonPath.field( "conditions" );
+
+	private final String level;
+	private final List<Condition> conditions;
+
+	public QualityGateStatus( final String level, final List<Condition> conditions ) {
+		this.level = StringUtils.upperCase( StringUtils.trimToEmpty( level ) );
+		this.conditions = Collections.unmodifiableList( new ArrayList<>( Optional.ofNullable( conditions ).orElse( Collections.emptyList() ) ) );
+	}
+
+	/**
+	 * Parse the response of the quality gate details query (i.e. msr &gt; data &gt; level / conditions).
+	 * The conditions are only read when the quality gate is not met.
+	 *
+	 * @param qualityGateDetailsData, the response of the quality gate details query, may be blank.
+	 * @return the parsed status, without level when the response doesn't contain quality gate details.
+	 * @throws SonarQualityException will be thrown when the response is no valid json.
+	 */
+	public static QualityGateStatus parse( final String qualityGateDetailsData ) throws SonarQualityException {
+		return parse( qualityGateDetailsData, LEVEL, CONDITIONS );
+	}
+
+	/**
+	 * Parse the value of the quality_gate_details measure itself (i.e. level / conditions), as returned by the measures search.
+	 *
+	 * @param qualityGateDetails, the quality_gate_details measure value, may be blank.
+	 * @return the parsed status, without level when the value is blank.
+	 * @throws SonarQualityException will be thrown when the value is no valid json.
+	 */
+	public static QualityGateStatus parseDetails( final String qualityGateDetails ) throws SonarQualityException {
+		return parse( qualityGateDetails, DETAILS_LEVEL, DETAILS_CONDITIONS );
+	}
+
+	private static QualityGateStatus parse( final String json, final JsonPath levelPath, final JsonPath conditionsPath ) throws SonarQualityException {
+		final String level = levelPath.read( json );
+		final List<Condition> conditions = new ArrayList<>();
+		if ( LEVEL_ERROR.equalsIgnoreCase( level ) ) {
+			for ( final String condition : conditionsPath.readArray( json ) ) {
+				conditions.add( Condition.parse( condition ) );
+			}
+		}
+		return new QualityGateStatus( level, conditions );
+	}
+
+	/**
+	 * @return true when SONAR did compute quality gate details for the project.
+	 */
+	public boolean exists() {
+		return StringUtils.isNotBlank( level );
+	}
+
+	/**
+	 * @return true when the quality gate is not met.
+	 */
+	public boolean isError() {
+		return LEVEL_ERROR.equals( level );
+	}
+
+	public String getLevel() {
+		return level;
+	}
+
+	public List<Condition> getConditions() {
+		return conditions;
+	}
+
+	/**
+	 * One condition of the quality gate, together with its actual value.
+	 */
+	public static class Condition {
+		private static final JsonPath METRIC = JsonPath.field( "metric" );
+		private static final JsonPath OP = JsonPath.field( "op" );
+		private static final JsonPath PERIOD = JsonPath.field( "period" );
+		private static final JsonPath WARNING = JsonPath.field( "warning" );
+		private static final JsonPath ERROR = JsonPath.field( "error" );
+		private static final JsonPath ACTUAL = JsonPath.field( "actual" );
+		private static final JsonPath CONDITION_LEVEL = JsonPath.field( "level" );
+
+		private final String metric;
+		private final String op;
+		private final String period;
+		private final String warning;
+		private final String error;
+		private final String actual;
+		private final String level;
+		private final String json;
+
+		public Condition( final String metric,
+		                  final String op,
+		                  final String period,
+		                  final String warning,
+		                  final String error,
+		                  final String actual,
+		                  final String level,
+		                  final String json ) {
+			this.metric = metric;
+			this.op = op;
+			this.period = period;
+			this.warning = warning;
+			this.error = error;
+			this.actual = actual;
+			this.level = level;
+			this.json = json;
+		}
+
+		/**
+		 * @param json, one condition as sent by SONAR.
+		 * @return the parsed condition.
+		 * @throws SonarQualityException will be thrown when the condition is no valid json.
+		 */
+		public static Condition parse( final String json ) throws SonarQualityException {
+			return new Condition( METRIC.read( json ),
+			                      OP.read( json ),
+			                      PERIOD.read( json ),
+			                      WARNING.read( json ),
+			                      ERROR.read( json ),
+			                      ACTUAL.read( json ),
+			                      CONDITION_LEVEL.read( json ),
+			                      json );
+		}
+
+		public String getMetric() {
+			return metric;
+		}
+
+		public String getOp() {
+			return op;
+		}
+
+		public String getPeriod() {
+			return period;
+		}
+
+		public String getWarning() {
+			return warning;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public String getActual() {
+			return actual;
+		}
+
+		public String getLevel() {
+			return level;
+		}
+
+		/**
+		 * @return the condition as sent by SONAR.
+		 */
+		@Override
+		public String toString() {
+			return json;
+		}
+	}
+}
@@ -1,27 +1,39 @@
 package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.exceptions.HttpStatusException;
 import com.viae.maven.sonar.exceptions.SonarQualityException;
-import com.viae.maven.sonar.utils.JsonUtil;
+import com.viae.maven.sonar.http.CircuitBreaker;
+import com.viae.maven.sonar.http.HostConcurrencyLimiter;
+import com.viae.maven.sonar.http.HttpGateway;
+import com.viae.maven.sonar.http.HttpTransport;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SonarClientRegistry;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.utils.JsonPath;
+import com.viae.maven.sonar.utils.LogUtil;
 import com.viae.maven.sonar.utils.SpecialCharacterUtil;
-import edu.emory.mathcs.backport.java.util.concurrent.ConcurrentHashMap;
-import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.sonar.wsclient.SonarClient;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +46,20 @@ import java.util.stream.Collectors;
 @Mojo(name = SonarStrings.MOJO_NAME_SYNC_GIT_REPO, aggregator = true)
 public class SonarGitBranchDeletionSyncMojo extends AbstractMojo {
 	public static final String DELETE_PROJECT_URL = "/api/projects/";
+	public static final int DEFAULT_PARALLELISM = 4;
+	public static final int DEFAULT_MAX_CALLS_PER_HOST = 2;
+	public static final String COMPONENTS_SEARCH_URL = "/api/components/search";
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	private static final JsonPath COMPONENTS = JsonPath.field( "components" );
+	private static final JsonPath ID = JsonPath.field( "id" );
+	private static final JsonPath KEY = JsonPath.field( "key" );
+	private static final JsonPath PAGE_INDEX = JsonPath.compile( "paging.pageIndex" );
+	private static final JsonPath PAGE_SIZE = JsonPath.compile( "paging.pageSize" );
+	private static final JsonPath TOTAL = JsonPath.compile( "paging.total" );
+	private static final JsonPath VALUES = JsonPath.field( "values" );
+	private static final JsonPath DISPLAY_ID = JsonPath.field( "displayId" );
+	private static final JsonPath IS_LAST_PAGE = JsonPath.field( "isLastPage" );
+	private static final JsonPath NEXT_PAGE_START = JsonPath.field( "nextPageStart" );
 	@Parameter(property = SonarStrings.SERVER, required = true)
 	protected String sonarServer;
 	@Parameter(property = SonarStrings.LOGIN, required = true)
@@ -46,18 +72,56 @@ public class SonarGitBranchDeletionSyncMojo extends AbstractMojo {
 	protected String repoPassword;
 	@Parameter(property = SonarStrings.REPO_CONFIGURATION, required = true)
 	protected Map<String, String> repoConfigurations;
+	@Parameter(property = SonarStrings.SYNC_PARALLELISM)
+	protected int parallelism = DEFAULT_PARALLELISM;
+	@Parameter(property = SonarStrings.SYNC_MAX_CALLS_PER_HOST)
+	protected int maxCallsPerHost = DEFAULT_MAX_CALLS_PER_HOST;
+	@Parameter(property = SonarStrings.RETRY_MAX_RETRIES)
+	protected int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+	@Parameter(property = SonarStrings.RETRY_INTERVAL)
+	protected long retryInterval = RetryPolicy.DEFAULT_RETRY_INTERVAL;
+	@Parameter(property = SonarStrings.SYNC_PAGE_SIZE)
+	protected int pageSize = DEFAULT_PAGE_SIZE;
+	@Parameter(property = SonarStrings.RATE_LIMIT_REQUESTS_PER_SECOND)
+	protected double requestsPerSecond = RateLimiter.DEFAULT_REQUESTS_PER_SECOND;
+	@Parameter(property = SonarStrings.RATE_LIMIT_BURST)
+	protected int rateLimitBurst = RateLimiter.DEFAULT_BURST;
+	@Parameter(property = SonarStrings.LOG_PAYLOAD_SIZE)
+	protected int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	@Parameter(property = SonarStrings.METRICS_EXPORT)
+	protected boolean exportMetrics;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
+	private Map<String, String> sonarProjectIds;
 
 	/**
-	 * Validate a project against a given quality gate.
+	 * Delete the SONAR projects of which the git branch no longer exists.
+	 * The repo configurations are read and the projects are deleted on a bounded pool, with at most {@link #maxCallsPerHost} calls per host.
+	 * A project of which the branches can't be looked up is skipped, the other projects are still synced.
 	 *
 	 * @throws MojoExecutionException will not be thrown.
-	 * @throws MojoFailureException   whll be thrown when the quality gate is not met by the given project.
+	 * @throws MojoFailureException   will be thrown when some projects could not be looked up or deleted.
 	 */
 	@Override
-
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_SYNC_GIT_REPO );
+		boolean success = false;
+		final SyncSummary summary = new SyncSummary();
+		sonarProjectIds = null;
+		final ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, parallelism ) );
 		try {
-			repoConfigurations.forEach( this::deleteNotExistingBranches );
+			final HostConcurrencyLimiter limiter = new HostConcurrencyLimiter( Math.max( 1, maxCallsPerHost ) );
+			final List<CompletableFuture<List<BranchMetaData>>> lookups = new ArrayList<>();
+			repoConfigurations.forEach( ( projectName, repoRootUrl ) -> lookups.add(
+					CompletableFuture.supplyAsync( GoalTimings.bind( () -> findNotExistingBranches( projectName, repoRootUrl, limiter, summary ) ), executor ) ) );
+			final List<CompletableFuture<Void>> deletions = new ArrayList<>();
+			for ( final CompletableFuture<List<BranchMetaData>> lookup : lookups ) {
+				for ( final BranchMetaData branch : lookup.join() ) {
+					deletions.add( CompletableFuture.runAsync( GoalTimings.bind( () -> deleteSonarProject( branch, limiter, summary ) ), executor ) );
+				}
+			}
+			deletions.forEach( CompletableFuture::join );
+			success = summary.getFailed().isEmpty();
 		}
 		catch ( Exception e ) {
 			getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
@@ -67,139 +131,234 @@ public class SonarGitBranchDeletionSyncMojo extends AbstractMojo {
 			                                           ExceptionUtils.getStackTrace( e ) )
 					, e );
 		}
+		finally {
+			// the deletions that already started are finished, so a failure never leaves a call cut off halfway
+			executor.shutdown();
+			awaitTermination( executor );
+			if ( exportMetrics ) {
+				PluginMetrics.export( getLog(), metricsDirectory );
+			}
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
+		getLog().info( String.format( "%s %s", SonarStrings.LOG_PREFIX, summary ) );
+		if ( !summary.getFailed().isEmpty() ) {
+			throw new MojoFailureException( String.format( "%s could not sync: %s", SonarStrings.LOG_PREFIX, summary.getFailed().keySet() ) );
+		}
 	}
 
-	private void deleteNotExistingBranches( final String projectName, final String repoRootUrl ) {
+	private void awaitTermination( final ExecutorService executor ) {
 		try {
-			final SonarClient client = SonarClient.builder()
-			                                      .url( sonarServer )
-			                                      .login( sonarUser )
-			                                      .password( sonarPassword )
-			                                      .build();
-			final Set<String> existingRepoBranches = getExistingBranches( repoRootUrl );
-			final Map<String, BranchMetaData> sonarBranches = getSonarBranches( projectName, client );
-			List<String> toDelete =
-					sonarBranches.keySet().stream().filter( sonarBranchName -> !existingRepoBranches.contains( sonarBranchName ) ).collect( Collectors.toList() );
+			while ( !executor.awaitTermination( 1, TimeUnit.MINUTES ) ) {
+				getLog().info( String.format( "%s waiting for the running deletions to finish", SonarStrings.LOG_PREFIX ) );
+			}
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the branches to delete of the given project, none when they can't be looked up (the failure is recorded in the summary).
+	 */
+
+	private List<BranchMetaData> findNotExistingBranches( final String projectName, final String repoRootUrl, final HostConcurrencyLimiter limiter,
+	                                                      final SyncSummary summary ) {
+		try {
+			final SonarClient client = SonarClientRegistry.get( sonarServer, sonarUser, sonarPassword );
+			final Set<String> existingRepoBranches =
+					GoalTimings.time( GoalTimings.GIT_LOOKUP, "remote branches", () -> getExistingBranches( projectName, repoRootUrl, limiter, summary ) );
+			final Map<String, BranchMetaData> sonarBranches = getSonarBranches( projectName, client, limiter, summary );
+			List<String> toDelete = findBranchesToDelete( existingRepoBranches, sonarBranches.keySet() );
 			getLog().info( String.format( "branches to delete for: %s:\n%s", projectName, toDelete ) );
-			for ( String branchName : toDelete ) {
-				String id = sonarBranches.get( branchName ).getId();
-				String serverOutput = doDelete( String.format( "%s%s%s", "http://sonar.projects.foreach.be", DELETE_PROJECT_URL, id ), "admin", "tmp1022!" );
-				getLog().info( "Got server output: \n" + serverOutput );
+			return toDelete.stream().map( sonarBranches::get ).collect( Collectors.toList() );
+		}
+		catch ( final SonarQualityException | RuntimeException e ) {
+			getLog().warn( String.format( "%s could not look up the branches of %s: %s", SonarStrings.LOG_PREFIX, projectName, e.getLocalizedMessage() ) );
+			summary.failed( projectName, e );
+			return Collections.emptyList();
+		}
+	}
+
+	private void deleteSonarProject( final BranchMetaData branch, final HostConcurrencyLimiter limiter, final SyncSummary summary ) {
+		try {
+			final String url = deleteProjectUrl( sonarServer, branch.getName() );
+			final String serverOutput = limiter.call( url, () -> gateway( url, CircuitBreaker.forHost( url ) )
+					.call( "DELETE", url, retryListener( branch.getName(), summary ), () -> doDelete( url ) ) );
+			LogUtil.payload( getLog(), "Got server output", serverOutput, maxLoggedPayloadLength );
+			summary.deleted( branch.getName() );
+		}
+		catch ( final SonarQualityException | RuntimeException e ) {
+			getLog().warn( String.format( "%s could not delete %s: %s", SonarStrings.LOG_PREFIX, branch.getName(), e.getLocalizedMessage() ) );
+			summary.failed( branch.getName(), e );
+		}
+	}
+
+	/**
+	 * @param url,     a url on the called server.
+	 * @param breaker, the circuit breaker of the called server.
+	 * @return the gateway the calls to the server go through, so they are measured, retried and rate limited like all calls of the plugin.
+	 */
+	private HttpGateway gateway( final String url, final CircuitBreaker breaker ) {
+		return new HttpGateway( getLog(), new RetryPolicy( maxRetries, retryInterval ), breaker, RateLimiter.forHost( url, requestsPerSecond, rateLimitBurst ) );
+	}
+
+	/**
+	 * The id the components search returns is a component uuid, which the project deletion doesn't know: the project is deleted by its key.
+	 *
+	 * @return the url to delete the project with the given key.
+	 */
+	static String deleteProjectUrl( final String sonarServer, final String projectKey ) throws SonarQualityException {
+		try {
+			return String.format( "%s%s%s", StringUtils.removeEnd( sonarServer, "/" ), DELETE_PROJECT_URL, URLEncoder.encode( projectKey, StandardCharsets.UTF_8.name() ) );
+		}
+		catch ( final UnsupportedEncodingException e ) {
+			throw new SonarQualityException( String.format( "Could not encode project key %s", projectKey ), e );
+		}
+	}
+
+	/**
+	 * @return the listener that logs the retries of the given entry and records them in the summary.
+	 */
+	private RetryPolicy.RetryListener retryListener( final String entry, final SyncSummary summary ) {
+		return ( status, backoff ) -> {
+			getLog().info( String.format( "%s got %s for %s, retry in %s ms", SonarStrings.LOG_PREFIX, status, entry, backoff ) );
+			summary.retried( entry );
+		};
+	}
+
+	static List<String> findBranchesToDelete( final Set<String> existingRepoBranches, final Set<String> sonarBranchNames ) {
+		return sonarBranchNames.stream().filter( sonarBranchName -> !existingRepoBranches.contains( sonarBranchName ) ).collect( Collectors.toList() );
+	}
+
+	private Map<String, BranchMetaData> getSonarBranches( final String projectName, final SonarClient client, final HostConcurrencyLimiter limiter,
+	                                                      final SyncSummary summary ) throws SonarQualityException {
+		return findSonarBranches( projectName, getSonarProjectIds( client, limiter, summary ) );
+	}
+
+	/**
+	 * List the SONAR projects page by page, once per run. The search of SONAR matches names and whole keys, not key prefixes,
+	 * so all pages are read, but only the branch projects of the repo configurations are kept.
+	 *
+	 * @return the id per project key of the branch projects.
+	 */
+	private synchronized Map<String, String> getSonarProjectIds( final SonarClient client, final HostConcurrencyLimiter limiter, final SyncSummary summary )
+			throws SonarQualityException {
+		if ( sonarProjectIds == null ) {
+			final Map<String, String> projectIds = new HashMap<>();
+			final Set<String> branchPrefixes = repoConfigurations.keySet().stream().map( SonarGitBranchDeletionSyncMojo::branchPrefix ).collect( Collectors.toSet() );
+			boolean hasNextPage = true;
+			for ( int page = 1; hasNextPage; page++ ) {
+				final int pageIndex = page;
+				final String json = limiter.call( sonarServer, () -> searchProjects( client, pageIndex, summary ) );
+				hasNextPage = readSonarProjects( json, branchPrefixes, projectIds );
 			}
+			sonarProjectIds = projectIds;
 		}
-		catch ( final SonarQualityException e ) {
-			throw new RuntimeException( e );
+		return sonarProjectIds;
+	}
+
+	private String searchProjects( final SonarClient client, final int pageIndex, final SyncSummary summary ) {
+		return gateway( sonarServer, CircuitBreaker.forClient( client ) ).call( "GET", COMPONENTS_SEARCH_URL, retryListener( sonarServer, summary ),
+		                                                                        () -> client.get( COMPONENTS_SEARCH_URL,
+		                                                                                          "qualifiers", "TRK",
+		                                                                                          "p", pageIndex,
+		                                                                                          "ps", pageSize ) );
+	}
+
+	/**
+	 * @param branchPrefixes, the key prefixes of the projects to keep.
+	 * @return true when the SONAR server has more pages.
+	 */
+	static boolean readSonarProjects( final String json, final Set<String> branchPrefixes, final Map<String, String> projectIds ) throws SonarQualityException {
+		final List<String> components = COMPONENTS.readArray( json );
+		for ( final String component : components ) {
+			final String projectKey = KEY.read( component );
+			if ( projectKey != null && branchPrefixes.stream().anyMatch( projectKey::startsWith ) ) {
+				projectIds.put( projectKey, ID.read( component ) );
+			}
 		}
+		final String pageIndex = PAGE_INDEX.read( json );
+		final String pageSize = PAGE_SIZE.read( json );
+		final String total = TOTAL.read( json );
+		return !components.isEmpty() && pageIndex != null && pageSize != null && total != null
+		       && Long.parseLong( pageIndex ) * Long.parseLong( pageSize ) < Long.parseLong( total );
 	}
 
-	private Map<String, BranchMetaData> getSonarBranches( final String projectName, final SonarClient client ) throws SonarQualityException {
-		final Map<String, BranchMetaData> sonarBranches = new ConcurrentHashMap();
-		String sonarResult = client.get( "/api/projects?format=json" );
-		JSONArray sonarResultArray = JsonUtil.parseArray( sonarResult );
-		sonarResultArray.stream().forEach( project -> {
-			String id = ( (JSONObject) project ).get( "id" ).toString();
-			String projectKey = ( (JSONObject) project ).get( "k" ).toString();
-			if ( projectKey.startsWith( projectName ) ) {
-				String branchName = Optional.ofNullable( projectKey ).orElse( "" ).replace( String.format( "%s:", projectName ), "" );
-				sonarBranches.put( branchName, new BranchMetaData( id, projectKey ) );
+	/**
+	 * @return the branch projects of the given project (i.e. with key projectName:branch) per branch.
+	 */
+	static Map<String, BranchMetaData> findSonarBranches( final String projectName, final Map<String, String> projectIds ) {
+		final String branchPrefix = branchPrefix( projectName );
+		final Map<String, BranchMetaData> sonarBranches = new HashMap<>();
+		projectIds.forEach( ( projectKey, id ) -> {
+			if ( projectKey.startsWith( branchPrefix ) ) {
+				sonarBranches.put( projectKey.substring( branchPrefix.length() ), new BranchMetaData( id, projectKey ) );
 			}
 		} );
 		return sonarBranches;
 	}
 
-	private Set<String> getExistingBranches( final String repoRootUrl ) throws SonarQualityException {
+	static String branchPrefix( final String projectName ) {
+		return String.format( "%s:", projectName );
+	}
+
+	/**
+	 * Read the branches of the repository page by page, following the Bitbucket paging (i.e. isLastPage and nextPageStart).
+	 */
+	private Set<String> getExistingBranches( final String projectName, final String repoRootUrl, final HostConcurrencyLimiter limiter, final SyncSummary summary )
+			throws SonarQualityException {
 		final Set<String> existingBranches = new HashSet<>();
-		String json = doGet( repoRootUrl, repoUser, repoPassword );
-		JSONObject jsonObject = JsonUtil.parse( json );
-		JSONArray jsonArray = (JSONArray) jsonObject.get( "values" );
-		jsonArray.forEach(
-				branch -> {
-					String id = ( (JSONObject) branch ).get( "id" ).toString();
-					String displayId = ( (JSONObject) branch ).get( "displayId" ).toString();
-					existingBranches.add( displayId );
-					String escapedValue = SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( displayId );
-					existingBranches.add( escapedValue );
-				} );
+		String nextPageStart = "0";
+		while ( nextPageStart != null ) {
+			final String url = String.format( "%s%sstart=%s&limit=%s", repoRootUrl, repoRootUrl.contains( "?" ) ? "&" : "?", nextPageStart, pageSize );
+			final String json = limiter.call( url, () -> gateway( url, CircuitBreaker.forHost( url ) )
+					.call( "GET", url, retryListener( projectName, summary ), () -> doGet( url ) ) );
+			nextPageStart = readExistingBranches( json, existingBranches );
+		}
 		return existingBranches;
 	}
 
-	private String doGet( final String path, final String username, final String password ) throws SonarQualityException {
-		getLog().info( String.format( "try to get data for: %s", path ) );
-		try {
-			StringJoiner joiner = new StringJoiner( "" );
-
-			URL url = new URL( path );
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setRequestMethod( "GET" );
-			conn.setRequestProperty( "Accept", "application/json" );
-			String userpass = String.format( "%s:%s", username, password );
-			String basicAuth = "Basic " + new String( new Base64().encode( userpass.getBytes() ) );
-			conn.setRequestProperty( "Authorization", basicAuth );
-
-			if ( conn.getResponseCode() != 200 ) {
-				throw new RuntimeException( "Failed : HTTP error code : " + conn.getResponseCode() );
-			}
-
-			BufferedReader br = new BufferedReader( new InputStreamReader( ( conn.getInputStream() ) ) );
-
-			String output;
-			while ( ( output = br.readLine() ) != null ) {
-				joiner.add( output );
+	/**
+	 * @return the start of the next page, null when this was the last page.
+	 */
+	static String readExistingBranches( final String json, final Set<String> existingBranches ) throws SonarQualityException {
+		for ( final String branch : VALUES.readArray( json ) ) {
+			final String displayId = DISPLAY_ID.read( branch );
+			if ( displayId != null ) {
+				existingBranches.add( displayId );
+				existingBranches.add( SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( displayId ) );
 			}
+		}
+		return "false".equals( IS_LAST_PAGE.read( json ) ) ? NEXT_PAGE_START.read( json ) : null;
+	}
 
-			conn.disconnect();
-			return joiner.toString();
+	private String doGet( final String path ) throws SonarQualityException {
+		LogUtil.info( getLog(), () -> String.format( "try to get data for: %s", path ) );
+		try {
+			return HttpTransport.shared( repoUser, repoPassword ).get( path );
+		}
+		catch ( HttpStatusException e ) {
+			throw e;
 		}
 		catch ( Exception e ) {
 			throw new SonarQualityException( "failed to load repo data", e );
 		}
 	}
 
-	private String doDelete( final String path, final String username, final String password ) throws SonarQualityException {
+	private String doDelete( final String path ) throws SonarQualityException {
 		try {
-			URL url = new URL( path );
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setDoOutput( true );
-			conn.setRequestMethod( "DELETE" );
-			conn.setRequestProperty( "Content-Type", "application/json" );
-			String userpass = String.format( "%s:%s", username, password );
-			String basicAuth = "Basic " + new String( new Base64().encode( userpass.getBytes() ) );
-			conn.setRequestProperty( "Authorization", basicAuth );
-
-			OutputStream os = conn.getOutputStream();
-			os.flush();
-
-			int responseCode = conn.getResponseCode();
-			getLog().info( "got response code for delete: " + responseCode );
-			if ( responseCode != HttpURLConnection.HTTP_OK ) {
-				BufferedReader br = new BufferedReader( new InputStreamReader( ( conn.getErrorStream() ) ) );
-
-				String output;
-				StringJoiner serverOutput = new StringJoiner( "\n" );
-				while ( ( output = br.readLine() ) != null ) {
-					serverOutput.add( output );
-				}
-				throw new RuntimeException( "Failed : HTTP error code : " + conn.getResponseCode() + " ;\n" + serverOutput.toString() );
-			}
-
-			BufferedReader br = new BufferedReader( new InputStreamReader( ( conn.getInputStream() ) ) );
-
-			String output;
-			StringJoiner serverOutput = new StringJoiner( "\n" );
-			while ( ( output = br.readLine() ) != null ) {
-				serverOutput.add( output );
-			}
-
-			conn.disconnect();
-
-			return serverOutput.toString();
+			return HttpTransport.shared( sonarUser, sonarPassword ).delete( path );
+		}
+		catch ( HttpStatusException e ) {
+			throw e;
 		}
 		catch ( Exception e ) {
 			throw new SonarQualityException( "failed to delete project", e );
 		}
 	}
 
-	private class BranchMetaData {
+	static class BranchMetaData {
 		private final String id;
 		private final String name;
 
@@ -216,4 +375,43 @@ public class SonarGitBranchDeletionSyncMojo extends AbstractMojo {
 			return name;
 		}
 	}
+
+	/**
+	 * Outcome of a sync run, filled concurrently by the deletion tasks.
+	 */
+	static class SyncSummary {
+		private final Set<String> deleted = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+		private final Set<String> retried = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+		private final Map<String, String> failed = new ConcurrentHashMap<>();
+
+		void deleted( final String entry ) {
+			deleted.add( entry );
+		}
+
+		void retried( final String entry ) {
+			retried.add( entry );
+		}
+
+		void failed( final String entry, final Exception e ) {
+			failed.put( entry, String.valueOf( e.getLocalizedMessage() ) );
+		}
+
+		Set<String> getDeleted() {
+			return deleted;
+		}
+
+		Set<String> getRetried() {
+			return retried;
+		}
+
+		Map<String, String> getFailed() {
+			return failed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format( "sync summary: %s deleted, %s failed, %s retried\ndeleted: %s\nfailed: %s\nretried: %s",
+			                      deleted.size(), failed.size(), retried.size(), new TreeSet<>( deleted ), new TreeMap<>( failed ), new TreeSet<>( retried ) );
+		}
+	}
 }
@@ -5,8 +5,17 @@
 package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SonarClientRegistry;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.services.BackoffPollScheduler;
+import com.viae.maven.sonar.services.QualityGateWebhookReceiver;
 import com.viae.maven.sonar.services.SonarQualityGateService;
 import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
+import com.viae.maven.sonar.utils.LogUtil;
+import com.viae.maven.sonar.utils.ReportTaskUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.maven.plugin.AbstractMojo;
@@ -18,8 +27,13 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.sonar.wsclient.SonarClient;
 
+import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * MOJO to validate a project against a given quality gate.
@@ -29,6 +43,7 @@ import java.time.format.DateTimeFormatter;
 @Mojo(name = SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATE, aggregator = true)
 public class SonarMavenBuildBreakerMojo extends AbstractMojo {
 	public static final int FIVE_MINUTES_IN_SECONDS = 500;
+	public static final int DEFAULT_PARALLELISM = 8;
 	private final SonarQualityGateService qualityGateService = new SonarQualityGateServiceImpl( getLog() );
 	@Parameter(property = SonarStrings.SERVER, required = true)
 	protected String sonarServer;
@@ -44,6 +59,48 @@ public class SonarMavenBuildBreakerMojo extends AbstractMojo {
 	protected String sonarExecutionStart;
 	@Parameter(property = SonarStrings.QUALITY_GATE, required = true)
 	protected String qualityGateName;
+	@Parameter(property = SonarStrings.COMPLETION_MODE)
+	protected String completionMode = SonarStrings.COMPLETION_MODE_TIMESTAMP;
+	@Parameter(property = SonarStrings.REPORT_TASK_FILE, defaultValue = "${project.build.directory}/sonar/report-task.txt")
+	protected File reportTaskFile;
+	@Parameter(property = SonarStrings.WEBHOOK_PORT)
+	protected int webhookPort;
+	@Parameter(property = SonarStrings.WEBHOOK_PATH)
+	protected String webhookPath = QualityGateWebhookReceiver.DEFAULT_PATH;
+	@Parameter(property = SonarStrings.WEBHOOK_ADDRESS)
+	protected String webhookAddress = QualityGateWebhookReceiver.DEFAULT_BIND_ADDRESS;
+	@Parameter(property = SonarStrings.WEBHOOK_SECRET)
+	protected String webhookSecret;
+	@Parameter(property = SonarStrings.POLL_INITIAL_INTERVAL)
+	protected long pollInitialInterval = BackoffPollScheduler.DEFAULT_INITIAL_INTERVAL;
+	@Parameter(property = SonarStrings.POLL_MAX_INTERVAL)
+	protected long pollMaxInterval = BackoffPollScheduler.DEFAULT_MAX_INTERVAL;
+	@Parameter(property = SonarStrings.POLL_MULTIPLIER)
+	protected double pollMultiplier = BackoffPollScheduler.DEFAULT_MULTIPLIER;
+	@Parameter(property = SonarStrings.POLL_JITTER)
+	protected double pollJitter = BackoffPollScheduler.DEFAULT_JITTER;
+	@Parameter(property = SonarStrings.POLL_TIMEOUT)
+	protected int pollTimeout = FIVE_MINUTES_IN_SECONDS;
+	@Parameter(property = SonarStrings.VALIDATE_REACTOR)
+	protected boolean validateReactor;
+	@Parameter(property = SonarStrings.VALIDATE_PARALLELISM)
+	protected int parallelism = DEFAULT_PARALLELISM;
+	@Parameter(property = SonarStrings.LOG_PAYLOAD_SIZE)
+	protected int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	@Parameter(property = SonarStrings.RETRY_MAX_RETRIES)
+	protected int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+	@Parameter(property = SonarStrings.RETRY_INTERVAL)
+	protected long retryInterval = RetryPolicy.DEFAULT_RETRY_INTERVAL;
+	@Parameter(property = SonarStrings.RATE_LIMIT_REQUESTS_PER_SECOND)
+	protected double requestsPerSecond = RateLimiter.DEFAULT_REQUESTS_PER_SECOND;
+	@Parameter(property = SonarStrings.RATE_LIMIT_BURST)
+	protected int rateLimitBurst = RateLimiter.DEFAULT_BURST;
+	@Parameter(property = SonarStrings.METRICS_EXPORT)
+	protected boolean exportMetrics;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
+	@Parameter(defaultValue = "${reactorProjects}", readonly = true)
+	protected List<MavenProject> reactorProjects;
 	@Component
 	protected MavenProject project;
 
@@ -55,28 +112,51 @@ public class SonarMavenBuildBreakerMojo extends AbstractMojo {
 	 */
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATE );
+		boolean success = false;
 		getLog().info( String.format( "%s start execution of '%s'", SonarStrings.LOG_PREFIX, SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATE ) );
 		getLog().info( String.format( "%s use sonar server '%s' and log in with user '%s'", SonarStrings.LOG_PREFIX, sonarServer, sonarUser ) );
 
 		try {
-			final SonarClient client = SonarClient.builder()
-			                                      .url( sonarServer )
-			                                      .login( sonarUser )
-			                                      .password( sonarPassword )
-			                                      .build();
+			final SonarClient client = SonarClientRegistry.get( sonarServer, sonarUser, sonarPassword );
+			qualityGateService.setMaxLoggedPayloadLength( maxLoggedPayloadLength );
+			qualityGateService.setRetryPolicy( new RetryPolicy( maxRetries, retryInterval ) );
+			qualityGateService.setRateLimiter( RateLimiter.forHost( sonarServer, requestsPerSecond, rateLimitBurst ) );
 
 			getLog().info( String.format( "validate quality gate for %s[%s] and branch [%s]", SonarStrings.PROJECT_KEY, sonarKey, branchName ) );
 			final String computedProjectKey = qualityGateService.composeSonarProjectKey( project, sonarKey, branchName );
 			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.PROJECT_KEY, sonarKey ) );
 			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.BRANCH, branchName ) );
 			getLog().info( String.format( "%s computed project key: %s", SonarStrings.LOG_PREFIX, computedProjectKey ) );
-			if ( !StringUtils.isBlank( sonarExecutionStart ) ) {
+			getLog().info( String.format( "%s poll every %s ms (x%s, jitter %s, max %s ms) for at most %s seconds",
+			                              SonarStrings.LOG_PREFIX, pollInitialInterval, pollMultiplier, pollJitter, pollMaxInterval, pollTimeout ) );
+			qualityGateService.setPollScheduler( new BackoffPollScheduler( pollInitialInterval, pollMaxInterval, pollMultiplier, pollJitter ) );
+			if ( validateReactor ) {
+				final Map<String, LocalDateTime> executionStarts = composeReactorExecutionStarts();
+				getLog().info( String.format( "%s validate %s reactor projects, %s at a time: %s", SonarStrings.LOG_PREFIX, executionStarts.size(), parallelism, executionStarts ) );
+				qualityGateService.validateQualityGates( client, executionStarts, qualityGateName, pollTimeout, parallelism );
+			}
+			else if ( webhookPort > 0 ) {
+				try ( final QualityGateWebhookReceiver receiver = QualityGateWebhookReceiver.start( getLog(), webhookAddress, webhookPort, webhookPath, webhookSecret ) ) {
+					final String ceTaskId = ReportTaskUtil.findCeTaskId( reportTaskFile );
+					getLog().info( String.format( "%s wait for sonar webhook call on port %s, task %s", SonarStrings.LOG_PREFIX, receiver.getPort(),
+					                              StringUtils.defaultString( ceTaskId, "unknown" ) ) );
+					qualityGateService.validateQualityGateFromWebhook( receiver, computedProjectKey, ceTaskId, pollTimeout );
+				}
+			}
+			else if ( SonarStrings.COMPLETION_MODE_CE_TASK.equals( completionMode ) ) {
+				final String ceTaskId = ReportTaskUtil.getCeTaskId( reportTaskFile );
+				getLog().info( String.format( "%s wait for compute engine task '%s' from %s", SonarStrings.LOG_PREFIX, ceTaskId, reportTaskFile ) );
+				qualityGateService.validateQualityGateForTask( client, computedProjectKey, ceTaskId, pollTimeout );
+			}
+			else if ( !StringUtils.isBlank( sonarExecutionStart ) ) {
 				final LocalDateTime executionStart = LocalDateTime.parse( sonarExecutionStart, DateTimeFormatter.ISO_DATE_TIME );
-				qualityGateService.validateQualityGate( client, computedProjectKey, qualityGateName, executionStart, FIVE_MINUTES_IN_SECONDS );
+				qualityGateService.validateQualityGate( client, computedProjectKey, qualityGateName, executionStart, pollTimeout );
 			}
 			else {
 				qualityGateService.validateQualityGate( client, computedProjectKey, qualityGateName );
 			}
+			success = true;
 		}
 		catch ( final Exception e ) {
 			getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
@@ -86,5 +166,29 @@ public class SonarMavenBuildBreakerMojo extends AbstractMojo {
 			                                               ExceptionUtils.getStackTrace( e ) )
 					, e );
 		}
+		finally {
+			if ( exportMetrics ) {
+				PluginMetrics.export( getLog(), metricsDirectory );
+			}
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
+	}
+
+	/**
+	 * @return per distinct project key of the modules in the reactor (a module's own sonar.projectKey property taking precedence over groupId:artifactId)
+	 * the execution start to wait for: the module's own sonar.execution.start property, otherwise the one of this build, {@code null} when neither is set.
+	 * set-sonar-execution-start is an aggregator, so when it is used the modules share the start it set on the root project.
+	 */
+	Map<String, LocalDateTime> composeReactorExecutionStarts() {
+		final List<MavenProject> modules = reactorProjects == null || reactorProjects.isEmpty() ? Collections.singletonList( project ) : reactorProjects;
+		final Map<String, LocalDateTime> executionStarts = new LinkedHashMap<>();
+		for ( final MavenProject module : modules ) {
+			final String projectKey = qualityGateService.composeSonarProjectKey( module, module.getProperties().getProperty( SonarStrings.PROJECT_KEY ), branchName );
+			if ( !executionStarts.containsKey( projectKey ) ) {
+				final String executionStart = StringUtils.defaultIfBlank( module.getProperties().getProperty( SonarStrings.EXECUTION_START ), sonarExecutionStart );
+				executionStarts.put( projectKey, StringUtils.isBlank( executionStart ) ? null : LocalDateTime.parse( executionStart, DateTimeFormatter.ISO_DATE_TIME ) );
+			}
+		}
+		return executionStarts;
 	}
 }
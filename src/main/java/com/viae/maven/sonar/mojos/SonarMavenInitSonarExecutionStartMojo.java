@@ -5,8 +5,17 @@
 package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SonarClientRegistry;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.services.PersistentLookupStore;
+import com.viae.maven.sonar.services.QualityGateWebhookReceiver;
+import com.viae.maven.sonar.services.SonarLookupCache;
 import com.viae.maven.sonar.services.SonarQualityGateService;
 import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
+import com.viae.maven.sonar.utils.LogUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.maven.plugin.AbstractMojo;
@@ -18,8 +27,10 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.sonar.wsclient.SonarClient;
 
+import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mojo to set the sonar.execution.start property to the last run timestamp.
@@ -42,6 +53,36 @@ public class SonarMavenInitSonarExecutionStartMojo extends AbstractMojo {
 	protected String branchName;
 	@Parameter(property = SonarStrings.QUALITY_GATE, required = true)
 	protected String qualityGateName;
+	@Parameter(property = SonarStrings.PROJECT_READY_TIMEOUT)
+	protected int projectReadyTimeout = SonarQualityGateServiceImpl.DEFAULT_PROJECT_READY_TIMEOUT;
+	@Parameter(property = SonarStrings.CACHE_PERSISTENT)
+	protected boolean persistentCache;
+	@Parameter(property = SonarStrings.CACHE_DIRECTORY)
+	protected File cacheDirectory = PersistentLookupStore.DEFAULT_DIRECTORY;
+	@Parameter(property = SonarStrings.CACHE_TTL)
+	protected long cacheTtl = TimeUnit.MILLISECONDS.toSeconds( PersistentLookupStore.DEFAULT_TTL );
+	@Parameter(property = SonarStrings.WEBHOOK_PORT)
+	protected int webhookPort;
+	@Parameter(property = SonarStrings.WEBHOOK_PATH)
+	protected String webhookPath = QualityGateWebhookReceiver.DEFAULT_PATH;
+	@Parameter(property = SonarStrings.WEBHOOK_ADDRESS)
+	protected String webhookAddress = QualityGateWebhookReceiver.DEFAULT_BIND_ADDRESS;
+	@Parameter(property = SonarStrings.WEBHOOK_SECRET)
+	protected String webhookSecret;
+	@Parameter(property = SonarStrings.LOG_PAYLOAD_SIZE)
+	protected int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	@Parameter(property = SonarStrings.RETRY_MAX_RETRIES)
+	protected int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+	@Parameter(property = SonarStrings.RETRY_INTERVAL)
+	protected long retryInterval = RetryPolicy.DEFAULT_RETRY_INTERVAL;
+	@Parameter(property = SonarStrings.RATE_LIMIT_REQUESTS_PER_SECOND)
+	protected double requestsPerSecond = RateLimiter.DEFAULT_REQUESTS_PER_SECOND;
+	@Parameter(property = SonarStrings.RATE_LIMIT_BURST)
+	protected int rateLimitBurst = RateLimiter.DEFAULT_BURST;
+	@Parameter(property = SonarStrings.METRICS_EXPORT)
+	protected boolean exportMetrics;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
 	@Component
 	protected MavenProject project;
 
@@ -50,18 +91,45 @@ public class SonarMavenInitSonarExecutionStartMojo extends AbstractMojo {
 	 */
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_SET_EXECUTION_START );
+		boolean success = false;
+		try {
+			setExecutionStart();
+			success = true;
+		}
+		finally {
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
+	}
+
+	private void setExecutionStart() throws MojoFailureException {
 		getLog().info( String.format( "%s start execution of '%s'", SonarStrings.LOG_PREFIX, SonarStrings.MOJO_NAME_SET_EXECUTION_START ) );
 		getLog().info( String.format( "%s use sonar server '%s' and log in with user '%s'", SonarStrings.LOG_PREFIX, sonarServer, sonarUser ) );
+		if ( webhookPort > 0 ) {
+			// start listening before the analysis runs, so an early webhook call is not missed by validate-qualitygate
+			try {
+				QualityGateWebhookReceiver.start( getLog(), webhookAddress, webhookPort, webhookPath, webhookSecret );
+			}
+			catch ( final Exception e ) {
+				getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
+				throw new MojoFailureException( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ), e );
+			}
+		}
 		final String existingExecutionStart = project.getProperties().getProperty( SonarStrings.EXECUTION_START );
 
 		getLog().info( String.format( "%s existing %s: '%s'", SonarStrings.LOG_PREFIX, SonarStrings.EXECUTION_START, existingExecutionStart ) );
 		if ( StringUtils.isBlank( existingExecutionStart ) ) {
 			try {
-				final SonarClient client = SonarClient.builder()
-				                                      .url( sonarServer )
-				                                      .login( sonarUser )
-				                                      .password( sonarPassword )
-				                                      .build();
+				final SonarClient client = SonarClientRegistry.get( sonarServer, sonarUser, sonarPassword );
+				qualityGateService.setMaxLoggedPayloadLength( maxLoggedPayloadLength );
+				qualityGateService.setRetryPolicy( new RetryPolicy( maxRetries, retryInterval ) );
+				qualityGateService.setRateLimiter( RateLimiter.forHost( sonarServer, requestsPerSecond, rateLimitBurst ) );
+				if ( persistentCache ) {
+					SonarLookupCache.forClient( client ).setPersistentStore(
+							new PersistentLookupStore( cacheDirectory, String.format( "%s|%s", sonarServer, sonarUser ), TimeUnit.SECONDS.toMillis( cacheTtl ),
+							                           System::currentTimeMillis ) );
+				}
+				qualityGateService.setProjectReadyTimeout( projectReadyTimeout );
 				final LocalDateTime lastRunTimeStamp =
 						qualityGateService.getLastRunTimeStamp( client, qualityGateService.composeSonarProjectKey( project, sonarKey, branchName ), qualityGateName );
 
@@ -79,6 +147,11 @@ public class SonarMavenInitSonarExecutionStartMojo extends AbstractMojo {
 				                                               ExceptionUtils.getStackTrace( e ) )
 						, e );
 			}
+			finally {
+				if ( exportMetrics ) {
+					PluginMetrics.export( getLog(), metricsDirectory );
+				}
+			}
 		}
 	}
 }
@@ -6,8 +6,16 @@ package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.config.SonarStrings;
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SonarClientRegistry;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.services.PersistentLookupStore;
+import com.viae.maven.sonar.services.SonarLookupCache;
 import com.viae.maven.sonar.services.SonarQualityGateService;
 import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
+import com.viae.maven.sonar.utils.LogUtil;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -18,6 +26,9 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.sonar.wsclient.SonarClient;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by Vandeperre Maarten on 03/05/2016.
  */
@@ -35,6 +46,28 @@ public class SonarMavenLinkProjectToQualityGateMojo extends AbstractMojo {
 	protected String qualityGateName;
 	@Parameter(property = SonarStrings.BRANCH)
 	protected String branchName;
+	@Parameter(property = SonarStrings.PROJECT_READY_TIMEOUT)
+	protected int projectReadyTimeout = SonarQualityGateServiceImpl.DEFAULT_PROJECT_READY_TIMEOUT;
+	@Parameter(property = SonarStrings.CACHE_PERSISTENT)
+	protected boolean persistentCache;
+	@Parameter(property = SonarStrings.CACHE_DIRECTORY)
+	protected File cacheDirectory = PersistentLookupStore.DEFAULT_DIRECTORY;
+	@Parameter(property = SonarStrings.CACHE_TTL)
+	protected long cacheTtl = TimeUnit.MILLISECONDS.toSeconds( PersistentLookupStore.DEFAULT_TTL );
+	@Parameter(property = SonarStrings.LOG_PAYLOAD_SIZE)
+	protected int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	@Parameter(property = SonarStrings.RETRY_MAX_RETRIES)
+	protected int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+	@Parameter(property = SonarStrings.RETRY_INTERVAL)
+	protected long retryInterval = RetryPolicy.DEFAULT_RETRY_INTERVAL;
+	@Parameter(property = SonarStrings.RATE_LIMIT_REQUESTS_PER_SECOND)
+	protected double requestsPerSecond = RateLimiter.DEFAULT_REQUESTS_PER_SECOND;
+	@Parameter(property = SonarStrings.RATE_LIMIT_BURST)
+	protected int rateLimitBurst = RateLimiter.DEFAULT_BURST;
+	@Parameter(property = SonarStrings.METRICS_EXPORT)
+	protected boolean exportMetrics;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
 
 	@Component
 	protected MavenProject project;
@@ -43,14 +76,20 @@ public class SonarMavenLinkProjectToQualityGateMojo extends AbstractMojo {
 
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_LINK_QUALITY_GATE );
+		boolean success = false;
 		getLog().info( String.format( "%s start execution of '%s'", SonarStrings.LOG_PREFIX, SonarStrings.MOJO_NAME_LINK_QUALITY_GATE ) );
 		getLog().info( String.format( "%s use sonar server '%s' and log in with user '%s'", SonarStrings.LOG_PREFIX, sonarServer, sonarUser ) );
 		try {
-			final SonarClient client = SonarClient.builder()
-			                                      .url( sonarServer )
-			                                      .login( sonarUser )
-			                                      .password( sonarPassword )
-			                                      .build();
+			final SonarClient client = SonarClientRegistry.get( sonarServer, sonarUser, sonarPassword );
+			qualityGateService.setMaxLoggedPayloadLength( maxLoggedPayloadLength );
+			qualityGateService.setRetryPolicy( new RetryPolicy( maxRetries, retryInterval ) );
+			qualityGateService.setRateLimiter( RateLimiter.forHost( sonarServer, requestsPerSecond, rateLimitBurst ) );
+			if ( persistentCache ) {
+				SonarLookupCache.forClient( client ).setPersistentStore(
+						new PersistentLookupStore( cacheDirectory, String.format( "%s|%s", sonarServer, sonarUser ), TimeUnit.SECONDS.toMillis( cacheTtl ),
+						                           System::currentTimeMillis ) );
+			}
 
 			final String projectKey = qualityGateService.composeSonarProjectKey( project, sonarKey, branchName );
 			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.LOGIN, sonarUser ) );
@@ -61,8 +100,11 @@ public class SonarMavenLinkProjectToQualityGateMojo extends AbstractMojo {
 			getLog().info( String.format( "%s computed project key: %s", SonarStrings.LOG_PREFIX, projectKey ) );
 			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.QUALITY_GATE, qualityGateName ) );
 			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.PROJECT_KEY, projectKey ) );
+			getLog().info( String.format( "%s property '%s': %s", SonarStrings.LOG_PREFIX, SonarStrings.PROJECT_READY_TIMEOUT, projectReadyTimeout ) );
 			getLog().info( String.format( "%s link project '%s' to quality gate %s", SonarStrings.LOG_PREFIX, projectKey, qualityGateName ) );
+			qualityGateService.setProjectReadyTimeout( projectReadyTimeout );
 			qualityGateService.linkQualityGateToProject( client, projectKey, qualityGateName );
+			success = true;
 		}
 		catch ( final Exception e ) {
 			getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
@@ -72,5 +114,11 @@ public class SonarMavenLinkProjectToQualityGateMojo extends AbstractMojo {
 			                                               ExceptionUtils.getStackTrace( e ) )
 					, e );
 		}
+		finally {
+			if ( exportMetrics ) {
+				PluginMetrics.export( getLog(), metricsDirectory );
+			}
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
 	}
 }
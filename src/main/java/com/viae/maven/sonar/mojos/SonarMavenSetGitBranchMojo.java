@@ -5,8 +5,9 @@
 package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.services.FileSystemGitServiceImpl;
 import com.viae.maven.sonar.services.GitService;
-import com.viae.maven.sonar.services.GitServiceImpl;
 import com.viae.maven.sonar.utils.SpecialCharacterUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -15,8 +16,11 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
+
 /**
  * Mojo to set the sonar.branch property to the git branch name (if the property is not defined).
  * <p>
@@ -25,9 +29,11 @@ import org.apache.maven.project.MavenProject;
 @Mojo(name = SonarStrings.MOJO_NAME_SET_GIT_BRANCH, aggregator = true)
 public class SonarMavenSetGitBranchMojo extends AbstractMojo {
 
-	private final GitService gitService = new GitServiceImpl( getLog() );
+	private final GitService gitService = new FileSystemGitServiceImpl( getLog() );
 	@Component
 	protected MavenProject project;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
 
 	/**
 	 * Set the sonar.branch property to the git branch name (if the property is not defined).
@@ -37,13 +43,15 @@ public class SonarMavenSetGitBranchMojo extends AbstractMojo {
 	 */
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_SET_GIT_BRANCH );
+		boolean success = false;
 		String resultingBranchName;
 		getLog().info( String.format( "%s start execution of '%s'", SonarStrings.LOG_PREFIX, SonarStrings.MOJO_NAME_SET_GIT_BRANCH ) );
 		try {
 			final String existingBranchValue = project.getProperties().getProperty( SonarStrings.BRANCH );
 			getLog().info( String.format( "%s existing %s: '%s'", SonarStrings.LOG_PREFIX, SonarStrings.BRANCH, existingBranchValue ) );
 			if ( StringUtils.isBlank( existingBranchValue ) ) {
-				final String sonarBranchName = gitService.getBranchName( Runtime.getRuntime() );
+				final String sonarBranchName = GoalTimings.time( GoalTimings.GIT_LOOKUP, "branch", () -> gitService.getBranchName( Runtime.getRuntime() ) );
 				getLog().info( String.format( "%s set property '%s' to '%s'", SonarStrings.LOG_PREFIX, SonarStrings.BRANCH, sonarBranchName ) );
 				resultingBranchName = sonarBranchName;
 			}
@@ -51,6 +59,7 @@ public class SonarMavenSetGitBranchMojo extends AbstractMojo {
 				resultingBranchName = existingBranchValue;
 			}
 			project.getProperties().setProperty( SonarStrings.BRANCH, SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( resultingBranchName ) );
+			success = true;
 		}
 		catch ( final Exception e ) {
 			getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
@@ -60,5 +69,8 @@ public class SonarMavenSetGitBranchMojo extends AbstractMojo {
 			                                               ExceptionUtils.getStackTrace( e ) )
 					, e );
 		}
+		finally {
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
 	}
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.mojos;
+
+import com.viae.maven.sonar.config.SonarStrings;
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.http.CircuitBreaker;
+import com.viae.maven.sonar.http.HttpGateway;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SonarClientRegistry;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.services.SonarQualityGateService;
+import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
+import com.viae.maven.sonar.utils.JsonPath;
+import com.viae.maven.sonar.utils.LogUtil;
+import com.viae.maven.sonar.utils.SpecialCharacterUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.sonar.wsclient.SonarClient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * MOJO to validate the quality gates of a list of projects at once (e.g. all services of a release train before a deploy).
+ * <p>
+ * The project keys can contain the wildcards '*' and '?', those are resolved against the keys of all projects known to SONAR
+ * and the goal fails when a pattern matches no project.
+ * The current quality gate state of every project is validated concurrently on a bounded pool, one verdict lists all the failing projects.
+ * In bulk mode the states are fetched for many projects per call instead, which needs SONAR 6.2 or higher.
+ * When a quality gate is given, it is evaluated locally on the measures of the projects (fetched in bulk) instead of using the state SONAR computed.
+ */
+@Mojo(name = SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATES, aggregator = true, requiresProject = false)
+public class SonarMavenValidateQualityGatesMojo extends AbstractMojo {
+	public static final String COMPONENTS_SEARCH_URL = "/api/components/search";
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	private static final JsonPath COMPONENTS = JsonPath.field( "components" );
+	private static final JsonPath KEY = JsonPath.field( "key" );
+	private static final JsonPath PAGE_INDEX = JsonPath.compile( "paging.pageIndex" );
+	private static final JsonPath PAGE_SIZE = JsonPath.compile( "paging.pageSize" );
+	private static final JsonPath TOTAL = JsonPath.compile( "paging.total" );
+	private final SonarQualityGateService qualityGateService = new SonarQualityGateServiceImpl( getLog() );
+	@Parameter(property = SonarStrings.SERVER, required = true)
+	protected String sonarServer;
+	@Parameter(property = SonarStrings.LOGIN, required = true)
+	protected String sonarUser;
+	@Parameter(property = SonarStrings.PASSWORD, required = true)
+	protected String sonarPassword;
+	@Parameter(property = SonarStrings.PROJECT_KEYS, required = true)
+	protected List<String> projectKeys;
+	@Parameter(property = SonarStrings.BRANCHES)
+	protected List<String> branches;
+	@Parameter(property = SonarStrings.VALIDATE_PARALLELISM)
+	protected int parallelism = SonarMavenBuildBreakerMojo.DEFAULT_PARALLELISM;
+	@Parameter(property = SonarStrings.VALIDATE_BULK)
+	protected boolean bulk;
+	@Parameter(property = SonarStrings.QUALITY_GATE)
+	protected String qualityGateName;
+	@Parameter(property = SonarStrings.LOG_PAYLOAD_SIZE)
+	protected int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	@Parameter(property = SonarStrings.RETRY_MAX_RETRIES)
+	protected int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+	@Parameter(property = SonarStrings.RETRY_INTERVAL)
+	protected long retryInterval = RetryPolicy.DEFAULT_RETRY_INTERVAL;
+	@Parameter(property = SonarStrings.RATE_LIMIT_REQUESTS_PER_SECOND)
+	protected double requestsPerSecond = RateLimiter.DEFAULT_REQUESTS_PER_SECOND;
+	@Parameter(property = SonarStrings.RATE_LIMIT_BURST)
+	protected int rateLimitBurst = RateLimiter.DEFAULT_BURST;
+	@Parameter(property = SonarStrings.METRICS_EXPORT)
+	protected boolean exportMetrics;
+	@Parameter(property = SonarStrings.METRICS_DIRECTORY, defaultValue = "${project.build.directory}")
+	protected File metricsDirectory;
+
+	/**
+	 * Validate the quality gates of all the given projects.
+	 *
+	 * @throws MojoExecutionException will not be thrown.
+	 * @throws MojoFailureException   will be thrown when one or more projects don't pass their quality gate.
+	 */
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		GoalTimings.start( SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATES );
+		boolean success = false;
+		getLog().info( String.format( "%s start execution of '%s'", SonarStrings.LOG_PREFIX, SonarStrings.MOJO_NAME_VALIDATE_QUALITY_GATES ) );
+		getLog().info( String.format( "%s use sonar server '%s' and log in with user '%s'", SonarStrings.LOG_PREFIX, sonarServer, sonarUser ) );
+
+		try {
+			final SonarClient client = SonarClientRegistry.get( sonarServer, sonarUser, sonarPassword );
+			qualityGateService.setMaxLoggedPayloadLength( maxLoggedPayloadLength );
+			qualityGateService.setRetryPolicy( new RetryPolicy( maxRetries, retryInterval ) );
+			qualityGateService.setRateLimiter( RateLimiter.forHost( sonarServer, requestsPerSecond, rateLimitBurst ) );
+
+			final Set<String> resolvedProjectKeys = new LinkedHashSet<>();
+			List<String> allProjectKeys = null;
+			for ( final String projectKeyPattern : composeProjectKeyPatterns( projectKeys, branches ) ) {
+				if ( isPattern( projectKeyPattern ) ) {
+					if ( allProjectKeys == null ) {
+						allProjectKeys = findAllProjectKeys( client );
+					}
+					final List<String> matches = matchProjectKeys( projectKeyPattern, allProjectKeys );
+					getLog().info( String.format( "%s %s matches %s projects", SonarStrings.LOG_PREFIX, projectKeyPattern, matches.size() ) );
+					if ( matches.isEmpty() ) {
+						throw new SonarQualityException( String.format( "No SONAR projects match %s", projectKeyPattern ) );
+					}
+					resolvedProjectKeys.addAll( matches );
+				}
+				else {
+					resolvedProjectKeys.add( projectKeyPattern );
+				}
+			}
+			if ( resolvedProjectKeys.isEmpty() ) {
+				throw new SonarQualityException( String.format( "No SONAR projects match %s", projectKeys ) );
+			}
+			if ( StringUtils.isNotBlank( qualityGateName ) ) {
+				getLog().info( String.format( "%s evaluate quality gate '%s' locally for %s projects", SonarStrings.LOG_PREFIX, qualityGateName,
+				                              resolvedProjectKeys.size() ) );
+				qualityGateService.validateQualityGatesLocally( client, resolvedProjectKeys, qualityGateName.trim() );
+			}
+			else if ( bulk ) {
+				getLog().info( String.format( "%s validate %s projects, %s per call", SonarStrings.LOG_PREFIX, resolvedProjectKeys.size(),
+				                              SonarQualityGateServiceImpl.MEASURES_SEARCH_CHUNK_SIZE ) );
+				qualityGateService.validateQualityGatesInBulk( client, resolvedProjectKeys );
+			}
+			else {
+				getLog().info( String.format( "%s validate %s projects, %s at a time", SonarStrings.LOG_PREFIX, resolvedProjectKeys.size(), parallelism ) );
+				qualityGateService.validateQualityGates( client, resolvedProjectKeys, null, null, -1, parallelism );
+			}
+			getLog().info( String.format( "%s quality gates met for %s projects", SonarStrings.LOG_PREFIX, resolvedProjectKeys.size() ) );
+			success = true;
+		}
+		catch ( final Exception e ) {
+			getLog().error( String.format( "%s %s", SonarStrings.LOG_PREFIX, e.getLocalizedMessage() ) );
+			throw new MojoFailureException( String.format( "%s %s\ncause:\n%s",
+			                                               SonarStrings.LOG_PREFIX,
+			                                               e.getLocalizedMessage(),
+			                                               ExceptionUtils.getStackTrace( e ) )
+					, e );
+		}
+		finally {
+			if ( exportMetrics ) {
+				PluginMetrics.export( getLog(), metricsDirectory );
+			}
+			GoalTimings.finish( getLog(), metricsDirectory, success );
+		}
+	}
+
+	/**
+	 * @return every project key followed by every branch (i.e. projectKey:branch), the project keys as such when there are no branches.
+	 */
+	static List<String> composeProjectKeyPatterns( final Collection<String> projectKeys, final Collection<String> branches ) {
+		final List<String> patterns = new ArrayList<>();
+		for ( final String projectKey : projectKeys ) {
+			if ( StringUtils.isBlank( projectKey ) ) {
+				continue;
+			}
+			if ( branches == null || branches.stream().allMatch( StringUtils::isBlank ) ) {
+				patterns.add( projectKey.trim() );
+			}
+			else {
+				branches.stream()
+				        .filter( StringUtils::isNotBlank )
+				        .forEach( branch -> patterns.add( String.format( "%s:%s",
+				                                                         projectKey.trim(),
+				                                                         SpecialCharacterUtil.makeStringFreeOfSpecialCharacters( branch.trim() ) ) ) );
+			}
+		}
+		return patterns;
+	}
+
+	static boolean isPattern( final String projectKey ) {
+		return StringUtils.containsAny( projectKey, '*', '?' );
+	}
+
+	/**
+	 * @param glob, a project key with the wildcards '*' (any number of characters) and '?' (one character).
+	 * @return the regular expression matching the same project keys.
+	 */
+	static Pattern toRegularExpression( final String glob ) {
+		final StringBuilder regex = new StringBuilder();
+		final StringBuilder literal = new StringBuilder();
+		for ( final char c : glob.toCharArray() ) {
+			if ( c == '*' || c == '?' ) {
+				if ( literal.length() > 0 ) {
+					regex.append( Pattern.quote( literal.toString() ) );
+					literal.setLength( 0 );
+				}
+				regex.append( c == '*' ? ".*" : "." );
+			}
+			else {
+				literal.append( c );
+			}
+		}
+		if ( literal.length() > 0 ) {
+			regex.append( Pattern.quote( literal.toString() ) );
+		}
+		return Pattern.compile( regex.toString() );
+	}
+
+	/**
+	 * List the keys of all projects page by page. The search of SONAR matches names and whole keys, not parts of keys,
+	 * so the patterns are matched against this list instead.
+	 */
+	private List<String> findAllProjectKeys( final SonarClient client ) throws SonarQualityException {
+		final HttpGateway gateway = new HttpGateway( getLog(), new RetryPolicy( maxRetries, retryInterval ), CircuitBreaker.forClient( client ),
+		                                             RateLimiter.forHost( sonarServer, requestsPerSecond, rateLimitBurst ) );
+		final List<String> allProjectKeys = new ArrayList<>();
+		boolean hasNextPage = true;
+		for ( int page = 1; hasNextPage; page++ ) {
+			final Map<String, Object> parameters = new LinkedHashMap<>();
+			parameters.put( "qualifiers", "TRK" );
+			parameters.put( "p", page );
+			parameters.put( "ps", DEFAULT_PAGE_SIZE );
+			final String json = gateway.call( "GET", COMPONENTS_SEARCH_URL, () -> client.get( COMPONENTS_SEARCH_URL, parameters ) );
+			hasNextPage = readProjectKeys( json, allProjectKeys );
+		}
+		return allProjectKeys;
+	}
+
+	/**
+	 * @return the project keys that match the given pattern, in the given order.
+	 */
+	static List<String> matchProjectKeys( final String projectKeyPattern, final List<String> projectKeys ) {
+		final Pattern regex = toRegularExpression( projectKeyPattern );
+		return projectKeys.stream().filter( projectKey -> regex.matcher( projectKey ).matches() ).collect( Collectors.toList() );
+	}
+
+	/**
+	 * @return true when the SONAR server has more pages.
+	 */
+	static boolean readProjectKeys( final String json, final List<String> projectKeys ) throws SonarQualityException {
+		final List<String> components = COMPONENTS.readArray( json );
+		for ( final String component : components ) {
+			final String projectKey = KEY.read( component );
+			if ( projectKey != null ) {
+				projectKeys.add( projectKey );
+			}
+		}
+		final String pageIndex = PAGE_INDEX.read( json );
+		final String pageSize = PAGE_SIZE.read( json );
+		final String total = TOTAL.read( json );
+		return !components.isEmpty() && pageIndex != null && pageSize != null && total != null
+		       && Long.parseLong( pageIndex ) * Long.parseLong( pageSize ) < Long.parseLong( total );
+	}
+}
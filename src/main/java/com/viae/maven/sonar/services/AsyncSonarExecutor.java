@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import org.apache.commons.lang3.Validate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking SONAR calls off the caller's thread and exposes them as {@link CompletableFuture}s, with cancellation and timeouts.
+ * <p>
+ * The SONAR web service client blocks on I/O and Java 8 has no non-blocking HTTP client, so a worker thread is held while a call talks to the server.
+ * The waits between two polls don't hold a thread: the next poll is scheduled on a timer, so a few workers can follow many quality gates at once.
+ * Cancelling a future, or its timeout expiring, interrupts the call in progress and stops the polls that are still due.
+ */
+public class AsyncSonarExecutor implements AutoCloseable {
+	public static final int DEFAULT_POOL_SIZE = 8;
+
+	private final ExecutorService workers;
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * @param poolSize, the maximum number of SONAR calls in progress at the same time, at least 1.
+	 */
+	public AsyncSonarExecutor( final int poolSize ) {
+		Validate.isTrue( poolSize > 0, "The given pool size must be at least 1" );
+		this.workers = Executors.newFixedThreadPool( poolSize, daemonThreads( "sonar-async-" ) );
+		this.timer = new ScheduledThreadPoolExecutor( 1, daemonThreads( "sonar-async-timer-" ) );
+		this.timer.setRemoveOnCancelPolicy( true );
+	}
+
+	/**
+	 * @return the executor shared by all services that don't get one of their own, its threads don't keep the JVM alive.
+	 */
+	public static AsyncSonarExecutor shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	/**
+	 * Run the given call on a worker.
+	 *
+	 * @param call,    the blocking SONAR call, can't be null.
+	 * @param timeout, the time after which the future completes with a {@link TimeoutException}, {@code null} to wait forever.
+	 * @return the future result of the call, completed with the {@link SonarQualityException} of the call when it fails.
+	 */
+	public <T> CompletableFuture<T> supply( final SonarCall<T> call, final Duration timeout ) {
+		Validate.notNull( call, "The given call can't be null" );
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final AtomicReference<Future<?>> pending = cancelPendingWhenAborted( result );
+		submit( pending, () -> {
+			try {
+				result.complete( call.call() );
+			}
+			catch ( final Throwable e ) {
+				result.completeExceptionally( e );
+			}
+		} );
+		return withTimeout( result, timeout );
+	}
+
+	/**
+	 * Run the given poll on a worker until it returns a value, waiting on the given session in between without holding a thread.
+	 *
+	 * @param poll,     the blocking SONAR call, returns {@code null} as long as the awaited state isn't reached, can't be null.
+	 * @param session,  the poll session that decides the waits and the deadline, can't be null.
+	 * @param onExpiry, the error the future completes with when the session expires, can't be null.
+	 * @param timeout,  the time after which the future completes with a {@link TimeoutException}, {@code null} to wait forever.
+	 * @return the future first non {@code null} result of the poll.
+	 */
+	public <T> CompletableFuture<T> poll( final SonarCall<T> poll,
+	                                      final PollScheduler.PollSession session,
+	                                      final Supplier<SonarQualityException> onExpiry,
+	                                      final Duration timeout ) {
+		Validate.notNull( poll, "The given poll can't be null" );
+		Validate.notNull( session, "The given poll session can't be null" );
+		Validate.notNull( onExpiry, "The given expiry error can't be null" );
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final AtomicReference<Future<?>> pending = cancelPendingWhenAborted( result );
+		schedulePoll( poll, session, onExpiry, result, pending, 0 );
+		return withTimeout( result, timeout );
+	}
+
+	private <T> void schedulePoll( final SonarCall<T> poll,
+	                               final PollScheduler.PollSession session,
+	                               final Supplier<SonarQualityException> onExpiry,
+	                               final CompletableFuture<T> result,
+	                               final AtomicReference<Future<?>> pending,
+	                               final long delay ) {
+		if ( result.isDone() ) {
+			return;
+		}
+		// the wait itself isn't tracked: a poll that is due after the result is done, doesn't run
+		final long scheduled = System.nanoTime();
+		timer.schedule( GoalTimings.bind( () -> {
+			if ( delay > 0 ) {
+				GoalTimings.record( GoalTimings.WAIT, "poll", System.nanoTime() - scheduled );
+			}
+			if ( !result.isDone() ) {
+				submit( pending, () -> {
+					try {
+						final T value = poll.call();
+						if ( value != null ) {
+							result.complete( value );
+						}
+						else if ( session.isExpired() ) {
+							result.completeExceptionally( onExpiry.get() );
+						}
+						else {
+							schedulePoll( poll, session, onExpiry, result, pending, session.nextPollDelay() );
+						}
+					}
+					catch ( final Throwable e ) {
+						result.completeExceptionally( e );
+					}
+				} );
+			}
+		} ), delay, TimeUnit.MILLISECONDS );
+	}
+
+	/**
+	 * Run the given step on a worker, tracked as the task in progress before it can start and timed on the goal that submitted it.
+	 */
+	private void submit( final AtomicReference<Future<?>> pending, final Runnable step ) {
+		final FutureTask<Void> task = new FutureTask<>( GoalTimings.bind( step ), null );
+		pending.set( task );
+		workers.execute( task );
+	}
+
+	/**
+	 * @return the holder of the task in progress, which is interrupted when the result is cancelled or times out.
+	 */
+	private static AtomicReference<Future<?>> cancelPendingWhenAborted( final CompletableFuture<?> result ) {
+		final AtomicReference<Future<?>> pending = new AtomicReference<>();
+		result.whenComplete( ( value, error ) -> {
+			final Future<?> task = pending.get();
+			if ( task != null && ( result.isCancelled() || error instanceof TimeoutException ) ) {
+				task.cancel( true );
+			}
+		} );
+		return pending;
+	}
+
+	private <T> CompletableFuture<T> withTimeout( final CompletableFuture<T> result, final Duration timeout ) {
+		if ( timeout != null ) {
+			final ScheduledFuture<?> expiry = timer.schedule(
+					() -> result.completeExceptionally( new TimeoutException( String.format( "No result within %s ms", timeout.toMillis() ) ) ),
+					timeout.toMillis(), TimeUnit.MILLISECONDS );
+			result.whenComplete( ( value, error ) -> expiry.cancel( false ) );
+		}
+		return result;
+	}
+
+	@Override
+	public void close() {
+		timer.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	private static ThreadFactory daemonThreads( final String namePrefix ) {
+		final AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread( runnable, namePrefix + count.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		};
+	}
+
+	/**
+	 * A blocking SONAR call.
+	 */
+	@FunctionalInterface
+	public interface SonarCall<T> {
+		T call() throws SonarQualityException;
+	}
+
+	private static final class SharedHolder {
+		private static final AsyncSonarExecutor INSTANCE = new AsyncSonarExecutor( DEFAULT_POOL_SIZE );
+	}
+}
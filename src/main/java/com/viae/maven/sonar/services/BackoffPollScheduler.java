@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PollScheduler} with an exponential backoff: every wait is the previous one times the multiplier,
+ * randomized with the given jitter and capped on the max interval.
+ */
+public class BackoffPollScheduler implements PollScheduler {
+	public static final long DEFAULT_INITIAL_INTERVAL = 100;
+	public static final long DEFAULT_MAX_INTERVAL = 5000;
+	public static final double DEFAULT_MULTIPLIER = 2.0;
+	public static final double DEFAULT_JITTER = 0.2;
+
+	private final long initialInterval;
+	private final long maxInterval;
+	private final double multiplier;
+	private final double jitter;
+
+	public BackoffPollScheduler() {
+		this( DEFAULT_INITIAL_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_MULTIPLIER, DEFAULT_JITTER );
+	}
+
+	/**
+	 * @param initialInterval, the first wait in milliseconds, must be positive.
+	 * @param maxInterval,     the cap on a single wait in milliseconds, can't be smaller than the initial interval.
+	 * @param multiplier,      the factor applied on the wait after each poll, can't be smaller than 1.
+	 * @param jitter,          the random spread on each wait (e.g. 0.2 is +/- 20%), between 0 and 1.
+	 */
+	public BackoffPollScheduler( final long initialInterval, final long maxInterval, final double multiplier, final double jitter ) {
+		Validate.isTrue( initialInterval > 0, "The initial poll interval must be positive" );
+		Validate.isTrue( maxInterval >= initialInterval, "The max poll interval can't be smaller than the initial poll interval" );
+		Validate.isTrue( multiplier >= 1, "The poll multiplier can't be smaller than 1" );
+		Validate.isTrue( jitter >= 0 && jitter <= 1, "The poll jitter must be between 0 and 1" );
+		this.initialInterval = initialInterval;
+		this.maxInterval = maxInterval;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+
+	@Override
+	public PollSession start( final int secondsToWait ) {
+		return new BackoffPollSession( secondsToWait );
+	}
+
+	long computeInterval( final int pollCount ) {
+		final double interval = Math.min( maxInterval, initialInterval * Math.pow( multiplier, pollCount - 1 ) );
+		final double spread = jitter == 0 ? 0 : ThreadLocalRandom.current().nextDouble( -jitter, jitter );
+		return Math.max( 1, Math.min( maxInterval, Math.round( interval * ( 1 + spread ) ) ) );
+	}
+
+	private class BackoffPollSession implements PollSession {
+		private final long startNanos = System.nanoTime();
+		private final int secondsToWait;
+		private int pollCount = 1;
+
+		private BackoffPollSession( final int secondsToWait ) {
+			this.secondsToWait = secondsToWait;
+		}
+
+		@Override
+		public long nextPollDelay() {
+			long interval = computeInterval( pollCount );
+			if ( secondsToWait >= 0 ) {
+				// never wait past the moment the deadline budget expires
+				final long remaining = TimeUnit.SECONDS.toMillis( secondsToWait + 1L ) - elapsedMillis();
+				interval = Math.max( 0, Math.min( interval, remaining ) );
+			}
+			pollCount++;
+			return interval;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return getElapsedSeconds() > secondsToWait;
+		}
+
+		@Override
+		public long getElapsedSeconds() {
+			return TimeUnit.MILLISECONDS.toSeconds( elapsedMillis() );
+		}
+
+		@Override
+		public int getPollCount() {
+			return pollCount;
+		}
+
+		private long elapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startNanos );
+		}
+	}
+}
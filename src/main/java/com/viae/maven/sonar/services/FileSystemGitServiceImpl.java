@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.GitException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link GitService} that reads the git metadata (i.e. .git/HEAD and the refs) in-process, so no git process has to be forked.
+ * <p>
+ * Resolution order:
+ * <ol>
+ * <li>the branch HEAD points to, for a regular checkout, a worktree or a submodule (i.e. a .git file with a gitdir line);</li>
+ * <li>for a detached HEAD: the branch name set by the CI server (see {@link #CI_BRANCH_VARIABLES});</li>
+ * <li>for a detached HEAD: the single local branch (loose or packed ref) that points to the HEAD commit;</li>
+ * <li>for a detached HEAD: "HEAD", as git rev-parse --abbrev-ref HEAD does.</li>
+ * </ol>
+ * When no git directory is found, the CI variables are used and the git process is forked as a last resort.
+ */
+public class FileSystemGitServiceImpl implements GitService {
+    public static final List<String> CI_BRANCH_VARIABLES = Collections.unmodifiableList(Arrays.asList(
+            "GIT_BRANCH",           // Jenkins git plugin, prefixed with the remote (e.g. origin/master)
+            "BRANCH_NAME",          // Jenkins multibranch pipelines
+            "CI_COMMIT_REF_NAME",   // GitLab CI
+            "GITHUB_HEAD_REF",      // GitHub Actions, pull requests
+            "GITHUB_REF_NAME",      // GitHub Actions
+            "BITBUCKET_BRANCH",     // Bitbucket Pipelines
+            "bamboo_planRepository_branchName",
+            "TRAVIS_BRANCH",
+            "CIRCLE_BRANCH",
+            "BUILDKITE_BRANCH"));
+    public static final String DETACHED_HEAD = "HEAD";
+    private static final String GIT_DIR_VARIABLE = "GIT_DIR";
+    private static final String REF_PREFIX = "ref:";
+    private static final String GITDIR_PREFIX = "gitdir:";
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+    private static final String REMOTE_PREFIX = "origin/";
+
+    private final Log log;
+    private final File workingDirectory;
+    private final Map<String, String> environment;
+    private final GitService processGitService;
+
+    /**
+     * Read the git metadata of the current working directory, with the environment variables of this process.
+     *
+     * @param log, the logging service, can't be null.
+     */
+    public FileSystemGitServiceImpl(final Log log) {
+        this(log, new File(System.getProperty("user.dir")), System.getenv());
+    }
+
+    /**
+     * @param log,              the logging service, can't be null.
+     * @param workingDirectory, the directory from where the git directory is looked up, can't be null.
+     * @param environment,      the environment variables, can't be null.
+     */
+    public FileSystemGitServiceImpl(final Log log, final File workingDirectory, final Map<String, String> environment) {
+        Validate.notNull(log, "log can't be null");
+        Validate.notNull(workingDirectory, "working directory can't be null");
+        Validate.notNull(environment, "environment can't be null");
+        this.log = log;
+        this.workingDirectory = workingDirectory.getAbsoluteFile();
+        this.environment = environment;
+        this.processGitService = new GitServiceImpl(log);
+    }
+
+    @Override
+    public String getBranchName(final Runtime runtime) throws GitException {
+        try {
+            final File gitDirectory = findGitDirectory();
+            final String sonarBranchName;
+            if (gitDirectory == null) {
+                final String ciBranchName = getCiBranchName();
+                if (ciBranchName == null) {
+                    log.info(String.format("no git directory found from %s, fall back on the git command", workingDirectory));
+                    return processGitService.getBranchName(runtime);
+                }
+                sonarBranchName = ciBranchName;
+            } else {
+                sonarBranchName = getBranchName(gitDirectory);
+            }
+            log.info(String.format("set sonar.branch [%s]", sonarBranchName));
+            return sonarBranchName;
+        } catch (final IOException e) {
+            throw new GitException(e);
+        }
+    }
+
+    private String getBranchName(final File gitDirectory) throws IOException {
+        final String head = readFirstLine(new File(gitDirectory, "HEAD"));
+        if (head.startsWith(REF_PREFIX)) {
+            return StringUtils.removeStart(head.substring(REF_PREFIX.length()).trim(), BRANCH_REF_PREFIX);
+        }
+        final String ciBranchName = getCiBranchName();
+        if (ciBranchName != null) {
+            return ciBranchName;
+        }
+        final List<String> branches = findBranchesPointingTo(getCommonDirectory(gitDirectory), head);
+        if (branches.size() == 1) {
+            return branches.get(0);
+        }
+        log.info(String.format("detached HEAD at %s matches branches %s", head, branches));
+        return DETACHED_HEAD;
+    }
+
+    String getCiBranchName() {
+        for (final String variable : CI_BRANCH_VARIABLES) {
+            final String value = environment.get(variable);
+            if (StringUtils.isNotBlank(value)) {
+                return StringUtils.removeStart(StringUtils.removeStart(value.trim(), BRANCH_REF_PREFIX), REMOTE_PREFIX);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the git directory of the working directory or one of its parents, null when there is none.
+     */
+    File findGitDirectory() throws IOException {
+        final String gitDirVariable = environment.get(GIT_DIR_VARIABLE);
+        if (StringUtils.isNotBlank(gitDirVariable)) {
+            final File gitDirectory = resolve(workingDirectory, gitDirVariable);
+            return new File(gitDirectory, "HEAD").isFile() ? gitDirectory : null;
+        }
+        for (File directory = workingDirectory; directory != null; directory = directory.getParentFile()) {
+            final File dotGit = new File(directory, ".git");
+            if (dotGit.isDirectory()) {
+                return dotGit;
+            }
+            if (dotGit.isFile()) {
+                // worktree or submodule: the .git file points to the real git directory
+                final String gitdir = readFirstLine(dotGit);
+                if (gitdir.startsWith(GITDIR_PREFIX)) {
+                    return resolve(directory, gitdir.substring(GITDIR_PREFIX.length()).trim());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the directory that holds the refs, which differs from the git directory for a worktree.
+     */
+    private File getCommonDirectory(final File gitDirectory) throws IOException {
+        final File commondir = new File(gitDirectory, "commondir");
+        return commondir.isFile() ? resolve(gitDirectory, readFirstLine(commondir)) : gitDirectory;
+    }
+
+    private List<String> findBranchesPointingTo(final File commonDirectory, final String commit) throws IOException {
+        final TreeSet<String> branches = new TreeSet<>();
+        final Set<String> looseBranches = new HashSet<>();
+        final Path heads = new File(commonDirectory, BRANCH_REF_PREFIX).toPath();
+        if (Files.isDirectory(heads)) {
+            try (Stream<Path> refs = Files.walk(heads)) {
+                for (final Path ref : (Iterable<Path>) refs.filter(Files::isRegularFile)::iterator) {
+                    final String branch = heads.relativize(ref).toString().replace(File.separatorChar, '/');
+                    looseBranches.add(branch);
+                    if (commit.equals(readFirstLine(ref.toFile()))) {
+                        branches.add(branch);
+                    }
+                }
+            }
+        }
+        final File packedRefs = new File(commonDirectory, "packed-refs");
+        if (packedRefs.isFile()) {
+            for (final String line : Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+                // <sha> refs/heads/<branch>, comments start with # and peeled tags with ^
+                final String[] parts = StringUtils.split(line, ' ');
+                // a loose ref is more recent than its packed counterpart
+                if (parts.length == 2 && commit.equals(parts[0]) && parts[1].startsWith(BRANCH_REF_PREFIX)
+                        && !looseBranches.contains(parts[1].substring(BRANCH_REF_PREFIX.length()))) {
+                    branches.add(parts[1].substring(BRANCH_REF_PREFIX.length()));
+                }
+            }
+        }
+        return new ArrayList<>(branches);
+    }
+
+    private static File resolve(final File base, final String path) {
+        final File file = new File(path);
+        return file.isAbsolute() ? file : new File(base, path);
+    }
+
+    private static String readFirstLine(final File file) throws IOException {
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        return lines.isEmpty() ? "" : lines.get(0).trim();
+    }
+}
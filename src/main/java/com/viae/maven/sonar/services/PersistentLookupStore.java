@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.utils.HashUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * On-disk store behind a {@link SonarLookupCache}, so project ids and quality gate ids survive between builds.
+ * <p>
+ * There is one properties file per SONAR server (and user), each entry holds the format version, the creation time and the value.
+ * Entries of another format version or older than the TTL are ignored.
+ * Writers take a file lock and replace the file atomically, so builds running next to each other on the same agent can share the store
+ * and readers never see a half written file.
+ * The store is best effort: when the file can't be read or written, it behaves as an empty store.
+ */
+public class PersistentLookupStore {
+	public static final int FORMAT_VERSION = 1;
+	public static final long DEFAULT_TTL = TimeUnit.DAYS.toMillis( 7 );
+	public static final File DEFAULT_DIRECTORY = new File( System.getProperty( "user.home" ), ".m2/viae-sonar-cache" );
+	private static final Object JVM_LOCK = new Object();
+
+	private final File file;
+	private final File lockFile;
+	private final long ttl;
+	private final LongSupplier clock;
+
+	/**
+	 * @param directory, the directory of the store files, can't be null.
+	 * @param namespace, the SONAR server (and user) the entries belong to, can't be blank.
+	 * @param ttl,       the time to live of an entry in milliseconds, at least 0.
+	 * @param clock,     the clock that returns the current time in milliseconds, can't be null.
+	 */
+	public PersistentLookupStore( final File directory, final String namespace, final long ttl, final LongSupplier clock ) {
+		Validate.notNull( directory, "The given directory can't be null" );
+		Validate.notBlank( namespace, "The given namespace can't be blank" );
+		Validate.isTrue( ttl >= 0, "The given ttl can't be negative" );
+		Validate.notNull( clock, "The given clock can't be null" );
+		final String fileName = HashUtil.sha1Hex( namespace );
+		this.file = new File( directory, fileName + ".properties" );
+		this.lockFile = new File( directory, fileName + ".lock" );
+		this.ttl = ttl;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the stored value, {@code null} when absent, expired or of another format version.
+	 */
+	public String get( final String key ) {
+		final String entry = read().getProperty( key );
+		final String[] parts = StringUtils.split( StringUtils.defaultString( entry ), "|", 3 );
+		if ( parts.length != 3 || !String.valueOf( FORMAT_VERSION ).equals( parts[0] ) ) {
+			return null;
+		}
+		try {
+			return clock.getAsLong() - Long.parseLong( parts[1] ) <= ttl ? parts[2] : null;
+		}
+		catch ( final NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	public void put( final String key, final String value ) {
+		update( key, String.format( "%s|%s|%s", FORMAT_VERSION, clock.getAsLong(), value ) );
+	}
+
+	public void invalidate( final String key ) {
+		update( key, null );
+	}
+
+	private Properties read() {
+		final Properties properties = new Properties();
+		if ( file.isFile() ) {
+			try ( final InputStream inputStream = Files.newInputStream( file.toPath() ) ) {
+				properties.load( inputStream );
+			}
+			catch ( final IOException e ) {
+				properties.clear();
+			}
+		}
+		return properties;
+	}
+
+	private void update( final String key, final String entry ) {
+		// file locks are held per JVM, so threads of the same build are serialized before taking the file lock
+		synchronized ( JVM_LOCK ) {
+			try {
+				Files.createDirectories( file.getParentFile().toPath() );
+				try ( final FileChannel channel = FileChannel.open( lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+				      final FileLock lock = channel.lock() ) {
+					final Properties properties = read();
+					if ( entry == null ) {
+						properties.remove( key );
+					}
+					else {
+						properties.setProperty( key, entry );
+					}
+					final File temporaryFile = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+					try {
+						try ( final OutputStream outputStream = Files.newOutputStream( temporaryFile.toPath() ) ) {
+							properties.store( outputStream, String.format( "viae sonar lookup cache, format version %s", FORMAT_VERSION ) );
+						}
+						Files.move( temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+					}
+					finally {
+						Files.deleteIfExists( temporaryFile.toPath() );
+					}
+				}
+			}
+			catch ( final IOException e ) {
+				// best effort: the next lookup goes to the server
+			}
+		}
+	}
+}
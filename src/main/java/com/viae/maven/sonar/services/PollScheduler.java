@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.metrics.GoalTimings;
+
+/**
+ * Strategy that decides how long to wait between two polls on the SONAR server.
+ */
+public interface PollScheduler {
+
+	/**
+	 * Start a new poll session.
+	 *
+	 * @param secondsToWait, the deadline budget of the session: once more than this number of seconds has passed, the session is expired.
+	 * @return a fresh poll session, the initial poll is counted as the first one.
+	 */
+	PollSession start( int secondsToWait );
+
+	/**
+	 * State of one wait loop.
+	 */
+	interface PollSession {
+
+		/**
+		 * Move on to the next poll without blocking, for callers that schedule the poll themselves.
+		 *
+		 * @return the number of milliseconds until the next poll is due.
+		 */
+		long nextPollDelay();
+
+		/**
+		 * Block until the next poll is due.
+		 */
+		default void awaitNextPoll() {
+			final long start = System.nanoTime();
+			try {
+				Thread.sleep( nextPollDelay() );
+			}
+			catch ( final InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException( e );
+			}
+			finally {
+				GoalTimings.record( GoalTimings.WAIT, "poll", System.nanoTime() - start );
+			}
+		}
+
+		/**
+		 * @return true when the deadline budget of this session is used up.
+		 */
+		boolean isExpired();
+
+		/**
+		 * @return the number of seconds since the start of this session.
+		 */
+		long getElapsedSeconds();
+
+		/**
+		 * @return the number of polls done within this session (the initial poll included).
+		 */
+		int getPollCount();
+	}
+}
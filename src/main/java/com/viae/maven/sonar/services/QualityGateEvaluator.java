@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.json.simple.JSONValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluation of a quality gate against the raw measures of a project, without the SONAR server computing the gate.
+ * <p>
+ * Like SONAR, a condition is at error level when its error threshold is crossed, otherwise at warning level when its warning threshold is crossed.
+ * The operators GT, LT, EQ and NE are supported, GT and LT only on numeric values.
+ * Conditions without a measure (e.g. a metric the project doesn't have) or that can't be evaluated are left out of the result.
+ */
+public final class QualityGateEvaluator {
+	private static final String OP_GREATER_THAN = "GT";
+	private static final String OP_LESS_THAN = "LT";
+	private static final String OP_EQUALS = "EQ";
+	private static final String OP_NOT_EQUALS = "NE";
+
+	private QualityGateEvaluator() {
+	}
+
+	/**
+	 * @param metric, the key of the metric.
+	 * @param period, the index of the period, blank for the value of the metric itself.
+	 * @return the key of the value of the given metric (on the given period) in the measures of a project.
+	 */
+	public static String measureKey( final String metric, final String period ) {
+		return StringUtils.isBlank( period ) ? metric : String.format( "%s@%s", metric, period.trim() );
+	}
+
+	/**
+	 * @param qualityGate, the quality gate to evaluate, can't be null.
+	 * @param measures,    the values of the project per {@link #measureKey(String, String)}, can't be null.
+	 * @return the state of the project: the worst level of its conditions, without level when none of the conditions has a measure.
+	 */
+	public static QualityGateStatus evaluate( final QualityGateDefinition qualityGate, final Map<String, String> measures ) {
+		Validate.notNull( qualityGate, "The given quality gate can't be null" );
+		Validate.notNull( measures, "The given measures can't be null" );
+
+		String level = null;
+		final List<QualityGateStatus.Condition> conditions = new ArrayList<>();
+		for ( final QualityGateStatus.Condition condition : qualityGate.getConditions() ) {
+			final String actual = measures.get( measureKey( condition.getMetric(), condition.getPeriod() ) );
+			if ( StringUtils.isBlank( actual ) ) {
+				continue;
+			}
+			final String conditionLevel = evaluate( condition, actual );
+			if ( conditionLevel != null ) {
+				conditions.add( evaluated( condition, actual, conditionLevel ) );
+				level = worst( level, conditionLevel );
+			}
+		}
+		return new QualityGateStatus( level, conditions );
+	}
+
+	/**
+	 * @return the level of the given condition for the given value, {@code null} when it can't be evaluated.
+	 */
+	static String evaluate( final QualityGateStatus.Condition condition, final String actual ) {
+		final Boolean error = crosses( condition.getOp(), actual, condition.getError() );
+		if ( Boolean.TRUE.equals( error ) ) {
+			return QualityGateStatus.LEVEL_ERROR;
+		}
+		final Boolean warning = crosses( condition.getOp(), actual, condition.getWarning() );
+		if ( Boolean.TRUE.equals( warning ) ) {
+			return QualityGateStatus.LEVEL_WARN;
+		}
+		return error != null || warning != null ? QualityGateStatus.LEVEL_OK : null;
+	}
+
+	/**
+	 * @return true when the value crosses the threshold, {@code null} when there's no threshold or it can't be compared.
+	 */
+	private static Boolean crosses( final String op, final String actual, final String threshold ) {
+		if ( StringUtils.isBlank( threshold ) ) {
+			return null;
+		}
+		final double actualValue = NumberUtils.toDouble( actual, Double.NaN );
+		final double thresholdValue = NumberUtils.toDouble( threshold, Double.NaN );
+		final boolean numeric = !Double.isNaN( actualValue ) && !Double.isNaN( thresholdValue );
+		switch ( StringUtils.defaultString( op ).toUpperCase() ) {
+			case OP_GREATER_THAN:
+				return numeric ? actualValue > thresholdValue : null;
+			case OP_LESS_THAN:
+				return numeric ? actualValue < thresholdValue : null;
+			case OP_EQUALS:
+				return numeric ? actualValue == thresholdValue : actual.trim().equals( threshold.trim() );
+			case OP_NOT_EQUALS:
+				return numeric ? actualValue != thresholdValue : !actual.trim().equals( threshold.trim() );
+			default:
+				return null;
+		}
+	}
+
+	private static String worst( final String level, final String conditionLevel ) {
+		if ( QualityGateStatus.LEVEL_ERROR.equals( level ) || QualityGateStatus.LEVEL_ERROR.equals( conditionLevel ) ) {
+			return QualityGateStatus.LEVEL_ERROR;
+		}
+		if ( QualityGateStatus.LEVEL_WARN.equals( level ) || QualityGateStatus.LEVEL_WARN.equals( conditionLevel ) ) {
+			return QualityGateStatus.LEVEL_WARN;
+		}
+		return QualityGateStatus.LEVEL_OK;
+	}
+
+	/**
+	 * @return the given condition with its actual value and level, in the json format SONAR uses in the quality_gate_details measure.
+	 */
+	private static QualityGateStatus.Condition evaluated( final QualityGateStatus.Condition condition, final String actual, final String level ) {
+		final Map<String, Object> json = new LinkedHashMap<>();
+		json.put( "metric", condition.getMetric() );
+		json.put( "op", condition.getOp() );
+		if ( condition.getPeriod() != null ) {
+			json.put( "period", condition.getPeriod() );
+		}
+		if ( condition.getWarning() != null ) {
+			json.put( "warning", condition.getWarning() );
+		}
+		if ( condition.getError() != null ) {
+			json.put( "error", condition.getError() );
+		}
+		json.put( "actual", actual );
+		json.put( "level", level );
+		return new QualityGateStatus.Condition( condition.getMetric(),
+		                                        condition.getOp(),
+		                                        condition.getPeriod(),
+		                                        condition.getWarning(),
+		                                        condition.getError(),
+		                                        actual,
+		                                        level,
+		                                        JSONValue.toJSONString( json ) );
+	}
+}
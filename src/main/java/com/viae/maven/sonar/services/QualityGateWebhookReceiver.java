@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import com.viae.maven.sonar.utils.HashUtil;
+import com.viae.maven.sonar.utils.JsonPath;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Embedded HTTP listener that receives the SONAR webhook call sent when the analysis of a project is processed.
+ * <p>
+ * Receivers are shared per port within the maven session, so a receiver started before the analysis
+ * (e.g. by set-sonar-execution-start) keeps the payloads until validate-qualitygate asks for them.
+ * <p>
+ * The listener binds to the loopback address unless an other address is given. When a secret is given, only calls signed with it
+ * (i.e. the HMAC-SHA256 of the payload in the {@value #SIGNATURE_HEADER} header, as SONAR sends it for a webhook with a secret) are accepted.
+ * When the compute engine task of the analysis is known, only the payload of that task is taken, so an earlier call for the same project
+ * can't stand in for the result of this analysis.
+ */
+public class QualityGateWebhookReceiver implements Closeable {
+	public static final String DEFAULT_PATH = "/sonar-webhook";
+	public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+	public static final String SIGNATURE_HEADER = "X-Sonar-Webhook-HMAC-SHA256";
+	private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+	private static final JsonPath PROJECT_KEY = JsonPath.compile( "project.key" );
+	private static final JsonPath TASK_ID = JsonPath.field( "taskId" );
+	private static final Map<Integer, QualityGateWebhookReceiver> RECEIVERS = new ConcurrentHashMap<>();
+
+	private final Log logger;
+	private final String secret;
+	private final HttpServer server;
+	private final Map<String, CompletableFuture<String>> payloads = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<String>> taskPayloads = new ConcurrentHashMap<>();
+
+	private QualityGateWebhookReceiver( final Log logger, final String bindAddress, final int port, final String path, final String secret ) throws IOException {
+		this.logger = logger;
+		this.secret = secret;
+		this.server = HttpServer.create( new InetSocketAddress( bindAddress, port ), 0 );
+		this.server.createContext( path, this::handle );
+		this.server.start();
+	}
+
+	/**
+	 * Get the receiver listening on the given port, start one when there is none yet.
+	 *
+	 * @param logger,      the logging service, can't be null.
+	 * @param bindAddress, the address to listen on, blank for {@link #DEFAULT_BIND_ADDRESS}.
+	 * @param port,        the port to listen on (0 picks a free port and always starts a new receiver).
+	 * @param path,        the context path SONAR posts the webhook payload to.
+	 * @param secret,      the secret of the SONAR webhook, blank to accept unsigned calls.
+	 * @return the running receiver.
+	 * @throws SonarQualityException will be thrown when the listener can't be started.
+	 */
+	public static QualityGateWebhookReceiver start( final Log logger, final String bindAddress, final int port, final String path, final String secret )
+			throws SonarQualityException {
+		Validate.notNull( logger, "log can't be null" );
+		Validate.notBlank( path, "The given webhook path can't be blank" );
+		final QualityGateWebhookReceiver existing = RECEIVERS.get( port );
+		if ( existing != null ) {
+			return existing;
+		}
+		final String address = StringUtils.defaultIfBlank( bindAddress, DEFAULT_BIND_ADDRESS ).trim();
+		try {
+			final QualityGateWebhookReceiver receiver = new QualityGateWebhookReceiver( logger, address, port, path, StringUtils.trimToNull( secret ) );
+			RECEIVERS.put( receiver.getPort(), receiver );
+			logger.info( String.format( "listening for sonar webhook calls on %s:%s, path %s", address, receiver.getPort(), path ) );
+			if ( receiver.secret == null && !receiver.server.getAddress().getAddress().isLoopbackAddress() ) {
+				logger.warn( String.format( "the sonar webhook listener on %s accepts unsigned calls, configure the secret of the webhook", address ) );
+			}
+			return receiver;
+		}
+		catch ( final IOException | IllegalArgumentException e ) {
+			throw new SonarQualityException( String.format( "could not start sonar webhook listener on %s:%s", address, port ), e );
+		}
+	}
+
+	/**
+	 * @return the port this receiver listens on.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Wait until SONAR posts the webhook payload of the given project.
+	 *
+	 * @param projectKey,    the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param secondsToWait, the interval that you will wait for the payload before going in a timeout.
+	 * @return the raw webhook payload.
+	 * @throws SonarQualityException will be thrown when no payload arrived in time.
+	 */
+	public String awaitPayload( final String projectKey, final int secondsToWait ) throws SonarQualityException {
+		return awaitPayload( projectKey, null, secondsToWait );
+	}
+
+	/**
+	 * Wait until SONAR posts the webhook payload of the given compute engine task of the given project.
+	 *
+	 * @param projectKey,    the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param ceTaskId,      the id of the compute engine task processing the analysis (i.e. ceTaskId in report-task.txt), blank to take the last payload of the project.
+	 * @param secondsToWait, the interval that you will wait for the payload before going in a timeout.
+	 * @return the raw webhook payload.
+	 * @throws SonarQualityException will be thrown when no payload arrived in time.
+	 */
+	public String awaitPayload( final String projectKey, final String ceTaskId, final int secondsToWait ) throws SonarQualityException {
+		Validate.notBlank( projectKey, "The given project key can't be blank" );
+		final String taskId = StringUtils.trimToNull( ceTaskId );
+		final long start = System.nanoTime();
+		try {
+			final String payload = ( taskId != null ? taskPayloadFor( taskId ) : payloadFor( projectKey ) ).get( secondsToWait, TimeUnit.SECONDS );
+			if ( taskId != null && !projectKey.equals( PROJECT_KEY.read( payload ) ) ) {
+				throw new SonarQualityException( String.format( "The sonar webhook call of task %s is for project %s, not for %s", taskId, PROJECT_KEY.read( payload ), projectKey ) );
+			}
+			return payload;
+		}
+		catch ( final TimeoutException e ) {
+			throw new SonarQualityException( String.format( "We waited for %s seconds, but no sonar webhook call for %s%s arrived.", secondsToWait, projectKey,
+			                                                taskId != null ? String.format( " (task %s)", taskId ) : "" ), e );
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new SonarQualityException( "interrupted while waiting for the sonar webhook call", e );
+		}
+		catch ( final ExecutionException e ) {
+			throw new SonarQualityException( "error while waiting for the sonar webhook call", e );
+		}
+		finally {
+			GoalTimings.record( GoalTimings.WAIT, "webhook", System.nanoTime() - start );
+		}
+	}
+
+	@Override
+	public void close() {
+		RECEIVERS.remove( getPort(), this );
+		server.stop( 0 );
+	}
+
+	private CompletableFuture<String> payloadFor( final String projectKey ) {
+		return payloads.computeIfAbsent( projectKey, key -> new CompletableFuture<>() );
+	}
+
+	private CompletableFuture<String> taskPayloadFor( final String taskId ) {
+		return taskPayloads.computeIfAbsent( taskId, key -> new CompletableFuture<>() );
+	}
+
+	private void handle( final HttpExchange exchange ) throws IOException {
+		int status = 200;
+		try {
+			final byte[] body = read( exchange.getRequestBody() );
+			if ( !"POST".equalsIgnoreCase( exchange.getRequestMethod() ) ) {
+				status = 405;
+			}
+			else if ( !isSigned( body, exchange.getRequestHeaders().getFirst( SIGNATURE_HEADER ) ) ) {
+				logger.warn( String.format( "rejected sonar webhook call without valid %s header", SIGNATURE_HEADER ) );
+				status = 401;
+			}
+			else {
+				final String payload = new String( body, StandardCharsets.UTF_8 );
+				final String projectKey = PROJECT_KEY.read( payload );
+				if ( StringUtils.isBlank( projectKey ) ) {
+					status = 400;
+				}
+				else {
+					final String taskId = TASK_ID.read( payload );
+					logger.info( String.format( "received sonar webhook call for %s, task %s", projectKey, taskId ) );
+					final CompletableFuture<String> future = payloadFor( projectKey );
+					if ( !future.complete( payload ) ) {
+						// a newer analysis of the same project replaces the previous result
+						payloads.put( projectKey, CompletableFuture.completedFuture( payload ) );
+					}
+					if ( StringUtils.isNotBlank( taskId ) ) {
+						taskPayloadFor( taskId ).complete( payload );
+					}
+				}
+			}
+		}
+		catch ( final SonarQualityException | RuntimeException e ) {
+			logger.error( String.format( "could not handle sonar webhook call: %s", e.getLocalizedMessage() ) );
+			status = 400;
+		}
+		exchange.sendResponseHeaders( status, -1 );
+		exchange.close();
+	}
+
+	/**
+	 * @return true when no secret is configured or the given signature is the HMAC-SHA256 of the body with the secret.
+	 */
+	private boolean isSigned( final byte[] body, final String signature ) {
+		if ( secret == null ) {
+			return true;
+		}
+		return signature != null
+		       && MessageDigest.isEqual( sign( secret, body ).getBytes( StandardCharsets.US_ASCII ),
+		                                 signature.trim().toLowerCase().getBytes( StandardCharsets.US_ASCII ) );
+	}
+
+	/**
+	 * @return the HMAC-SHA256 of the given body with the given secret, hex encoded, the way SONAR signs its webhook calls.
+	 */
+	static String sign( final String secret, final byte[] body ) {
+		try {
+			final Mac mac = Mac.getInstance( SIGNATURE_ALGORITHM );
+			mac.init( new SecretKeySpec( secret.getBytes( StandardCharsets.UTF_8 ), SIGNATURE_ALGORITHM ) );
+			return HashUtil.hex( mac.doFinal( body ) );
+		}
+		catch ( final GeneralSecurityException e ) {
+			throw new IllegalStateException( "HMAC-SHA256 is not available", e );
+		}
+	}
+
+	private byte[] read( final InputStream inputStream ) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ( ( read = inputStream.read( buffer ) ) != -1 ) {
+			outputStream.write( buffer, 0, read );
+		}
+		return outputStream.toByteArray();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.apache.commons.lang3.Validate;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of SONAR lookups (i.e. project ids, quality gate ids and quality gate definitions) that don't change within a build.
+ * <p>
+ * There is one cache per {@link SonarClient}. As the clients are shared per server and credentials (see {@link com.viae.maven.sonar.http.SonarClientRegistry}),
+ * all goals of a maven session that talk to the same server share the same cache. Entries expire after a TTL.
+ * Optionally, a {@link PersistentLookupStore} backs the cache, so the entries survive between builds.
+ */
+public class SonarLookupCache {
+	public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis( 30 );
+	private static final Map<SonarClient, SonarLookupCache> SESSION_CACHES = Collections.synchronizedMap( new WeakHashMap<>() );
+
+	private final long ttl;
+	private final LongSupplier clock;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile PersistentLookupStore persistentStore;
+
+	/**
+	 * @param ttl,   the time to live of an entry in milliseconds, at least 0.
+	 * @param clock, the clock that returns the current time in milliseconds, can't be null.
+	 */
+	public SonarLookupCache( final long ttl, final LongSupplier clock ) {
+		Validate.isTrue( ttl >= 0, "The given ttl can't be negative" );
+		Validate.notNull( clock, "The given clock can't be null" );
+		this.ttl = ttl;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param client, the SONAR client, can't be null.
+	 * @return the cache shared by all users of the given client.
+	 */
+	public static SonarLookupCache forClient( final SonarClient client ) {
+		Validate.notNull( client, "The given Sonar client can't be null" );
+		synchronized ( SESSION_CACHES ) {
+			return SESSION_CACHES.computeIfAbsent( client, key -> new SonarLookupCache( DEFAULT_TTL, System::currentTimeMillis ) );
+		}
+	}
+
+	/**
+	 * @param persistentStore, the store to read missing entries from and write new entries to, {@code null} to keep the entries in memory only.
+	 */
+	public void setPersistentStore( final PersistentLookupStore persistentStore ) {
+		this.persistentStore = persistentStore;
+	}
+
+	public static String projectIdKey( final String projectKey ) {
+		return "project-id:" + projectKey;
+	}
+
+	public static String qualityGateIdKey( final String qualityGateName ) {
+		return "quality-gate-id:" + qualityGateName;
+	}
+
+	public static String qualityGateDefinitionKey( final String qualityGateName ) {
+		return "quality-gate-definition:" + qualityGateName;
+	}
+
+	/**
+	 * @return the cached value, {@code null} when absent or expired.
+	 */
+	public String get( final String key ) {
+		final Entry entry = entries.get( key );
+		if ( entry != null && clock.getAsLong() - entry.created > ttl ) {
+			entries.remove( key, entry );
+		}
+		else if ( entry != null ) {
+			return entry.value;
+		}
+		final PersistentLookupStore store = persistentStore;
+		final String value = store != null ? store.get( key ) : null;
+		if ( value != null ) {
+			entries.put( key, new Entry( value, clock.getAsLong() ) );
+		}
+		return value;
+	}
+
+	/**
+	 * Store the given value, a {@code null} value removes the entry.
+	 */
+	public void put( final String key, final String value ) {
+		if ( value == null ) {
+			invalidate( key );
+		}
+		else {
+			entries.put( key, new Entry( value, clock.getAsLong() ) );
+			final PersistentLookupStore store = persistentStore;
+			if ( store != null ) {
+				store.put( key, value );
+			}
+		}
+	}
+
+	public void invalidate( final String key ) {
+		entries.remove( key );
+		final PersistentLookupStore store = persistentStore;
+		if ( store != null ) {
+			store.invalidate( key );
+		}
+	}
+
+	private static final class Entry {
+		private final String value;
+		private final long created;
+
+		private Entry( final String value, final long created ) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+}
@@ -5,11 +5,19 @@
 package com.viae.maven.sonar.services;
 
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
 import org.apache.maven.project.MavenProject;
 import org.sonar.wsclient.SonarClient;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service to validate (a) SONAR quality gate(s).
@@ -49,6 +57,189 @@ public interface SonarQualityGateService {
 	                          LocalDateTime executionStart,
 	                          int secondsToWait ) throws SonarQualityException;
 
+	/**
+	 * Get the current quality gate state of several projects in bulk: the measures of up to {@link SonarQualityGateServiceImpl#MEASURES_SEARCH_CHUNK_SIZE}
+	 * projects are fetched per call (i.e. /api/measures/search, SONAR 6.2 and higher), instead of one call per project.
+	 *
+	 * @param client,      the SONAR configuration.
+	 * @param projectKeys, the identifiers of the projects (e.g. groupId:ArtifactId:branchId), can't be empty.
+	 * @return the state per project, in the order of the given keys, without level for projects that have no quality gate details.
+	 * @throws SonarQualityException will be thrown when the states can't be fetched.
+	 */
+	Map<String, QualityGateStatus> getQualityGateStatuses( SonarClient client, Collection<String> projectKeys ) throws SonarQualityException;
+
+	/**
+	 * Validate the current quality gate state of several projects, fetched in bulk (see {@link #getQualityGateStatuses(SonarClient, Collection)}), and report one verdict.
+	 *
+	 * @param client,      the SONAR configuration.
+	 * @param projectKeys, the identifiers of the projects (e.g. groupId:ArtifactId:branchId), can't be empty.
+	 * @throws SonarQualityException will be thrown when one or more projects don't pass their quality gate or have no measures at all
+	 *                               (i.e. unknown to SONAR or not analysed yet), listing all of them.
+	 */
+	void validateQualityGatesInBulk( SonarClient client, Collection<String> projectKeys ) throws SonarQualityException;
+
+	/**
+	 * Get the definition of a quality gate (i.e. /api/qualitygates/show), it is only fetched once per SONAR client.
+	 *
+	 * @param client,          the SONAR configuration.
+	 * @param qualityGateName, the name of the quality gate, can't be blank.
+	 * @return the conditions of the quality gate.
+	 * @throws SonarQualityException will be thrown when the definition can't be fetched.
+	 */
+	QualityGateDefinition getQualityGateDefinition( SonarClient client, String qualityGateName ) throws SonarQualityException;
+
+	/**
+	 * Evaluate the given quality gate locally (see {@link QualityGateEvaluator}) for several projects, instead of using the state SONAR computed.
+	 * The measures of the metrics of the gate are fetched in bulk (see {@link #getQualityGateStatuses(SonarClient, Collection)}),
+	 * so the gate doesn't have to be linked to the projects (e.g. to try a stricter gate before it's applied).
+	 *
+	 * @param client,      the SONAR configuration.
+	 * @param projectKeys, the identifiers of the projects (e.g. groupId:ArtifactId:branchId), can't be empty.
+	 * @param qualityGate, the quality gate to evaluate, can't be null.
+	 * @return the state per project, in the order of the given keys, without level for projects that have none of the measures.
+	 * @throws SonarQualityException will be thrown when the measures can't be fetched.
+	 */
+	Map<String, QualityGateStatus> evaluateQualityGates( SonarClient client, Collection<String> projectKeys, QualityGateDefinition qualityGate ) throws SonarQualityException;
+
+	/**
+	 * Evaluate the given quality gate locally for several projects (see {@link #evaluateQualityGates(SonarClient, Collection, QualityGateDefinition)}) and report one verdict.
+	 *
+	 * @param client,          the SONAR configuration.
+	 * @param projectKeys,     the identifiers of the projects (e.g. groupId:ArtifactId:branchId), can't be empty.
+	 * @param qualityGateName, the name of the quality gate to evaluate, can't be blank.
+	 * @throws SonarQualityException will be thrown when one or more projects don't pass the quality gate or have no measures at all
+	 *                               (i.e. unknown to SONAR or not analysed yet), listing all of them.
+	 */
+	void validateQualityGatesLocally( SonarClient client, Collection<String> projectKeys, String qualityGateName ) throws SonarQualityException;
+
+	/**
+	 * Validate the quality gates of several projects (e.g. the modules of a multi-module build that each have their own project key) and report one verdict.
+	 * The projects are polled concurrently, so the validation takes about as long as the slowest project instead of the sum of all projects.
+	 *
+	 * @param client,          the SONAR configuration.
+	 * @param projectKeys,     the identifiers of the projects (e.g. groupId:ArtifactId:branchId), can't be empty.
+	 * @param qualityGateName, the name of the quality gate.
+	 * @param executionStart,  a timestamp before the sonar validation run started, {@code null} to validate the last run right away.
+	 * @param secondsToWait,   the interval that you will wait for the new run of each project before going in a timeout.
+	 * @param parallelism,     the maximum number of projects that are polled at the same time, at least 1.
+	 * @throws SonarQualityException will be thrown when one or more projects don't pass their quality gate, listing all of them.
+	 */
+	void validateQualityGates( SonarClient client,
+	                           Collection<String> projectKeys,
+	                           String qualityGateName,
+	                           LocalDateTime executionStart,
+	                           int secondsToWait,
+	                           int parallelism ) throws SonarQualityException;
+
+	/**
+	 * Validate the quality gates of several projects like {@link #validateQualityGates(SonarClient, Collection, String, LocalDateTime, int, int)},
+	 * every project waiting for the run after its own execution start.
+	 *
+	 * @param client,          the SONAR configuration.
+	 * @param executionStarts, per identifier of a project (e.g. groupId:ArtifactId:branchId) a timestamp before its sonar validation run started,
+	 *                         {@code null} to validate its last run right away; can't be empty.
+	 * @param qualityGateName, the name of the quality gate.
+	 * @param secondsToWait,   the interval that you will wait for the new run of each project before going in a timeout.
+	 * @param parallelism,     the maximum number of projects that are polled at the same time, at least 1.
+	 * @throws SonarQualityException will be thrown when one or more projects don't pass their quality gate, listing all of them.
+	 */
+	void validateQualityGates( SonarClient client, Map<String, LocalDateTime> executionStarts, String qualityGateName, int secondsToWait, int parallelism )
+			throws SonarQualityException;
+
+	/**
+	 * Asynchronous variant of {@link #validateQualityGate(SonarClient, String, String, LocalDateTime, int)}: the waits between two polls don't hold a thread.
+	 *
+	 * @param client,          the SONAR configuration.
+	 * @param projectKey,      the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param qualityGateName, the name of the quality gate.
+	 * @param executionStart,  a timestamp before the sonar validation run started, {@code null} to validate the last run right away.
+	 * @param secondsToWait,   the interval that you will wait for the new run before the future completes with a {@link SonarQualityException}.
+	 * @param timeout,         the time after which the future completes with a {@link java.util.concurrent.TimeoutException}, {@code null} to wait forever.
+	 * @return the future status of the passed quality gate, completed with a {@link SonarQualityException} when the project doesn't pass it.
+	 * Cancelling the future stops the polls.
+	 */
+	CompletableFuture<QualityGateStatus> validateQualityGateAsync( SonarClient client,
+	                                                               String projectKey,
+	                                                               String qualityGateName,
+	                                                               LocalDateTime executionStart,
+	                                                               int secondsToWait,
+	                                                               Duration timeout );
+
+	/**
+	 * Validate if the quality gate linked to the given project is passed, once the given compute engine task is done.
+	 *
+	 * @param client,        the SONAR configuration.
+	 * @param projectKey,    the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param ceTaskId,      the id of the compute engine task processing the analysis (i.e. ceTaskId in report-task.txt).
+	 * @param secondsToWait, the interval that you will wait for the task to finish before going in a timeout.
+	 * @throws SonarQualityException will be thrown when the task fails or when the given project doesn't pass the linked quality gate.
+	 */
+	void validateQualityGateForTask( SonarClient client, String projectKey, String ceTaskId, int secondsToWait ) throws SonarQualityException;
+
+	/**
+	 * Validate if the quality gate linked to the given project is passed, based on the webhook call SONAR sends once the analysis is processed.
+	 *
+	 * @param receiver,      the running webhook receiver.
+	 * @param projectKey,    the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param secondsToWait, the interval that you will wait for the webhook call before going in a timeout.
+	 * @throws SonarQualityException will be thrown when no call arrives in time or when the given project doesn't pass the linked quality gate.
+	 */
+	void validateQualityGateFromWebhook( QualityGateWebhookReceiver receiver, String projectKey, int secondsToWait ) throws SonarQualityException;
+
+	/**
+	 * Validate if the quality gate linked to the given project is passed, based on the webhook call SONAR sends once the given compute engine task is done.
+	 * Webhook calls of other tasks (e.g. an earlier analysis of the same project) are ignored.
+	 *
+	 * @param receiver,      the running webhook receiver.
+	 * @param projectKey,    the identifier of the project (e.g. groupId:ArtifactId:branchId).
+	 * @param ceTaskId,      the id of the compute engine task processing the analysis (i.e. ceTaskId in report-task.txt), null when unknown.
+	 * @param secondsToWait, the interval that you will wait for the webhook call before going in a timeout.
+	 * @throws SonarQualityException will be thrown when no call arrives in time or when the given project doesn't pass the linked quality gate.
+	 */
+	void validateQualityGateFromWebhook( QualityGateWebhookReceiver receiver, String projectKey, String ceTaskId, int secondsToWait ) throws SonarQualityException;
+
+	/**
+	 * Set the strategy used to wait between two polls while waiting for new SONAR results.
+	 *
+	 * @param pollScheduler, the poll scheduler, can't be null.
+	 */
+	void setPollScheduler( PollScheduler pollScheduler );
+
+	/**
+	 * Set the executor the asynchronous variants run their SONAR calls on.
+	 *
+	 * @param asyncExecutor, the executor, can't be null (default {@link AsyncSonarExecutor#shared()}).
+	 */
+	void setAsyncExecutor( AsyncSonarExecutor asyncExecutor );
+
+	/**
+	 * Set the interval to wait for a looked up or created project to become visible before it is linked to the quality gate.
+	 *
+	 * @param secondsToWait, the interval in seconds, at least 0.
+	 */
+	void setProjectReadyTimeout( int secondsToWait );
+
+	/**
+	 * Set how much of a SONAR response is logged at info level, the full response is logged at debug level.
+	 *
+	 * @param maxLength, the maximum number of characters, 0 to log the length only.
+	 */
+	void setMaxLoggedPayloadLength( int maxLength );
+
+	/**
+	 * Set how the SONAR calls are retried when the server is unavailable.
+	 *
+	 * @param retryPolicy, the retry policy, can't be null.
+	 */
+	void setRetryPolicy( RetryPolicy retryPolicy );
+
+	/**
+	 * Set the limiter that caps the rate of the SONAR calls, every attempt of a call takes a token.
+	 *
+	 * @param rateLimiter, the rate limiter (e.g. {@link RateLimiter#forHost(String, double, int)}), can't be null.
+	 */
+	void setRateLimiter( RateLimiter rateLimiter );
+
 	/**
 	 * Link the given the given quality gate (i.e. via the qualityGateName) to the given project (i.e. via the projectKey).
 	 *
@@ -59,6 +250,14 @@ public interface SonarQualityGateService {
 	 */
 	void linkQualityGateToProject( SonarClient client, String projectKey, String qualityGateName ) throws SonarQualityException;
 
+	/**
+	 * Asynchronous variant of {@link #linkQualityGateToProject(SonarClient, String, String)}.
+	 *
+	 * @param timeout, the time after which the future completes with a {@link java.util.concurrent.TimeoutException}, {@code null} to wait forever.
+	 * @return the future that completes when the quality gate is linked, or with a {@link SonarQualityException} when linking fails.
+	 */
+	CompletableFuture<Void> linkQualityGateToProjectAsync( SonarClient client, String projectKey, String qualityGateName, Duration timeout );
+
 	/**
 	 * Get the timestamp of the last sonar run.
 	 *
@@ -69,6 +268,14 @@ public interface SonarQualityGateService {
 	 */
 	LocalDateTime getLastRunTimeStamp( SonarClient client, String projectKey, String qualityGateName ) throws SonarQualityException;
 
+	/**
+	 * Asynchronous variant of {@link #getLastRunTimeStamp(SonarClient, String, String)}.
+	 *
+	 * @param timeout, the time after which the future completes with a {@link java.util.concurrent.TimeoutException}, {@code null} to wait forever.
+	 * @return the future timestamp of the last sonar run.
+	 */
+	CompletableFuture<LocalDateTime> getLastRunTimeStampAsync( SonarClient client, String projectKey, String qualityGateName, Duration timeout );
+
 	/**
 	 * Compose the project key used by SONAR based on the project key and an optional branch name.
 	 * If projectKey is blank, the projectKey will be composed as groupId:artifactId like put in the project configuration.
@@ -5,7 +5,17 @@
 package com.viae.maven.sonar.services;
 
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.http.CircuitBreaker;
+import com.viae.maven.sonar.http.HttpGateway;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.http.SingleFlight;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
+import com.viae.maven.sonar.utils.JsonPath;
 import com.viae.maven.sonar.utils.JsonUtil;
+import com.viae.maven.sonar.utils.LogUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -17,10 +27,22 @@ import org.sonar.wsclient.base.HttpException;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Vandeperre Maarten on 30/04/2016.
@@ -28,14 +50,93 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 
 	public static final String QUALITY_GATE_QUERY_URL = "/api/resources/index?metrics=quality_gate_details&format=json&resource=%s";
-	private static final int SLEEP_INTERVAL = 100;
+	public static final String CE_TASK_QUERY_URL = "/api/ce/task?id=%s";
+	public static final String QUALITY_GATE_BY_PROJECT_URL = "/api/qualitygates/get_by_project?project=%s";
+	public static final String RESOURCE_QUERY_URL = "/api/resources?format=json&resource=%s";
+	public static final String PROJECT_INDEX_URL = "/api/projects/index?format=json&key=%s";
+	public static final String QUALITY_GATE_SHOW_URL = "/api/qualitygates/show?name=%s";
+	public static final String MEASURES_SEARCH_URL = "/api/measures/search";
+	public static final int MEASURES_SEARCH_CHUNK_SIZE = 50;
+	public static final int DEFAULT_PROJECT_READY_TIMEOUT = 60;
+	private static final String QUALITY_GATE_DETAILS = "quality_gate_details";
+	private static final String ALERT_STATUS = "alert_status";
+	private static final String TASK_STATUS_SUCCESS = "SUCCESS";
+	private static final String TASK_STATUS_PENDING = "PENDING";
+	private static final String TASK_STATUS_IN_PROGRESS = "IN_PROGRESS";
 	private static final String LEVEL_ERROR = "ERROR";
-	private static final String FIELD_LEVEL = "level";
-	private static final String FIELD_CONDITIONS = "conditions";
+	private static final String VERDICT_MODE_LAST_RUN = "last-run";
+	private static final String VERDICT_MODE_TIMESTAMP = "timestamp";
+	private static final String VERDICT_MODE_CE_TASK = "ce-task";
+	private static final String VERDICT_MODE_WEBHOOK = "webhook";
+	private static final String VERDICT_MODE_BULK = "bulk";
+	private static final String VERDICT_MODE_LOCAL = "local";
+	private static final String WAIT_NEW_RESULTS = "new-results";
+	private static final String WAIT_CE_TASK = "ce-task";
+	private static final String WAIT_PROJECT_READY = "project-ready";
+	private static final JsonPath TASK_STATUS = JsonPath.compile( "task.status" );
+	private static final JsonPath WEBHOOK_TASK_STATUS = JsonPath.field( "status" );
+	private static final JsonPath WEBHOOK_GATE_STATUS = JsonPath.compile( "qualityGate.status" );
+	private static final JsonPath CURRENT_QUALITY_GATE_ID = JsonPath.compile( "qualityGate.id" );
+	private static final JsonPath CURRENT_QUALITY_GATE_DEFAULT = JsonPath.compile( "qualityGate.default" );
+	private static final JsonPath WEBHOOK_GATE_CONDITIONS = JsonPath.compile( "qualityGate.conditions" );
+	private static final JsonPath MEASURES = JsonPath.field( "measures" );
+	private static final JsonPath MEASURE_COMPONENT = JsonPath.field( "component" );
+	private static final JsonPath MEASURE_METRIC = JsonPath.field( "metric" );
+	private static final JsonPath MEASURE_VALUE = JsonPath.field( "value" );
+	private static final JsonPath MEASURE_PERIODS = JsonPath.field( "periods" );
+	private static final JsonPath PERIOD_INDEX = JsonPath.field( "index" );
+	private static final JsonPath PERIOD_VALUE = JsonPath.field( "value" );
 	private final Log logger;
+	private PollScheduler pollScheduler;
+	private int projectReadyTimeout = DEFAULT_PROJECT_READY_TIMEOUT;
+	private AsyncSonarExecutor asyncExecutor = AsyncSonarExecutor.shared();
+	private int maxLoggedPayloadLength = LogUtil.DEFAULT_MAX_PAYLOAD_LENGTH;
+	private RetryPolicy retryPolicy = new RetryPolicy();
+	private RateLimiter rateLimiter = RateLimiter.UNLIMITED;
 
 	public SonarQualityGateServiceImpl( final Log logger ) {
+		this( logger, new BackoffPollScheduler() );
+	}
+
+	public SonarQualityGateServiceImpl( final Log logger, final PollScheduler pollScheduler ) {
 		this.logger = logger;
+		setPollScheduler( pollScheduler );
+	}
+
+	@Override
+	public void setPollScheduler( final PollScheduler pollScheduler ) {
+		Validate.notNull( pollScheduler, "The given poll scheduler can't be null" );
+		this.pollScheduler = pollScheduler;
+	}
+
+	@Override
+	public void setAsyncExecutor( final AsyncSonarExecutor asyncExecutor ) {
+		Validate.notNull( asyncExecutor, "The given async executor can't be null" );
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	@Override
+	public void setProjectReadyTimeout( final int secondsToWait ) {
+		Validate.isTrue( secondsToWait >= 0, "The given project ready timeout can't be negative" );
+		this.projectReadyTimeout = secondsToWait;
+	}
+
+	@Override
+	public void setMaxLoggedPayloadLength( final int maxLength ) {
+		Validate.isTrue( maxLength >= 0, "The given maximum payload length can't be negative" );
+		this.maxLoggedPayloadLength = maxLength;
+	}
+
+	@Override
+	public void setRetryPolicy( final RetryPolicy retryPolicy ) {
+		Validate.notNull( retryPolicy, "The given retry policy can't be null" );
+		this.retryPolicy = retryPolicy;
+	}
+
+	@Override
+	public void setRateLimiter( final RateLimiter rateLimiter ) {
+		Validate.notNull( rateLimiter, "The given rate limiter can't be null" );
+		this.rateLimiter = rateLimiter;
 	}
 
 	@Override
@@ -44,90 +145,464 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 	                                 final String qualityGateName,
 	                                 final LocalDateTime executionStart,
 	                                 final int secondsToWait ) throws SonarQualityException {
-		waitForNewPublishingOfSonarResults( client, projectKey, qualityGateName, executionStart, secondsToWait );
-		handleQualityGateState( client, projectKey );
+		timeVerdict( executionStart != null ? VERDICT_MODE_TIMESTAMP : VERDICT_MODE_LAST_RUN, () -> {
+			final QualityGateStatus status = waitForNewPublishingOfSonarResults( client, projectKey, qualityGateName, executionStart, secondsToWait );
+			if ( status != null ) {
+				handleQualityGateState( status );
+			}
+			else {
+				handleQualityGateState( client, projectKey );
+			}
+			return null;
+		} );
+	}
+
+	@Override
+	public void validateQualityGates( final SonarClient client,
+	                                  final Collection<String> projectKeys,
+	                                  final String qualityGateName,
+	                                  final LocalDateTime executionStart,
+	                                  final int secondsToWait,
+	                                  final int parallelism ) throws SonarQualityException {
+		Validate.notEmpty( projectKeys, "The given project keys can't be empty" );
+
+		final Map<String, LocalDateTime> executionStarts = new LinkedHashMap<>();
+		projectKeys.forEach( projectKey -> executionStarts.put( projectKey, executionStart ) );
+		validateQualityGates( client, executionStarts, qualityGateName, secondsToWait, parallelism );
+	}
+
+	@Override
+	public void validateQualityGates( final SonarClient client,
+	                                  final Map<String, LocalDateTime> executionStarts,
+	                                  final String qualityGateName,
+	                                  final int secondsToWait,
+	                                  final int parallelism ) throws SonarQualityException {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notEmpty( executionStarts, "The given execution starts can't be empty" );
+		Validate.isTrue( parallelism > 0, "The given parallelism must be at least 1" );
+
+		final Set<String> distinctProjectKeys = executionStarts.keySet();
+		try ( final AsyncSonarExecutor executor = new AsyncSonarExecutor( Math.min( parallelism, distinctProjectKeys.size() ) ) ) {
+			final Map<String, CompletableFuture<QualityGateStatus>> validations = new LinkedHashMap<>();
+			for ( final Map.Entry<String, LocalDateTime> executionStart : executionStarts.entrySet() ) {
+				validations.put( executionStart.getKey(),
+				                 validateQualityGateAsync( executor, client, executionStart.getKey(), qualityGateName, executionStart.getValue(), secondsToWait, null ) );
+			}
+			final Map<String, Throwable> failures = new LinkedHashMap<>();
+			for ( final Map.Entry<String, CompletableFuture<QualityGateStatus>> validation : validations.entrySet() ) {
+				try {
+					validation.getValue().join();
+					logger.info( String.format( "quality gate met for %s", validation.getKey() ) );
+				}
+				catch ( final CompletionException e ) {
+					logger.info( String.format( "quality gate not met for %s", validation.getKey() ) );
+					failures.put( validation.getKey(), e.getCause() );
+				}
+			}
+			if ( !failures.isEmpty() ) {
+				throw qualityGatesNotMet( failures, distinctProjectKeys.size() );
+			}
+		}
+	}
+
+	@Override
+	public Map<String, QualityGateStatus> getQualityGateStatuses( final SonarClient client, final Collection<String> projectKeys ) throws SonarQualityException {
+		return getQualityGateStatuses( client, projectKeys, new HashSet<>() );
+	}
+
+	private Map<String, QualityGateStatus> getQualityGateStatuses( final SonarClient client, final Collection<String> projectKeys, final Set<String> unknownProjectKeys )
+			throws SonarQualityException {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notEmpty( projectKeys, "The given project keys can't be empty" );
+
+		final Map<String, Map<String, String>> measures = searchMeasures( client, projectKeys, Arrays.asList( QUALITY_GATE_DETAILS, ALERT_STATUS ), unknownProjectKeys );
+		final Map<String, QualityGateStatus> statuses = new LinkedHashMap<>();
+		for ( final Map.Entry<String, Map<String, String>> projectMeasures : measures.entrySet() ) {
+			final String projectDetails = projectMeasures.getValue().get( QUALITY_GATE_DETAILS );
+			// without details, the alert status still tells whether the gate is met, only the conditions are unknown
+			statuses.put( projectMeasures.getKey(), projectDetails != null
+			                                        ? QualityGateStatus.parseDetails( projectDetails )
+			                                        : new QualityGateStatus( projectMeasures.getValue().get( ALERT_STATUS ), null ) );
+		}
+		return statuses;
+	}
+
+	@Override
+	public void validateQualityGatesInBulk( final SonarClient client, final Collection<String> projectKeys ) throws SonarQualityException {
+		timeVerdict( VERDICT_MODE_BULK, () -> {
+			final Set<String> unknownProjectKeys = new HashSet<>();
+			validateStatuses( getQualityGateStatuses( client, projectKeys, unknownProjectKeys ), unknownProjectKeys );
+			return null;
+		} );
+	}
+
+	@Override
+	public QualityGateDefinition getQualityGateDefinition( final SonarClient client, final String qualityGateName ) throws SonarQualityException {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notBlank( qualityGateName, "The given quality gate name can't be blank" );
+
+		final SonarLookupCache cache = SonarLookupCache.forClient( client );
+		String qualityGateJson = cache.get( SonarLookupCache.qualityGateDefinitionKey( qualityGateName ) );
+		if ( qualityGateJson == null ) {
+			try {
+				qualityGateJson = get( client, String.format( QUALITY_GATE_SHOW_URL, qualityGateName ) );
+			}
+			catch ( final HttpException e ) {
+				throw new SonarQualityException( String.format( "Could not get the definition of quality gate %s", qualityGateName ), e );
+			}
+			LogUtil.payload( logger, "Quality gate definition", qualityGateJson, maxLoggedPayloadLength );
+			cache.put( SonarLookupCache.qualityGateDefinitionKey( qualityGateName ), qualityGateJson );
+		}
+		return QualityGateDefinition.parse( qualityGateJson );
+	}
+
+	@Override
+	public Map<String, QualityGateStatus> evaluateQualityGates( final SonarClient client, final Collection<String> projectKeys, final QualityGateDefinition qualityGate )
+			throws SonarQualityException {
+		return evaluateQualityGates( client, projectKeys, qualityGate, new HashSet<>() );
+	}
+
+	private Map<String, QualityGateStatus> evaluateQualityGates( final SonarClient client,
+	                                                             final Collection<String> projectKeys,
+	                                                             final QualityGateDefinition qualityGate,
+	                                                             final Set<String> unknownProjectKeys ) throws SonarQualityException {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notEmpty( projectKeys, "The given project keys can't be empty" );
+		Validate.notNull( qualityGate, "The given quality gate can't be null" );
+
+		final Map<String, QualityGateStatus> statuses = new LinkedHashMap<>();
+		if ( qualityGate.getMetricKeys().isEmpty() ) {
+			new LinkedHashSet<>( projectKeys ).forEach( projectKey -> statuses.put( projectKey, new QualityGateStatus( null, null ) ) );
+			return statuses;
+		}
+		final Map<String, Map<String, String>> measures = searchMeasures( client, projectKeys, qualityGate.getMetricKeys(), unknownProjectKeys );
+		measures.forEach( ( projectKey, projectMeasures ) -> statuses.put( projectKey, QualityGateEvaluator.evaluate( qualityGate, projectMeasures ) ) );
+		return statuses;
+	}
+
+	@Override
+	public void validateQualityGatesLocally( final SonarClient client, final Collection<String> projectKeys, final String qualityGateName ) throws SonarQualityException {
+		timeVerdict( VERDICT_MODE_LOCAL, () -> {
+			final Set<String> unknownProjectKeys = new HashSet<>();
+			validateStatuses( evaluateQualityGates( client, projectKeys, getQualityGateDefinition( client, qualityGateName ), unknownProjectKeys ), unknownProjectKeys );
+			return null;
+		} );
+	}
+
+	/**
+	 * Validate the given states and report one verdict listing all the failing projects, the projects SONAR returned no measures for fail as well.
+	 */
+	private void validateStatuses( final Map<String, QualityGateStatus> statuses, final Set<String> unknownProjectKeys ) throws SonarQualityException {
+		final Map<String, Throwable> failures = new LinkedHashMap<>();
+		for ( final Map.Entry<String, QualityGateStatus> status : statuses.entrySet() ) {
+			try {
+				if ( unknownProjectKeys.contains( status.getKey() ) ) {
+					throw new SonarQualityException( "no measures found, the project is unknown to SONAR or has not been analysed yet" );
+				}
+				handleQualityGateState( status.getValue() );
+				logger.info( String.format( "quality gate met for %s", status.getKey() ) );
+			}
+			catch ( final SonarQualityException e ) {
+				logger.info( String.format( "quality gate not met for %s", status.getKey() ) );
+				failures.put( status.getKey(), e );
+			}
+		}
+		if ( !failures.isEmpty() ) {
+			throw qualityGatesNotMet( failures, statuses.size() );
+		}
+	}
+
+	/**
+	 * Search the given metrics of the given projects, {@link #MEASURES_SEARCH_CHUNK_SIZE} projects per call.
+	 *
+	 * @param unknownProjectKeys, the set the keys of the projects without any measure in the response are added to.
+	 * @return the values per {@link QualityGateEvaluator#measureKey(String, String)} for every distinct project, in the order of the given keys:
+	 * the value of the metric itself and its value on every period.
+	 */
+	private Map<String, Map<String, String>> searchMeasures( final SonarClient client,
+	                                                         final Collection<String> projectKeys,
+	                                                         final Collection<String> metricKeys,
+	                                                         final Set<String> unknownProjectKeys ) throws SonarQualityException {
+		final List<String> distinctProjectKeys = new ArrayList<>( new LinkedHashSet<>( projectKeys ) );
+		final Map<String, Map<String, String>> measures = new LinkedHashMap<>();
+		distinctProjectKeys.forEach( projectKey -> measures.put( projectKey, new HashMap<>() ) );
+		for ( int from = 0; from < distinctProjectKeys.size(); from += MEASURES_SEARCH_CHUNK_SIZE ) {
+			final List<String> chunk = distinctProjectKeys.subList( from, Math.min( from + MEASURES_SEARCH_CHUNK_SIZE, distinctProjectKeys.size() ) );
+			final Map<String, Object> parameters = new LinkedHashMap<>();
+			parameters.put( "projectKeys", StringUtils.join( chunk, ',' ) );
+			parameters.put( "metricKeys", StringUtils.join( metricKeys, ',' ) );
+			final String response;
+			try {
+				response = get( client, MEASURES_SEARCH_URL, parameters );
+			}
+			catch ( final HttpException e ) {
+				throw new SonarQualityException( String.format( "Could not get the measures of %s projects", chunk.size() ), e );
+			}
+			LogUtil.payload( logger, "Resulting measures", response, maxLoggedPayloadLength );
+			for ( final String measure : MEASURES.readArray( response ) ) {
+				final Map<String, String> projectMeasures = measures.get( MEASURE_COMPONENT.read( measure ) );
+				if ( projectMeasures != null ) {
+					readMeasure( measure, projectMeasures );
+				}
+			}
+		}
+		measures.forEach( ( projectKey, projectMeasures ) -> {
+			if ( projectMeasures.isEmpty() ) {
+				unknownProjectKeys.add( projectKey );
+			}
+		} );
+		return measures;
+	}
+
+	/**
+	 * Add the value of the given measure, and its value on every period, to the given measures of its project.
+	 */
+	static void readMeasure( final String measure, final Map<String, String> projectMeasures ) throws SonarQualityException {
+		final String metric = MEASURE_METRIC.read( measure );
+		final String value = MEASURE_VALUE.read( measure );
+		if ( value != null ) {
+			projectMeasures.put( metric, value );
+		}
+		for ( final String period : MEASURE_PERIODS.readArray( measure ) ) {
+			final String periodValue = PERIOD_VALUE.read( period );
+			if ( periodValue != null ) {
+				projectMeasures.put( QualityGateEvaluator.measureKey( metric, PERIOD_INDEX.read( period ) ), periodValue );
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<QualityGateStatus> validateQualityGateAsync( final SonarClient client,
+	                                                                      final String projectKey,
+	                                                                      final String qualityGateName,
+	                                                                      final LocalDateTime executionStart,
+	                                                                      final int secondsToWait,
+	                                                                      final Duration timeout ) {
+		return validateQualityGateAsync( asyncExecutor, client, projectKey, qualityGateName, executionStart, secondsToWait, timeout );
+	}
+
+	private CompletableFuture<QualityGateStatus> validateQualityGateAsync( final AsyncSonarExecutor executor,
+	                                                                       final SonarClient client,
+	                                                                       final String projectKey,
+	                                                                       final String qualityGateName,
+	                                                                       final LocalDateTime executionStart,
+	                                                                       final int secondsToWait,
+	                                                                       final Duration timeout ) {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notBlank( projectKey, "The given project key can't be blank" );
+
+		final long start = System.nanoTime();
+		final CompletableFuture<QualityGateStatus> verdict;
+		if ( executionStart == null ) {
+			verdict = executor.supply( () -> {
+				final QualityGateStatus status = getQualityGateStatus( client, projectKey );
+				handleQualityGateState( status );
+				return status;
+			}, timeout );
+		}
+		else {
+			final PollScheduler.PollSession session = pollScheduler.start( secondsToWait );
+			verdict = executor.poll( () -> {
+				final QualityGateStatus status = pollNewResults( client, projectKey, qualityGateName, executionStart );
+				if ( status != null ) {
+					logger.info( String.format( "Sonar results of %s published after %s poll(s) in %s seconds", projectKey, session.getPollCount(), session.getElapsedSeconds() ) );
+					recordPolls( WAIT_NEW_RESULTS, session, false );
+					handleQualityGateState( status );
+				}
+				return status;
+			}, session, () -> newResultsNotPublished( session ), timeout );
+		}
+		verdict.whenComplete( ( status, error ) -> recordVerdict( executionStart != null ? VERDICT_MODE_TIMESTAMP : VERDICT_MODE_LAST_RUN, start, error == null ) );
+		return verdict;
+	}
+
+	@Override
+	public void validateQualityGateForTask( final SonarClient client,
+	                                        final String projectKey,
+	                                        final String ceTaskId,
+	                                        final int secondsToWait ) throws SonarQualityException {
+		timeVerdict( VERDICT_MODE_CE_TASK, () -> {
+			waitForComputeEngineTask( client, ceTaskId, secondsToWait );
+			handleQualityGateState( client, projectKey );
+			return null;
+		} );
 	}
 
 	public void handleQualityGateState( final SonarClient client, final String projectKey ) throws SonarQualityException {
+		handleQualityGateState( getQualityGateStatus( client, projectKey ) );
+	}
+
+	public void handleQualityGateState( final QualityGateStatus status ) throws SonarQualityException {
+		Validate.notNull( status, "The given quality gate status can't be null" );
+		if ( status.isError() ) {
+			throw qualityGateNotMet( status.getConditions() );
+		}
+	}
+
+	public QualityGateStatus getQualityGateStatus( final SonarClient client, final String projectKey ) throws SonarQualityException {
 		Validate.notNull( client, "The given sonar client can't be null" );
 		Validate.notBlank( projectKey, "The given project key can't be blank" );
 
 		try {
 			final String url = String.format( QUALITY_GATE_QUERY_URL, projectKey );
-			logger.info( String.format( "Retrieve quality gate details from: %s", url ) );
-			final String qualityGateDetailsData = client.get( url );
-			logger.info( String.format( "Resulting quality gate state: %s", qualityGateDetailsData ) );
-			if ( StringUtils.isNotBlank( qualityGateDetailsData ) ) {
-				final String msr = JsonUtil.getOnMainLevel( qualityGateDetailsData, "msr" );
-				final String data = StringUtils.isNotBlank( msr ) ? JsonUtil.getOnMainLevel( msr, "data" ) : "";
-				final String level = StringUtils.isNotBlank( data ) ? JsonUtil.getOnMainLevel( data, FIELD_LEVEL ) : "";
-				if ( LEVEL_ERROR.equals( level.toUpperCase() ) ) {
-					final StringJoiner joiner = new StringJoiner( "\n" );
-					joiner.add( "" );
-					joiner.add( "############################" );
-					joiner.add( "############################" );
-					joiner.add( "### quality gate not met ###" );
-					joiner.add( "############################" );
-					joiner.add( "############################" );
-					final JSONArray conditionsResponse = JsonUtil.parseArray( JsonUtil.getOnMainLevel( data, FIELD_CONDITIONS ) );
-					if ( conditionsResponse != null ) {
-						joiner.add( "Conditions:" );
-						( conditionsResponse ).forEach( condition -> joiner.add( condition.toString() ) );
-					}
-					throw new SonarQualityException( joiner.toString() );
-				}
-			}
+			LogUtil.info( logger, () -> String.format( "Retrieve quality gate details from: %s", url ) );
+			final String qualityGateDetailsData = get( client, url );
+			LogUtil.payload( logger, "Resulting quality gate state", qualityGateDetailsData, maxLoggedPayloadLength );
+			return QualityGateStatus.parse( qualityGateDetailsData );
 		}
 		catch ( final Exception e ) {
 			throw new SonarQualityException( String.format( "Error while getting quality gate data:\n%s", ExceptionUtils.getStackTrace( e ) ), e );
 		}
 	}
 
-	protected final void waitForNewPublishingOfSonarResults( final SonarClient client,
-	                                                         final String projectKey,
-	                                                         final String qualityGateName,
-	                                                         final LocalDateTime executionStart,
-	                                                         final int secondsToWait ) throws SonarQualityException {
+	@Override
+	public void validateQualityGateFromWebhook( final QualityGateWebhookReceiver receiver,
+	                                            final String projectKey,
+	                                            final int secondsToWait ) throws SonarQualityException {
+		validateQualityGateFromWebhook( receiver, projectKey, null, secondsToWait );
+	}
+
+	@Override
+	public void validateQualityGateFromWebhook( final QualityGateWebhookReceiver receiver,
+	                                            final String projectKey,
+	                                            final String ceTaskId,
+	                                            final int secondsToWait ) throws SonarQualityException {
+		Validate.notNull( receiver, "The given webhook receiver can't be null" );
+		timeVerdict( VERDICT_MODE_WEBHOOK, () -> {
+			handleWebhookPayload( receiver.awaitPayload( projectKey, ceTaskId, secondsToWait ) );
+			return null;
+		} );
+	}
+
+	public void handleWebhookPayload( final String payload ) throws SonarQualityException {
+		Validate.notBlank( payload, "The given webhook payload can't be blank" );
+
+		LogUtil.payload( logger, "Resulting webhook payload", payload, maxLoggedPayloadLength );
+		final String taskStatus = WEBHOOK_TASK_STATUS.read( payload );
+		if ( StringUtils.isNotBlank( taskStatus ) && !TASK_STATUS_SUCCESS.equalsIgnoreCase( taskStatus ) ) {
+			throw new SonarQualityException( String.format( "Compute engine task did not succeed, status: %s", taskStatus ) );
+		}
+		final String gateStatus = WEBHOOK_GATE_STATUS.read( payload );
+		if ( StringUtils.isBlank( gateStatus ) ) {
+			throw new SonarQualityException( String.format( "No quality gate status found in webhook payload:\n%s", payload ) );
+		}
+		if ( LEVEL_ERROR.equalsIgnoreCase( gateStatus ) ) {
+			throw qualityGateNotMet( WEBHOOK_GATE_CONDITIONS.readArray( payload ) );
+		}
+	}
+
+	private SonarQualityException qualityGateNotMet( final List<?> conditions ) {
+		final StringJoiner joiner = new StringJoiner( "\n" );
+		joiner.add( "" );
+		joiner.add( "############################" );
+		joiner.add( "############################" );
+		joiner.add( "### quality gate not met ###" );
+		joiner.add( "############################" );
+		joiner.add( "############################" );
+		if ( conditions != null ) {
+			joiner.add( "Conditions:" );
+			conditions.forEach( condition -> joiner.add( condition.toString() ) );
+		}
+		return new SonarQualityException( joiner.toString() );
+	}
+
+	private SonarQualityException qualityGatesNotMet( final Map<String, Throwable> failures, final int numberOfProjects ) {
+		final StringJoiner joiner = new StringJoiner( "\n" );
+		joiner.add( "" );
+		joiner.add( String.format( "### quality gate not met for %s of %s projects ###", failures.size(), numberOfProjects ) );
+		failures.forEach( ( projectKey, failure ) -> {
+			joiner.add( String.format( "project %s:", projectKey ) );
+			joiner.add( String.valueOf( failure.getLocalizedMessage() ) );
+		} );
+		return new SonarQualityException( joiner.toString() );
+	}
+
+	protected final QualityGateStatus waitForNewPublishingOfSonarResults( final SonarClient client,
+	                                                                      final String projectKey,
+	                                                                      final String qualityGateName,
+	                                                                      final LocalDateTime executionStart,
+	                                                                      final int secondsToWait ) throws SonarQualityException {
 		Validate.notNull( client, "The given sonar client can't be null" );
 		Validate.notBlank( projectKey, "The given project key can't be blank" );
 
-		final LocalDateTime start = LocalDateTime.now();
+		QualityGateStatus status = null;
 		if ( executionStart != null ) {
-			LocalDateTime lastRunTimeStamp = getLastRunTimeStamp( client, projectKey, qualityGateName );
-			while ( !lastRunTimeStamp.isAfter( executionStart ) || !qualityGateDetailsExists( client, projectKey ) ) {
-				final long duration = Duration.between( start, LocalDateTime.now() ).getSeconds();
-				if ( duration > secondsToWait ) {
-					throw new SonarQualityException(
-							String.format( "We waited for %s seconds, but no update on last run (i.e. date field) occurred.", duration ) );
+			final PollScheduler.PollSession session = pollScheduler.start( secondsToWait );
+			status = pollNewResults( client, projectKey, qualityGateName, executionStart );
+			while ( status == null ) {
+				if ( session.isExpired() ) {
+					throw newResultsNotPublished( session );
 				}
-				sleep();
-				lastRunTimeStamp = getLastRunTimeStamp( client, projectKey, qualityGateName );
+				session.awaitNextPoll();
+				status = pollNewResults( client, projectKey, qualityGateName, executionStart );
 			}
+			recordPolls( WAIT_NEW_RESULTS, session, false );
+			logger.info( String.format( "Sonar results published after %s poll(s) in %s seconds", session.getPollCount(), session.getElapsedSeconds() ) );
+		}
+		return status;
+	}
+
+	/**
+	 * @return the quality gate status of the run after the given execution start, {@code null} when that run isn't published yet.
+	 */
+	private QualityGateStatus pollNewResults( final SonarClient client,
+	                                          final String projectKey,
+	                                          final String qualityGateName,
+	                                          final LocalDateTime executionStart ) throws SonarQualityException {
+		if ( !getLastRunTimeStamp( client, projectKey, qualityGateName ).isAfter( executionStart ) ) {
+			return null;
 		}
+		final QualityGateStatus status = pollQualityGateStatus( client, projectKey );
+		return status.exists() ? status : null;
 	}
 
-	public boolean qualityGateDetailsExists( final SonarClient client,
-	                                         final String projectKey ) {
-		boolean exists = false;
-		String url = String.format( QUALITY_GATE_QUERY_URL, projectKey );
+	private SonarQualityException newResultsNotPublished( final PollScheduler.PollSession session ) {
+		recordPolls( WAIT_NEW_RESULTS, session, true );
+		logger.info( String.format( "Gave up waiting for sonar results after %s poll(s)", session.getPollCount() ) );
+		return new SonarQualityException( String.format( "We waited for %s seconds, but no update on last run (i.e. date field) occurred.", session.getElapsedSeconds() ) );
+	}
+
+	private QualityGateStatus pollQualityGateStatus( final SonarClient client, final String projectKey ) throws SonarQualityException {
 		try {
-			client.get( url );
+			return getQualityGateStatus( client, projectKey );
 		}
-		catch ( HttpException e ) {
-			logger.info( String.format( "url %s does not exist", url ) );
+		catch ( final SonarQualityException e ) {
+			if ( e.getCause() instanceof HttpException ) {
+				logger.info( String.format( "quality gate details of %s do not exist yet", projectKey ) );
+				return new QualityGateStatus( null, null );
+			}
+			throw e;
 		}
-		return exists;
 	}
 
-	private void sleep() {
-		try {
-			Thread.sleep( SLEEP_INTERVAL );
+	protected final void waitForComputeEngineTask( final SonarClient client, final String ceTaskId, final int secondsToWait ) throws SonarQualityException {
+		Validate.notNull( client, "The given sonar client can't be null" );
+		Validate.notBlank( ceTaskId, "The given compute engine task id can't be blank" );
+
+		final PollScheduler.PollSession session = pollScheduler.start( secondsToWait );
+		String status = getComputeEngineTaskStatus( client, ceTaskId );
+		while ( TASK_STATUS_PENDING.equals( status ) || TASK_STATUS_IN_PROGRESS.equals( status ) ) {
+			if ( session.isExpired() ) {
+				recordPolls( WAIT_CE_TASK, session, true );
+				logger.info( String.format( "Gave up waiting for compute engine task %s after %s poll(s)", ceTaskId, session.getPollCount() ) );
+				throw new SonarQualityException(
+						String.format( "We waited for %s seconds, but compute engine task %s is still %s.", session.getElapsedSeconds(), ceTaskId, status ) );
+			}
+			session.awaitNextPoll();
+			status = getComputeEngineTaskStatus( client, ceTaskId );
 		}
-		catch ( final InterruptedException e ) {
-			throw new RuntimeException( e );
+		recordPolls( WAIT_CE_TASK, session, false );
+		logger.info( String.format( "Compute engine task %s ended with status %s after %s poll(s) in %s seconds",
+		                            ceTaskId, status, session.getPollCount(), session.getElapsedSeconds() ) );
+		if ( !TASK_STATUS_SUCCESS.equals( status ) ) {
+			throw new SonarQualityException( String.format( "Compute engine task %s did not succeed, status: %s", ceTaskId, status ) );
 		}
 	}
 
+	private String getComputeEngineTaskStatus( final SonarClient client, final String ceTaskId ) throws SonarQualityException {
+		return StringUtils.upperCase( TASK_STATUS.read( get( client, String.format( CE_TASK_QUERY_URL, ceTaskId ) ) ) );
+	}
+
 	@Override
 	public void linkQualityGateToProject( final SonarClient client, final String projectKey, final String qualityGateName ) throws SonarQualityException {
 		Validate.notNull( client, "The given Sonar client can't be null" );
@@ -135,18 +610,27 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 		Validate.notBlank( qualityGateName, "The given quality gate name can't be null" );
 
 		try {
-			String resourceDataJson = client.get( String.format( "/api/resources?format=json&resource=%s", projectKey ) );
-			String errorCode = JsonUtil.getOnMainLevel( resourceDataJson, "err_code" );
-			if ( "404".equals( errorCode ) ) {
-				verifySonarProjectExistsAndIsLinkedToQualityGate( client, projectKey, qualityGateName );
-				resourceDataJson = client.get( String.format( "/api/resources?format=json&resource=%s", projectKey ) );
+			final SonarLookupCache cache = SonarLookupCache.forClient( client );
+			String projectId = cache.get( SonarLookupCache.projectIdKey( projectKey ) );
+			if ( projectId == null ) {
+				final String resourceDataJson = get( client, String.format( RESOURCE_QUERY_URL, projectKey ) );
+				if ( "404".equals( JsonUtil.getOnMainLevel( resourceDataJson, "err_code" ) ) ) {
+					// creates the project when needed and links it
+					verifySonarProjectExistsAndIsLinkedToQualityGate( client, projectKey, qualityGateName );
+					return;
+				}
+				projectId = JsonUtil.getIdOnMainLevel( resourceDataJson );
+				cache.put( SonarLookupCache.projectIdKey( projectKey ), projectId );
 			}
-			final String projectId = JsonUtil.getIdOnMainLevel( resourceDataJson );
-			doLinkQualityGateToProject( client, Integer.parseInt( projectId ), qualityGateName );
+			doLinkQualityGateToProject( client, projectKey, Integer.parseInt( projectId ), qualityGateName );
 		}
 		catch ( HttpException e ) {
 			logger.error( e );
 			if ( e.status() == 404 ) {
+				// the cached ids may point to a deleted project or quality gate: look them up again
+				final SonarLookupCache cache = SonarLookupCache.forClient( client );
+				cache.invalidate( SonarLookupCache.projectIdKey( projectKey ) );
+				cache.invalidate( SonarLookupCache.qualityGateIdKey( qualityGateName ) );
 				verifySonarProjectExistsAndIsLinkedToQualityGate( client, projectKey, qualityGateName );
 			}
 			else {
@@ -155,17 +639,71 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 		}
 	}
 
-	private void doLinkQualityGateToProject( final SonarClient client, final int projectId, final String qualityGateName ) throws SonarQualityException {
-		final String qualityGateJson = client.get( String.format( "/api/qualitygates/show?name=%s", qualityGateName ) );
-		final String qualityGateId = JsonUtil.getIdOnMainLevel( qualityGateJson );
+	private void doLinkQualityGateToProject( final SonarClient client, final String projectKey, final int projectId, final String qualityGateName )
+			throws SonarQualityException {
+		final SonarLookupCache cache = SonarLookupCache.forClient( client );
+		String qualityGateId = cache.get( SonarLookupCache.qualityGateIdKey( qualityGateName ) );
+		if ( qualityGateId == null ) {
+			final String qualityGateJson = get( client, String.format( QUALITY_GATE_SHOW_URL, qualityGateName ) );
+			qualityGateId = JsonUtil.getIdOnMainLevel( qualityGateJson );
+			cache.put( SonarLookupCache.qualityGateIdKey( qualityGateName ), qualityGateId );
+		}
 		if ( StringUtils.isNotBlank( qualityGateId ) ) {
-			final Map<String, Object> map = new ConcurrentHashMap<>();
-			map.put( "gateId", qualityGateId );
-			map.put( "projectId", projectId );
-			client.post( "/api/qualitygates/select", map );
+			if ( isLinkedToQualityGate( client, projectKey, qualityGateId ) ) {
+				logger.info( String.format( "project %s is linked to quality gate %s already", projectKey, qualityGateName ) );
+				PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_SKIPPED );
+			}
+			else {
+				final Map<String, Object> map = new ConcurrentHashMap<>();
+				map.put( "gateId", qualityGateId );
+				map.put( "projectId", projectId );
+				post( client, "/api/qualitygates/select", map );
+				PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_APPLIED );
+			}
 		}
 	}
 
+	/**
+	 * @return true when the project is explicitly linked to the given quality gate, false when it isn't or when the server doesn't know
+	 * the quality gate of the project (404, i.e. before SONAR 6.1).
+	 * @throws SonarQualityException when the quality gate of the project can't be read.
+	 */
+	private boolean isLinkedToQualityGate( final SonarClient client, final String projectKey, final String qualityGateId ) throws SonarQualityException {
+		final String currentQualityGateJson;
+		try {
+			currentQualityGateJson = get( client, String.format( QUALITY_GATE_BY_PROJECT_URL, projectKey ) );
+		}
+		catch ( final HttpException e ) {
+			if ( e.status() == 404 ) {
+				logger.debug( String.format( "the quality gate of project %s is unknown to SONAR: %s", projectKey, e.getLocalizedMessage() ) );
+				return false;
+			}
+			throw new SonarQualityException( String.format( "Could not get the quality gate of project %s", projectKey ), e );
+		}
+		// a project on the default quality gate follows the default when it changes, so it still has to be linked explicitly
+		return qualityGateId.equals( CURRENT_QUALITY_GATE_ID.read( currentQualityGateJson ) )
+		       && !Boolean.parseBoolean( CURRENT_QUALITY_GATE_DEFAULT.read( currentQualityGateJson ) );
+	}
+
+	@Override
+	public CompletableFuture<Void> linkQualityGateToProjectAsync( final SonarClient client,
+	                                                              final String projectKey,
+	                                                              final String qualityGateName,
+	                                                              final Duration timeout ) {
+		return asyncExecutor.supply( () -> {
+			linkQualityGateToProject( client, projectKey, qualityGateName );
+			return null;
+		}, timeout );
+	}
+
+	@Override
+	public CompletableFuture<LocalDateTime> getLastRunTimeStampAsync( final SonarClient client,
+	                                                                  final String projectKey,
+	                                                                  final String qualityGateName,
+	                                                                  final Duration timeout ) {
+		return asyncExecutor.supply( () -> getLastRunTimeStamp( client, projectKey, qualityGateName ), timeout );
+	}
+
 	@Override
 	public LocalDateTime getLastRunTimeStamp( final SonarClient client, final String projectKey, final String qualityGateName ) throws SonarQualityException {
 		Validate.notNull( client, "The given Sonar client can't be null" );
@@ -173,11 +711,15 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 
 		LocalDateTime result = null;
 		try {
-			String resourceDataJson = client.get( String.format( "/api/resources?format=json&resource=%s", projectKey ) );
+			String resourceDataJson = get( client, String.format( RESOURCE_QUERY_URL, projectKey ) );
 			String errorCode = JsonUtil.getOnMainLevel( resourceDataJson, "err_code" );
 			if ( "404".equals( errorCode ) ) {
 				verifySonarProjectExistsAndIsLinkedToQualityGate( client, projectKey, qualityGateName );
-				resourceDataJson = client.get( String.format( "/api/resources?format=json&resource=%s", projectKey ) );
+				resourceDataJson = get( client, String.format( RESOURCE_QUERY_URL, projectKey ) );
+			}
+			final String projectId = JsonUtil.getIdOnMainLevel( resourceDataJson );
+			if ( StringUtils.isNotBlank( projectId ) ) {
+				SonarLookupCache.forClient( client ).put( SonarLookupCache.projectIdKey( projectKey ), projectId );
 			}
 			final String dateStringValue = JsonUtil.getOnMainLevel( resourceDataJson, "date" );
 			if ( StringUtils.isNotBlank( dateStringValue ) ) {
@@ -210,8 +752,8 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 	private int verifySonarProjectExistsAndIsLinkedToQualityGate( final SonarClient client,
 	                                                              final String projectKey,
 	                                                              final String qualityGateName ) throws SonarQualityException {
-		final String lookupProjectData = client.get( String.format( "/api/projects?key=", projectKey ) );
-		logger.info( String.format( "Lookup project data result: %s", lookupProjectData ) );
+		final String lookupProjectData = get( client, String.format( "/api/projects?key=%s", projectKey ) );
+		LogUtil.payload( logger, "Lookup project data result", lookupProjectData, maxLoggedPayloadLength );
 		final int projectId;
 		if ( StringUtils.isBlank( JsonUtil.getOnMainLevel( lookupProjectData, "err_code" ) ) ) {
 			projectId = getProjectId( lookupProjectData );
@@ -221,22 +763,49 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 			projectId = createProject( client, projectKey );
 			logger.info( "Created project with id: " + projectId );
 		}
+		SonarLookupCache.forClient( client ).put( SonarLookupCache.projectIdKey( projectKey ), String.valueOf( projectId ) );
 
-		logger.info( "wait for project to be published" );
-		try {
-			Thread.sleep( 10000 );
-		}
-		catch ( InterruptedException e ) {
-			logger.error( e );
-		}
+		waitForProjectToBeVisible( client, projectKey );
 
 		logger.info( String.format( "creating project %s resulted in project id %s", projectKey, projectId ) );
 		logger.info( String.format( "link project %s to quality gate %s", projectKey, qualityGateName ) );
-		doLinkQualityGateToProject( client, projectId, qualityGateName );
+		doLinkQualityGateToProject( client, projectKey, projectId, qualityGateName );
 
 		return projectId;
 	}
 
+	/**
+	 * Poll the project index until SONAR lists the project, bounded by the project ready timeout.
+	 * Unlike the resource of the project, the index lists a provisioned project before its first analysis.
+	 */
+	protected final void waitForProjectToBeVisible( final SonarClient client, final String projectKey ) throws SonarQualityException {
+		final long start = System.nanoTime();
+		final PollScheduler.PollSession session = pollScheduler.start( projectReadyTimeout );
+		while ( !isProjectVisible( client, projectKey ) ) {
+			if ( session.isExpired() ) {
+				recordPolls( WAIT_PROJECT_READY, session, true );
+				throw new SonarQualityException( String.format( "We waited for %s seconds, but project %s did not become visible.", projectReadyTimeout, projectKey ) );
+			}
+			session.awaitNextPoll();
+		}
+		recordPolls( WAIT_PROJECT_READY, session, false );
+		logger.info( String.format( "project %s visible after %s ms (%s polls)", projectKey, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ),
+		                            session.getPollCount() ) );
+	}
+
+	private boolean isProjectVisible( final SonarClient client, final String projectKey ) throws SonarQualityException {
+		try {
+			final String projectsJson = StringUtils.trimToEmpty( get( client, String.format( PROJECT_INDEX_URL, projectKey ) ) );
+			return projectsJson.startsWith( "[" ) && !JsonUtil.parseArray( projectsJson ).isEmpty();
+		}
+		catch ( final HttpException e ) {
+			if ( e.status() == 404 ) {
+				return false;
+			}
+			throw new SonarQualityException( "Sonar HTTP exception", e );
+		}
+	}
+
 	int getProjectId( final String lookupProjectData ) throws SonarQualityException {
 		int projectId;
 		try {
@@ -259,9 +828,53 @@ public class SonarQualityGateServiceImpl implements SonarQualityGateService {
 		final Map<String, Object> map = new ConcurrentHashMap<>();
 		map.put( "key", projectKey );
 		map.put( "name", projectKey );
-		String postResult = client.post( "/api/projects/create", map );
-		logger.info( String.format( "Result of creation call: %s", postResult ) );
+		String postResult = post( client, "/api/projects/create", map );
+		LogUtil.payload( logger, "Result of creation call", postResult, maxLoggedPayloadLength );
 		int projectId = Integer.parseInt( JsonUtil.getIdOnMainLevel( postResult ) );
 		return projectId;
 	}
+
+	/**
+	 * Every SONAR call of this service goes through here and the {@link HttpGateway}, so it is measured per endpoint, retried when the server
+	 * is unavailable, refused while the circuit breaker of the server is open and held back by the rate limiter (once per attempt).
+	 * Identical GETs that run at the same time (e.g. parallel modules) share one request.
+	 */
+	private String get( final SonarClient client, final String url ) {
+		return SingleFlight.forClient( client ).call( url, () -> send( client, "GET", url, () -> client.get( url ) ) );
+	}
+
+	private String get( final SonarClient client, final String path, final Map<String, Object> parameters ) {
+		return SingleFlight.forClient( client ).call( path + '?' + parameters, () -> send( client, "GET", path, () -> client.get( path, parameters ) ) );
+	}
+
+	private String post( final SonarClient client, final String path, final Map<String, Object> parameters ) {
+		return send( client, "POST", path, () -> client.post( path, parameters ) );
+	}
+
+	private String send( final SonarClient client, final String method, final String url, final PluginMetrics.TimedCall<String, RuntimeException> call ) {
+		return new HttpGateway( logger, retryPolicy, CircuitBreaker.forClient( client ), rateLimiter ).call( method, url, call );
+	}
+
+	/**
+	 * Run the given validation and record the time it took to reach its verdict.
+	 */
+	private void timeVerdict( final String mode, final AsyncSonarExecutor.SonarCall<?> validation ) throws SonarQualityException {
+		final long start = System.nanoTime();
+		boolean passed = false;
+		try {
+			validation.call();
+			passed = true;
+		}
+		finally {
+			recordVerdict( mode, start, passed );
+		}
+	}
+
+	private static void recordVerdict( final String mode, final long start, final boolean passed ) {
+		PluginMetrics.recordTime( PluginMetrics.QUALITY_GATE_VERDICT, System.nanoTime() - start, "mode", mode, "result", passed ? "passed" : "failed" );
+	}
+
+	private static void recordPolls( final String wait, final PollScheduler.PollSession session, final boolean expired ) {
+		PluginMetrics.recordValue( PluginMetrics.QUALITY_GATE_POLLS, session.getPollCount(), "wait", wait, "outcome", expired ? "expired" : "done" );
+	}
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Util to hash values with the digests of the JDK.
+ */
+public class HashUtil {
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private HashUtil() {
+	}
+
+	/**
+	 * @param value, the value to hash, null is hashed as the empty string.
+	 * @return the SHA-1 hash of the UTF-8 bytes of the given value, hex encoded.
+	 */
+	public static String sha1Hex( final String value ) {
+		try {
+			return hex( MessageDigest.getInstance( "SHA-1" ).digest( StringUtils.defaultString( value ).getBytes( StandardCharsets.UTF_8 ) ) );
+		}
+		catch ( final NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( "SHA-1 is not available", e );
+		}
+	}
+
+	/**
+	 * @param bytes, the bytes to encode, can't be null.
+	 * @return the given bytes, hex encoded in lower case.
+	 */
+	public static String hex( final byte[] bytes ) {
+		final char[] hex = new char[bytes.length * 2];
+		for ( int i = 0; i < bytes.length; i++ ) {
+			hex[i * 2] = HEX_DIGITS[( bytes[i] >> 4 ) & 0xf];
+			hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String( hex );
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.metrics.GoalTimings;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled, dot separated path into a json document (e.g. msr.data.level), read in a single pass over the raw json.
+ * <p>
+ * The document is not parsed into a tree: the tokenizer skips everything next to the path and only the value at the end of the path is materialized.
+ * The same lenient rules as {@link JsonUtil} apply:
+ * <ul>
+ * <li>an array on the path is entered via its first element (e.g. a root array with one project);</li>
+ * <li>a string on the path is read as an embedded json document (e.g. measure data sent as escaped json by older SONAR versions);</li>
+ * <li>trailing commas in objects and arrays are ignored.</li>
+ * </ul>
+ * As the document is read lazily, syntax errors after the found value are not reported.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class JsonPath {
+	private final String path;
+	private final String[] segments;
+
+	private JsonPath( final String path, final String... segments ) {
+		this.path = path;
+		this.segments = segments;
+	}
+
+	/**
+	 * @param path, the dot separated field names, can't be blank.
+	 * @return the compiled path.
+	 */
+	public static JsonPath compile( final String path ) {
+		Validate.notBlank( path, "The given json path can't be blank" );
+		return new JsonPath( path, StringUtils.split( path, '.' ) );
+	}
+
+	/**
+	 * @param fieldName, the name of a field on the main level, dots included, can't be blank.
+	 * @return the compiled path.
+	 */
+	public static JsonPath field( final String fieldName ) {
+		Validate.notBlank( fieldName, "The given field name can't be blank" );
+		return new JsonPath( fieldName, fieldName );
+	}
+
+	/**
+	 * Read the value at this path.
+	 *
+	 * @param json, the json document.
+	 * @return the value: unescaped for a string, the raw json for an object or array, {@code null} when blank, absent or json null.
+	 * @throws SonarQualityException will be thrown when the json is not valid up to the value.
+	 */
+	public String read( final CharSequence json ) throws SonarQualityException {
+		String result = null;
+		if ( StringUtils.isNotBlank( json ) ) {
+			final long start = System.nanoTime();
+			try {
+				final Cursor cursor = locate( new Cursor( json ), 0 );
+				result = cursor != null ? cursor.readValue() : null;
+			}
+			finally {
+				GoalTimings.record( GoalTimings.JSON_PARSE, null, System.nanoTime() - start );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read the elements of the array at this path.
+	 *
+	 * @param json, the json document.
+	 * @return the elements (see {@link #read(CharSequence)}), a single element when the value is no array, empty when absent.
+	 * @throws SonarQualityException will be thrown when the json is not valid up to the end of the array.
+	 */
+	public List<String> readArray( final CharSequence json ) throws SonarQualityException {
+		if ( StringUtils.isBlank( json ) ) {
+			return Collections.emptyList();
+		}
+		final long start = System.nanoTime();
+		try {
+			return readElements( json );
+		}
+		finally {
+			GoalTimings.record( GoalTimings.JSON_PARSE, null, System.nanoTime() - start );
+		}
+	}
+
+	private List<String> readElements( final CharSequence json ) throws SonarQualityException {
+		final Cursor cursor = locate( new Cursor( json ), 0 );
+		if ( cursor == null ) {
+			return Collections.emptyList();
+		}
+		final List<String> result = new ArrayList<>();
+		if ( cursor.peek() == '[' ) {
+			cursor.pos++;
+			while ( cursor.nextElement( ']' ) ) {
+				result.add( cursor.readValue() );
+				cursor.expectSeparator( ']' );
+			}
+		}
+		else {
+			final String value = cursor.readValue();
+			if ( value != null ) {
+				result.add( value );
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+	private Cursor locate( final Cursor cursor, final int firstSegment ) throws SonarQualityException {
+		for ( int i = firstSegment; i < segments.length; i++ ) {
+			cursor.skipWhitespace();
+			while ( cursor.peek() == '[' ) {
+				cursor.pos++;
+				if ( !cursor.nextElement( ']' ) ) {
+					return null;
+				}
+				cursor.skipWhitespace();
+			}
+			final char c = cursor.peek();
+			if ( c == '{' ) {
+				if ( !cursor.findField( segments[i] ) ) {
+					return null;
+				}
+			}
+			else if ( c == '"' ) {
+				final String embedded = cursor.readString();
+				return StringUtils.isNotBlank( embedded ) ? locate( new Cursor( embedded ), i ) : null;
+			}
+			else {
+				cursor.skipValue();
+				return null;
+			}
+		}
+		cursor.skipWhitespace();
+		return cursor;
+	}
+
+	/**
+	 * Position in one json document, never shared between threads.
+	 */
+	private static final class Cursor {
+		private final CharSequence json;
+		private final int length;
+		private int pos;
+
+		private Cursor( final CharSequence json ) {
+			this.json = json;
+			this.length = json.length();
+		}
+
+		private char peek() throws SonarQualityException {
+			if ( pos >= length ) {
+				throw error( "Unexpected token END OF FILE" );
+			}
+			return json.charAt( pos );
+		}
+
+		private void skipWhitespace() {
+			while ( pos < length && Character.isWhitespace( json.charAt( pos ) ) ) {
+				pos++;
+			}
+		}
+
+		private void expect( final char expected ) throws SonarQualityException {
+			skipWhitespace();
+			if ( peek() != expected ) {
+				throw unexpectedCharacter();
+			}
+			pos++;
+		}
+
+		/**
+		 * Move to the next element of the current object or array.
+		 *
+		 * @return false when the closing character is reached.
+		 */
+		private boolean nextElement( final char close ) throws SonarQualityException {
+			skipWhitespace();
+			char c = peek();
+			if ( c == ',' ) {
+				pos++;
+				skipWhitespace();
+				c = peek();
+			}
+			if ( c == close ) {
+				pos++;
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Position the cursor on the value of the given field of the object that starts at the cursor.
+		 *
+		 * @return false when the object doesn't contain the field (the cursor is then after the object).
+		 */
+		private boolean findField( final String name ) throws SonarQualityException {
+			pos++;
+			while ( nextElement( '}' ) ) {
+				if ( peek() != '"' ) {
+					throw unexpectedCharacter();
+				}
+				final boolean match = keyEquals( name );
+				expect( ':' );
+				skipWhitespace();
+				if ( match ) {
+					return true;
+				}
+				skipValue();
+				expectSeparator( '}' );
+			}
+			return false;
+		}
+
+		private void expectSeparator( final char close ) throws SonarQualityException {
+			skipWhitespace();
+			final char c = peek();
+			if ( c != ',' && c != close ) {
+				throw unexpectedCharacter();
+			}
+		}
+
+		private boolean keyEquals( final String name ) throws SonarQualityException {
+			final int start = pos;
+			pos++;
+			int index = 0;
+			boolean match = true;
+			while ( true ) {
+				final char c = peek();
+				if ( c == '"' ) {
+					pos++;
+					return match && index == name.length();
+				}
+				if ( c == '\\' ) {
+					// escaped keys are rare: compare the unescaped key
+					pos = start;
+					return name.equals( readString() );
+				}
+				match = match && index < name.length() && name.charAt( index ) == c;
+				index++;
+				pos++;
+			}
+		}
+
+		private void skipValue() throws SonarQualityException {
+			skipWhitespace();
+			final char c = peek();
+			switch ( c ) {
+				case '{':
+					pos++;
+					while ( nextElement( '}' ) ) {
+						if ( peek() != '"' ) {
+							throw unexpectedCharacter();
+						}
+						skipString();
+						expect( ':' );
+						skipValue();
+						expectSeparator( '}' );
+					}
+					break;
+				case '[':
+					pos++;
+					while ( nextElement( ']' ) ) {
+						skipValue();
+						expectSeparator( ']' );
+					}
+					break;
+				case '"':
+					skipString();
+					break;
+				case 't':
+					skipLiteral( "true" );
+					break;
+				case 'f':
+					skipLiteral( "false" );
+					break;
+				case 'n':
+					skipLiteral( "null" );
+					break;
+				default:
+					if ( c != '-' && !Character.isDigit( c ) ) {
+						throw unexpectedCharacter();
+					}
+					while ( pos < length && "+-0123456789.eE".indexOf( json.charAt( pos ) ) >= 0 ) {
+						pos++;
+					}
+			}
+		}
+
+		private void skipLiteral( final String literal ) throws SonarQualityException {
+			for ( int i = 0; i < literal.length(); i++ ) {
+				if ( peek() != literal.charAt( i ) ) {
+					throw unexpectedCharacter();
+				}
+				pos++;
+			}
+		}
+
+		private void skipString() throws SonarQualityException {
+			pos++;
+			char c;
+			while ( ( c = peek() ) != '"' ) {
+				pos += c == '\\' ? 2 : 1;
+			}
+			pos++;
+		}
+
+		private String readString() throws SonarQualityException {
+			pos++;
+			final StringBuilder builder = new StringBuilder();
+			char c;
+			while ( ( c = peek() ) != '"' ) {
+				pos++;
+				if ( c == '\\' ) {
+					final char escaped = peek();
+					pos++;
+					switch ( escaped ) {
+						case 'b':
+							builder.append( '\b' );
+							break;
+						case 'f':
+							builder.append( '\f' );
+							break;
+						case 'n':
+							builder.append( '\n' );
+							break;
+						case 'r':
+							builder.append( '\r' );
+							break;
+						case 't':
+							builder.append( '\t' );
+							break;
+						case 'u':
+							if ( pos + 4 > length ) {
+								throw error( "Unexpected token END OF FILE" );
+							}
+							try {
+								builder.append( (char) Integer.parseInt( json.subSequence( pos, pos + 4 ).toString(), 16 ) );
+							}
+							catch ( final NumberFormatException e ) {
+								throw unexpectedCharacter();
+							}
+							pos += 4;
+							break;
+						default:
+							builder.append( escaped );
+					}
+				}
+				else {
+					builder.append( c );
+				}
+			}
+			pos++;
+			return builder.toString();
+		}
+
+		private String readValue() throws SonarQualityException {
+			skipWhitespace();
+			final char c = peek();
+			if ( c == '"' ) {
+				return readString();
+			}
+			final int start = pos;
+			skipValue();
+			return c == 'n' ? null : json.subSequence( start, pos ).toString();
+		}
+
+		private SonarQualityException unexpectedCharacter() {
+			return error( String.format( "Unexpected character (%s)", json.charAt( pos ) ) );
+		}
+
+		private SonarQualityException error( final String message ) {
+			return new SonarQualityException( String.format( "could not parse json \n%s\nCause: %s at position %s.", json, message, pos ) );
+		}
+	}
+}
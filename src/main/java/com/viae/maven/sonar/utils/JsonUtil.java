@@ -5,60 +5,51 @@
 package com.viae.maven.sonar.utils;
 
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.metrics.GoalTimings;
 import org.apache.commons.lang3.StringUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
-import java.util.Optional;
-
 /**
  * Created by Vandeperre Maarten on 03/05/2016.
  */
 public class JsonUtil {
-    private static final JSONParser jsonParser = new JSONParser();
+    private static final JsonPath ID = JsonPath.field( "id" );
 
     private JsonUtil() {
     }
 
     public static final String getIdOnMainLevel( final String jsonString ) throws SonarQualityException {
-        String id = null;
-        if ( StringUtils.isNotBlank( jsonString ) ) {
-            final JSONObject json = parse( jsonString );
-            if (json.containsKey("id")) {
-                id = json.get("id").toString();
-            }
-        }
-        return id;
+        return ID.read( jsonString );
     }
 
     public static final String getOnMainLevel( final String jsonString, final String fieldName ) throws SonarQualityException {
-        String id = null;
-        if ( StringUtils.isNotBlank( jsonString ) ) {
-            final JSONObject json = parse( jsonString );
-            if ( json.containsKey( fieldName ) ) {
-                id = json.get( fieldName ).toString();
-            }
-        }
-        return id;
+        return StringUtils.isNotBlank( jsonString ) ? JsonPath.field( fieldName ).read( jsonString ) : null;
     }
 
     public static JSONObject parse( final String json ) throws SonarQualityException {
+        final long start = System.nanoTime();
         try {
-            final Object jsonObject = jsonParser.parse( json );
+            // JSONParser keeps state while parsing, so it can't be shared between threads
+            final Object jsonObject = new JSONParser().parse( json );
             return jsonObject instanceof JSONObject ? (JSONObject) jsonObject : (JSONObject) ((JSONArray) jsonObject).get(0);
         }
         catch ( final ParseException e ) {
             throw new SonarQualityException( String.format( "could not parse json \n%s\nCause: %s", json, e.toString() ) );
         }
+        finally {
+            GoalTimings.record( GoalTimings.JSON_PARSE, null, System.nanoTime() - start );
+        }
     }
 
     public static JSONArray parseArray( final String json ) throws SonarQualityException {
+        final long start = System.nanoTime();
         try {
             JSONArray result = new JSONArray();
             if ( StringUtils.isNotBlank( json ) ) {
-                final Object jsonObject = jsonParser.parse( json );
+                final Object jsonObject = new JSONParser().parse( json );
                 if ( jsonObject instanceof JSONArray ) {
                     result = (JSONArray) jsonObject;
                 }
@@ -71,5 +62,8 @@ public class JsonUtil {
         catch ( final ParseException e ) {
             throw new SonarQualityException( String.format( "could not parse json \n%s\nCause: %s", json, e.toString() ) );
         }
+        finally {
+            GoalTimings.record( GoalTimings.JSON_PARSE, null, System.nanoTime() - start );
+        }
     }
 }
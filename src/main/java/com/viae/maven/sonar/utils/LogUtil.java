@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.function.Supplier;
+
+/**
+ * Lazy logging of messages and SONAR responses.
+ * <p>
+ * Messages are only built when their level is enabled.
+ * Response bodies are cut off at a maximum length at info level and logged in full at debug level (i.e. mvn -X),
+ * so polling a large quality gate doesn't fill the build log.
+ */
+public final class LogUtil {
+	public static final int DEFAULT_MAX_PAYLOAD_LENGTH = 500;
+
+	private LogUtil() {
+	}
+
+	public static void info( final Log log, final Supplier<String> message ) {
+		if ( log.isInfoEnabled() ) {
+			log.info( message.get() );
+		}
+	}
+
+	public static void debug( final Log log, final Supplier<String> message ) {
+		if ( log.isDebugEnabled() ) {
+			log.debug( message.get() );
+		}
+	}
+
+	/**
+	 * Log a SONAR response: in full at debug level, otherwise at info level cut off at the given length.
+	 *
+	 * @param log,         the logging service.
+	 * @param description, what the payload is (e.g. "Resulting quality gate state").
+	 * @param payload,     the response body.
+	 * @param maxLength,   the maximum number of characters of the payload logged at info level, 0 to log its length only.
+	 */
+	public static void payload( final Log log, final String description, final CharSequence payload, final int maxLength ) {
+		if ( log.isDebugEnabled() ) {
+			log.debug( String.format( "%s: %s", description, payload ) );
+		}
+		else if ( log.isInfoEnabled() ) {
+			log.info( String.format( "%s: %s", description, truncate( payload, maxLength ) ) );
+		}
+	}
+
+	/**
+	 * @return the given payload when it's not longer than the given length, otherwise its start followed by the number of characters left out.
+	 */
+	static String truncate( final CharSequence payload, final int maxLength ) {
+		if ( payload == null ) {
+			return null;
+		}
+		if ( payload.length() <= Math.max( maxLength, 0 ) ) {
+			return payload.toString();
+		}
+		if ( maxLength <= 0 ) {
+			return String.format( "(%s characters, use -X to log them)", payload.length() );
+		}
+		return String.format( "%s... (%s more characters, use -X to log them)", payload.subSequence( 0, maxLength ), payload.length() - maxLength );
+	}
+}
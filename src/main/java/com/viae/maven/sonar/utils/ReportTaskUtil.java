@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Util to read the report-task.txt file the sonar scanner writes after publishing its analysis report.
+ */
+public class ReportTaskUtil {
+	public static final String CE_TASK_ID = "ceTaskId";
+
+	private ReportTaskUtil() {
+	}
+
+	/**
+	 * @param reportTaskFile, the report-task.txt file written by the sonar scanner.
+	 * @return the id of the compute engine task that processes the published report, null when there is no such file.
+	 * @throws SonarQualityException will be thrown when the file can't be read or doesn't contain a task id.
+	 */
+	public static String findCeTaskId( final File reportTaskFile ) throws SonarQualityException {
+		return reportTaskFile != null && reportTaskFile.isFile() ? getCeTaskId( reportTaskFile ) : null;
+	}
+
+	/**
+	 * @param reportTaskFile, the report-task.txt file written by the sonar scanner.
+	 * @return the id of the compute engine task that processes the published report.
+	 * @throws SonarQualityException will be thrown when the file can't be read or doesn't contain a task id.
+	 */
+	public static String getCeTaskId( final File reportTaskFile ) throws SonarQualityException {
+		if ( reportTaskFile == null || !reportTaskFile.isFile() ) {
+			throw new SonarQualityException( String.format( "sonar report task file '%s' not found, did the sonar analysis run?", reportTaskFile ) );
+		}
+		final Properties properties = new Properties();
+		try ( final InputStream inputStream = new FileInputStream( reportTaskFile ) ) {
+			properties.load( inputStream );
+		}
+		catch ( final IOException e ) {
+			throw new SonarQualityException( String.format( "could not read sonar report task file '%s'", reportTaskFile ), e );
+		}
+		final String ceTaskId = properties.getProperty( CE_TASK_ID );
+		if ( StringUtils.isBlank( ceTaskId ) ) {
+			throw new SonarQualityException( String.format( "no %s found in sonar report task file '%s'", CE_TASK_ID, reportTaskFile ) );
+		}
+		return ceTaskId.trim();
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import org.junit.Test;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ */
+public class TestCircuitBreaker {
+	private final AtomicLong now = new AtomicLong( 1000 );
+	private final CircuitBreaker breaker = new CircuitBreaker( 3, 500, now::get );
+
+	@Test
+	public void openAfterConsecutiveFailures() {
+		assertFalse( breaker.recordFailure() );
+		assertFalse( breaker.recordFailure() );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+
+		assertTrue( breaker.recordFailure() );
+
+		assertTrue( breaker.isOpen() );
+		assertThat( breaker.acquire(), equalTo( 500L ) );
+		now.addAndGet( 200 );
+		assertThat( breaker.acquire(), equalTo( 300L ) );
+	}
+
+	@Test
+	public void successResetsTheFailureCount() {
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+
+		assertFalse( breaker.isOpen() );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+	}
+
+	@Test
+	public void letOneTrialCallThroughAfterTheOpenDuration() {
+		openBreaker();
+		now.addAndGet( 500 );
+
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+		assertTrue( breaker.acquire() > 0 );
+
+		breaker.recordSuccess();
+
+		assertFalse( breaker.isOpen() );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+	}
+
+	@Test
+	public void failedTrialCallOpensAgain() {
+		openBreaker();
+		now.addAndGet( 500 );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+
+		assertTrue( breaker.recordFailure() );
+
+		assertThat( breaker.acquire(), equalTo( 500L ) );
+	}
+
+	@Test
+	public void ignoredTrialCallLetsTheNextTrialThrough() {
+		openBreaker();
+		now.addAndGet( 500 );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+
+		breaker.recordIgnored();
+
+		assertTrue( breaker.isOpen() );
+		assertThat( breaker.acquire(), equalTo( 0L ) );
+	}
+
+	@Test
+	public void shareBreakerPerClient() {
+		final SonarClient client = mock( SonarClient.class );
+
+		assertThat( CircuitBreaker.forClient( client ), sameInstance( CircuitBreaker.forClient( client ) ) );
+		assertThat( CircuitBreaker.forClient( client ), not( sameInstance( CircuitBreaker.forClient( mock( SonarClient.class ) ) ) ) );
+	}
+
+	@Test
+	public void shareBreakerPerServer() {
+		final CircuitBreaker breaker = CircuitBreaker.forClient( SonarClientRegistry.get( "http://breaker.test:9000", "admin", "secret" ) );
+
+		assertThat( CircuitBreaker.forClient( SonarClientRegistry.get( "http://breaker.test:9000", "other", "secret" ) ), sameInstance( breaker ) );
+		assertThat( CircuitBreaker.forHost( "http://breaker.test:9000/api/projects/project%3Afeature-x" ), sameInstance( breaker ) );
+		assertThat( CircuitBreaker.forHost( "http://repo.breaker.test/rest/api" ), not( sameInstance( breaker ) ) );
+	}
+
+	private void openBreaker() {
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordFailure();
+	}
+}
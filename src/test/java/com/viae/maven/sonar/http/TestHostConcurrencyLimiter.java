@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link HostConcurrencyLimiter}
+ */
+public class TestHostConcurrencyLimiter {
+
+	@Test
+	public void limitConcurrentCallsPerHost() throws Throwable {
+		final HostConcurrencyLimiter limiter = new HostConcurrencyLimiter( 2 );
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+		try {
+			final List<Future<String>> futures = new ArrayList<>();
+			for ( int i = 0; i < 16; i++ ) {
+				futures.add( executor.submit( () -> limiter.call( "http://localhost:9000/api/projects/1", () -> {
+					maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+					try {
+						Thread.sleep( 10 );
+					}
+					catch ( final InterruptedException e ) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					return "ok";
+				} ) ) );
+			}
+			for ( final Future<String> future : futures ) {
+				assertThat( future.get(), equalTo( "ok" ) );
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat( maxRunning.get(), equalTo( 2 ) );
+	}
+
+	@Test
+	public void host() {
+		assertThat( HostConcurrencyLimiter.host( "http://localhost:9000/api/projects/1" ), equalTo( "localhost:9000" ) );
+		assertThat( HostConcurrencyLimiter.host( "http://localhost/api" ), equalTo( "localhost:-1" ) );
+	}
+}
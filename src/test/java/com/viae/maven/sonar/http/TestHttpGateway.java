@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link HttpGateway}
+ */
+public class TestHttpGateway {
+	private static final String URL = "http://gateway.test:9000/api/projects/1";
+
+	@Test
+	public void everyAttemptIsRateLimitedAndMeasured() throws Throwable {
+		PluginMetrics.reset();
+		final RateLimiter rateLimiter = new RateLimiter( "gateway.test:9000", 100, 1, () -> 0L );
+		final HttpGateway gateway = new HttpGateway( new SystemStreamLog(), new RetryPolicy( 3, 1 ),
+		                                             new CircuitBreaker( 5, 1000, System::currentTimeMillis ), rateLimiter );
+		final AtomicInteger calls = new AtomicInteger();
+
+		final String result = gateway.call( "DELETE", URL, () -> {
+			if ( calls.incrementAndGet() == 1 ) {
+				throw new HttpStatusException( "DELETE", URL, 503, "", -1 );
+			}
+			return "deleted";
+		} );
+
+		assertThat( result, equalTo( "deleted" ) );
+		assertThat( calls.get(), equalTo( 2 ) );
+		assertThat( PluginMetrics.distribution( PluginMetrics.RATE_LIMITER_WAIT, "host", "gateway.test:9000" ).getCount(), equalTo( 1L ) );
+		assertThat( PluginMetrics.distribution( PluginMetrics.HTTP_CLIENT_REQUESTS, "method", "DELETE", "endpoint", "/api/projects/{id}", "status", "503" )
+		                         .getCount(), equalTo( 1L ) );
+	}
+}
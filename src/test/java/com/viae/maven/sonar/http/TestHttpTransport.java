@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.sun.net.httpserver.HttpServer;
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HttpTransport}
+ */
+public class TestHttpTransport {
+	private static final String BODY = "{\"values\":[]}";
+
+	private HttpServer server;
+	private String rootUrl;
+	private final Set<Integer> clientPorts = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+	private volatile String authorization;
+
+	@Before
+	public void setupFreshFixture() throws Throwable {
+		server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		server.createContext( "/plain", exchange -> {
+			clientPorts.add( exchange.getRemoteAddress().getPort() );
+			authorization = exchange.getRequestHeaders().getFirst( "Authorization" );
+			final byte[] body = BODY.getBytes( StandardCharsets.UTF_8 );
+			exchange.sendResponseHeaders( 200, body.length );
+			try ( final OutputStream outputStream = exchange.getResponseBody() ) {
+				outputStream.write( body );
+			}
+		} );
+		server.createContext( "/gzip", exchange -> {
+			exchange.getResponseHeaders().add( "Content-Encoding", "gzip" );
+			exchange.sendResponseHeaders( 200, 0 );
+			try ( final OutputStream outputStream = new GZIPOutputStream( exchange.getResponseBody() ) ) {
+				outputStream.write( BODY.getBytes( StandardCharsets.UTF_8 ) );
+			}
+		} );
+		server.createContext( "/busy", exchange -> {
+			exchange.getResponseHeaders().add( "Retry-After", "3" );
+			final byte[] body = "busy".getBytes( StandardCharsets.UTF_8 );
+			exchange.sendResponseHeaders( 503, body.length );
+			try ( final OutputStream outputStream = exchange.getResponseBody() ) {
+				outputStream.write( body );
+			}
+		} );
+		server.start();
+		rootUrl = String.format( "http://localhost:%s", server.getAddress().getPort() );
+	}
+
+	@After
+	public void tearDown() {
+		server.stop( 0 );
+	}
+
+	@Test
+	public void getSendsBasicAuthentication() throws Throwable {
+		assertThat( new HttpTransport( "user", "secret" ).get( rootUrl + "/plain" ), equalTo( BODY ) );
+		assertThat( authorization, equalTo( "Basic dXNlcjpzZWNyZXQ=" ) );
+	}
+
+	@Test
+	public void connectionIsKeptAlive() throws Throwable {
+		final HttpTransport transport = new HttpTransport( "user", "secret" );
+		for ( int i = 0; i < 5; i++ ) {
+			transport.get( rootUrl + "/plain" );
+		}
+		assertThat( clientPorts.size(), equalTo( 1 ) );
+	}
+
+	@Test
+	public void gzipResponseIsDecoded() throws Throwable {
+		assertThat( new HttpTransport( "user", "secret" ).get( rootUrl + "/gzip" ), equalTo( BODY ) );
+	}
+
+	@Test
+	public void errorStatusIsReported() throws Throwable {
+		try {
+			new HttpTransport( "user", "secret" ).get( rootUrl + "/busy" );
+			fail( "no error" );
+		}
+		catch ( final HttpStatusException e ) {
+			assertThat( e.status(), equalTo( 503 ) );
+			assertThat( e.retryAfterSeconds(), equalTo( 3L ) );
+		}
+	}
+
+	@Test
+	public void retryAfter() {
+		assertThat( HttpTransport.retryAfter( null ), equalTo( -1L ) );
+		assertThat( HttpTransport.retryAfter( " 120 " ), equalTo( 120L ) );
+		assertThat( HttpTransport.retryAfter( "Wed, 21 Oct 2015 07:28:00 GMT" ), equalTo( -1L ) );
+	}
+
+	@Test
+	public void transportIsSharedPerCredentials() {
+		assertThat( HttpTransport.shared( "user", "secret" ), sameInstance( HttpTransport.shared( "user", "secret" ) ) );
+		assertThat( HttpTransport.shared( "user", "secret" ), not( sameInstance( HttpTransport.shared( "user", "other" ) ) ) );
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link RateLimiter}
+ */
+public class TestRateLimiter {
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+	private final AtomicLong now = new AtomicLong( 1000 * MILLIS );
+	private final RateLimiter limiter = new RateLimiter( "sonar:9000", 10, 3, now::get );
+
+	@Test
+	public void letTheBurstThroughAtOnce() {
+		assertThat( limiter.reserve(), equalTo( 0L ) );
+		assertThat( limiter.reserve(), equalTo( 0L ) );
+		assertThat( limiter.reserve(), equalTo( 0L ) );
+
+		assertThat( limiter.reserve(), equalTo( 100 * MILLIS ) );
+	}
+
+	@Test
+	public void queueTheCallsBeyondTheBurstAtTheRate() {
+		drain();
+
+		assertThat( limiter.reserve(), equalTo( 100 * MILLIS ) );
+		assertThat( limiter.reserve(), equalTo( 200 * MILLIS ) );
+		now.addAndGet( 150 * MILLIS );
+		assertThat( limiter.reserve(), equalTo( 150 * MILLIS ) );
+	}
+
+	@Test
+	public void refillUpToTheBurst() {
+		drain();
+		now.addAndGet( 100 * MILLIS );
+		assertThat( limiter.reserve(), equalTo( 0L ) );
+		assertThat( limiter.reserve(), equalTo( 100 * MILLIS ) );
+
+		now.addAndGet( TimeUnit.MINUTES.toNanos( 1 ) );
+		drain();
+		assertThat( limiter.reserve(), equalTo( 100 * MILLIS ) );
+	}
+
+	@Test
+	public void noLimitWithoutRate() {
+		final RateLimiter unlimited = new RateLimiter( "sonar:9000", 0, 1, now::get );
+		for ( int i = 0; i < 100; i++ ) {
+			assertThat( unlimited.reserve(), equalTo( 0L ) );
+		}
+		assertThat( RateLimiter.UNLIMITED.reserve(), equalTo( 0L ) );
+	}
+
+	@Test
+	public void reconfigureKeepsTheTokensUpToTheNewBurst() {
+		limiter.configure( 10, 1 );
+
+		assertThat( limiter.reserve(), equalTo( 0L ) );
+		assertThat( limiter.reserve(), equalTo( 100 * MILLIS ) );
+	}
+
+	@Test
+	public void oneLimiterPerHost() {
+		final RateLimiter limiter = RateLimiter.forHost( "http://sonar.rate.test:9000/api/ce/task?id=1", 5, 2 );
+
+		assertThat( RateLimiter.forHost( "http://sonar.rate.test:9000/api/projects/1", 5, 2 ), sameInstance( limiter ) );
+		assertThat( RateLimiter.forHost( "http://repo.rate.test/rest/api", 5, 2 ), not( sameInstance( limiter ) ) );
+		assertThat( limiter.getHost(), equalTo( "sonar.rate.test:9000" ) );
+
+		RateLimiter.forHost( "http://sonar.rate.test:9000", 50, 100 );
+		assertThat( limiter.getRequestsPerSecond(), equalTo( 50.0 ) );
+		assertThat( limiter.getBurst(), equalTo( 100 ) );
+	}
+
+	@Test
+	public void acquireWaitsAndRecordsTheWait() {
+		final RateLimiter limiter = new RateLimiter( "sonar.wait.test:9000", 100, 1, System::nanoTime );
+		final Log log = mock( Log.class );
+
+		assertThat( limiter.acquire( log, "GET", "/api/ce/task" ), equalTo( 0L ) );
+		final long start = System.nanoTime();
+		final long wait = limiter.acquire( log, "GET", "/api/ce/task" );
+
+		assertTrue( wait > 0 );
+		assertTrue( System.nanoTime() - start >= wait );
+		assertThat( PluginMetrics.distribution( PluginMetrics.RATE_LIMITER_WAIT, "host", "sonar.wait.test:9000" ), notNullValue() );
+	}
+
+	private void drain() {
+		for ( int i = 0; i < limiter.getBurst(); i++ ) {
+			assertThat( limiter.reserve(), equalTo( 0L ) );
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.sun.net.httpserver.HttpServer;
+import com.viae.maven.sonar.exceptions.CircuitOpenException;
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RetryPolicy}, against a local server that answers with the scripted faults first.
+ */
+public class TestRetryPolicy {
+	private static final String BODY = "{\"values\":[]}";
+
+	private HttpServer server;
+	private String url;
+	private final Queue<String> faults = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final HttpTransport transport = new HttpTransport( "user", "secret" );
+	private final CircuitBreaker breaker = new CircuitBreaker( CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, TimeUnit.MINUTES.toMillis( 1 ), System::currentTimeMillis );
+
+	@Before
+	public void setupFreshFixture() throws Throwable {
+		server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		// a fault is a status code, optionally followed by a Retry-After value (e.g. 503:1)
+		server.createContext( "/api", exchange -> {
+			requests.incrementAndGet();
+			final String fault = faults.poll();
+			int status = 200;
+			byte[] body = BODY.getBytes( StandardCharsets.UTF_8 );
+			if ( fault != null ) {
+				final String[] parts = fault.split( ":" );
+				status = Integer.parseInt( parts[0] );
+				if ( parts.length > 1 ) {
+					exchange.getResponseHeaders().add( "Retry-After", parts[1] );
+				}
+				body = "fault".getBytes( StandardCharsets.UTF_8 );
+			}
+			exchange.sendResponseHeaders( status, body.length );
+			try ( final OutputStream outputStream = exchange.getResponseBody() ) {
+				outputStream.write( body );
+			}
+		} );
+		server.start();
+		url = String.format( "http://localhost:%s/api/ce/task", server.getAddress().getPort() );
+	}
+
+	@After
+	public void tearDown() {
+		server.stop( 0 );
+	}
+
+	@Test
+	public void retryWhenServerIsUnavailable() throws Throwable {
+		faults.add( "503" );
+		faults.add( "502" );
+		final long retries = PluginMetrics.count( PluginMetrics.HTTP_CLIENT_RETRIES );
+
+		final String result = new RetryPolicy( 3, 10 ).call( breaker, "GET", url, () -> transport.get( url ) );
+
+		assertThat( result, equalTo( BODY ) );
+		assertThat( requests.get(), equalTo( 3 ) );
+		assertThat( PluginMetrics.count( PluginMetrics.HTTP_CLIENT_RETRIES ) - retries, equalTo( 2L ) );
+		assertFalse( breaker.isOpen() );
+	}
+
+	@Test
+	public void tellTheListenerAboutEveryRetry() throws Throwable {
+		faults.add( "429" );
+		faults.add( "503" );
+		final Queue<String> retries = new ConcurrentLinkedQueue<>();
+
+		new RetryPolicy( 3, 10 ).call( breaker, "GET", url, ( status, backoff ) -> retries.add( status + ":" + backoff ), () -> transport.get( url ) );
+
+		assertThat( retries.poll(), equalTo( "429:10" ) );
+		assertThat( retries.poll(), equalTo( "503:20" ) );
+		assertThat( retries.isEmpty(), equalTo( true ) );
+	}
+
+	@Test
+	public void honorRetryAfter() throws Throwable {
+		faults.add( "429:1" );
+		final long start = System.nanoTime();
+
+		new RetryPolicy( 3, 10 ).call( breaker, "GET", url, () -> transport.get( url ) );
+
+		assertTrue( System.nanoTime() - start >= TimeUnit.SECONDS.toNanos( 1 ) );
+		assertThat( requests.get(), equalTo( 2 ) );
+	}
+
+	@Test
+	public void giveUpAfterMaxRetries() throws Throwable {
+		for ( int i = 0; i < 10; i++ ) {
+			faults.add( "503" );
+		}
+		try {
+			new RetryPolicy( 2, 10 ).call( breaker, "GET", url, () -> transport.get( url ) );
+			fail( "no error" );
+		}
+		catch ( final HttpStatusException e ) {
+			assertThat( e.status(), equalTo( 503 ) );
+			assertThat( requests.get(), equalTo( 3 ) );
+		}
+	}
+
+	@Test
+	public void doNotRetryClientErrors() throws Throwable {
+		faults.add( "404" );
+		try {
+			new RetryPolicy( 3, 10 ).call( breaker, "GET", url, () -> transport.get( url ) );
+			fail( "no error" );
+		}
+		catch ( final HttpStatusException e ) {
+			assertThat( e.status(), equalTo( 404 ) );
+			assertThat( requests.get(), equalTo( 1 ) );
+		}
+	}
+
+	@Test
+	public void openCircuitShedsLoad() throws Throwable {
+		for ( int i = 0; i < 10; i++ ) {
+			faults.add( "500" );
+		}
+		final RetryPolicy policy = new RetryPolicy( 3, 10 );
+		for ( int i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++ ) {
+			try {
+				policy.call( breaker, "GET", url, () -> transport.get( url ) );
+				fail( "no error" );
+			}
+			catch ( final HttpStatusException e ) {
+				assertThat( e.status(), equalTo( 500 ) );
+			}
+		}
+		assertTrue( breaker.isOpen() );
+
+		try {
+			policy.call( breaker, "GET", url, () -> transport.get( url ) );
+			fail( "no error" );
+		}
+		catch ( final CircuitOpenException e ) {
+			assertTrue( e.retryInMillis() > 0 );
+		}
+		assertThat( requests.get(), equalTo( CircuitBreaker.DEFAULT_FAILURE_THRESHOLD ) );
+	}
+
+	@Test
+	public void retriesCountTowardsTheCircuitBreaker() throws Throwable {
+		for ( int i = 0; i < 10; i++ ) {
+			faults.add( "503" );
+		}
+		try {
+			new RetryPolicy( 10, 1 ).call( breaker, "GET", url, () -> transport.get( url ) );
+			fail( "no error" );
+		}
+		catch ( final CircuitOpenException e ) {
+			assertThat( requests.get(), equalTo( CircuitBreaker.DEFAULT_FAILURE_THRESHOLD ) );
+		}
+	}
+
+	@Test
+	public void otherErrorsAreNotRetried() {
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			new RetryPolicy( 3, 10 ).call( breaker, "GET", url, () -> {
+				calls.incrementAndGet();
+				throw new SonarQualityException( "connection refused" );
+			} );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( calls.get(), equalTo( 1 ) );
+		}
+	}
+
+	@Test
+	public void isRetryable() {
+		assertTrue( RetryPolicy.isRetryable( "GET", 429 ) );
+		assertTrue( RetryPolicy.isRetryable( "GET", 502 ) );
+		assertTrue( RetryPolicy.isRetryable( "GET", 503 ) );
+		assertTrue( RetryPolicy.isRetryable( "GET", 504 ) );
+		assertTrue( RetryPolicy.isRetryable( "POST", 503 ) );
+		assertFalse( RetryPolicy.isRetryable( "POST", 504 ) );
+		assertFalse( RetryPolicy.isRetryable( "GET", 500 ) );
+		assertFalse( RetryPolicy.isRetryable( "GET", 404 ) );
+	}
+
+	@Test
+	public void backoff() {
+		final RetryPolicy policy = new RetryPolicy( 3, 100 );
+		assertThat( policy.backoff( 0, -1 ), equalTo( 100L ) );
+		assertThat( policy.backoff( 2, -1 ), equalTo( 400L ) );
+		assertThat( policy.backoff( 0, 2 ), equalTo( 2000L ) );
+		assertThat( policy.backoff( 30, -1 ), equalTo( RetryPolicy.MAX_RETRY_INTERVAL ) );
+		assertThat( policy.backoff( 0, 3600 ), equalTo( RetryPolicy.MAX_RETRY_INTERVAL ) );
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link SingleFlight}
+ */
+public class TestSingleFlight {
+	private static final String URL = "/api/resources?format=json&resource=projectKey";
+	private static final int THREADS = 8;
+
+	private final SingleFlight singleFlight = new SingleFlight();
+	private final ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+	private final AtomicInteger requests = new AtomicInteger();
+	private final CountDownLatch started = new CountDownLatch( 1 );
+	private final CountDownLatch release = new CountDownLatch( 1 );
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentIdenticalCallsShareOneRequest() throws Throwable {
+		final long coalesced = PluginMetrics.count( PluginMetrics.HTTP_CLIENT_COALESCED );
+		final List<Future<String>> responses = startConcurrentCalls( () -> {
+			requests.incrementAndGet();
+			started.countDown();
+			awaitRelease();
+			return new String( "{\"date\":\"2016-05-03T14:04:45+0200\"}" );
+		}, coalesced );
+
+		final String response = responses.get( 0 ).get( 5, TimeUnit.SECONDS );
+		for ( final Future<String> other : responses ) {
+			assertThat( other.get( 5, TimeUnit.SECONDS ), sameInstance( response ) );
+		}
+		assertThat( requests.get(), equalTo( 1 ) );
+		assertThat( PluginMetrics.count( PluginMetrics.HTTP_CLIENT_COALESCED ) - coalesced, equalTo( (long) THREADS - 1 ) );
+		assertThat( singleFlight.inFlight(), equalTo( 0 ) );
+	}
+
+	@Test
+	public void coalescedCallersGetTheSameError() throws Throwable {
+		final IllegalStateException unavailable = new IllegalStateException( "503" );
+		final List<Future<String>> responses = startConcurrentCalls( () -> {
+			requests.incrementAndGet();
+			started.countDown();
+			awaitRelease();
+			throw unavailable;
+		}, PluginMetrics.count( PluginMetrics.HTTP_CLIENT_COALESCED ) );
+
+		for ( final Future<String> response : responses ) {
+			try {
+				response.get( 5, TimeUnit.SECONDS );
+				fail( "no error" );
+			}
+			catch ( final ExecutionException e ) {
+				assertThat( e.getCause(), sameInstance( unavailable ) );
+			}
+		}
+		assertThat( requests.get(), equalTo( 1 ) );
+	}
+
+	@Test
+	public void callsThatDontOverlapAreSentAgain() {
+		singleFlight.call( URL, () -> "first" + requests.incrementAndGet() );
+
+		assertThat( singleFlight.call( URL, () -> "second" + requests.incrementAndGet() ), equalTo( "second2" ) );
+		assertThat( requests.get(), equalTo( 2 ) );
+	}
+
+	@Test
+	public void differentCallsAreNotCoalesced() {
+		singleFlight.call( URL, () -> singleFlight.call( URL + "-other", () -> "nested" + requests.incrementAndGet() ) );
+
+		assertThat( requests.get(), equalTo( 1 ) );
+	}
+
+	/**
+	 * Start the given call on one thread and, once it is in flight, the same call on the other threads, then let it finish.
+	 */
+	private List<Future<String>> startConcurrentCalls( final Supplier<String> call, final long coalescedBefore ) throws Throwable {
+		final List<Future<String>> responses = new ArrayList<>();
+		responses.add( executor.submit( () -> singleFlight.call( URL, call ) ) );
+		assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+		for ( int i = 1; i < THREADS; i++ ) {
+			responses.add( executor.submit( () -> singleFlight.call( URL, call ) ) );
+		}
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+		while ( PluginMetrics.count( PluginMetrics.HTTP_CLIENT_COALESCED ) - coalescedBefore < THREADS - 1 && System.nanoTime() < deadline ) {
+			Thread.sleep( 1 );
+		}
+		release.countDown();
+		return responses;
+	}
+
+	private void awaitRelease() {
+		try {
+			release.await( 5, TimeUnit.SECONDS );
+		}
+		catch ( final InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
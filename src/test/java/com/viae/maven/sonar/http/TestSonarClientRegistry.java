@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.http;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link SonarClientRegistry}
+ */
+public class TestSonarClientRegistry {
+	private static final String SERVER = "http://localhost:9000";
+
+	@Test
+	public void clientIsSharedPerServerAndCredentials() {
+		assertThat( SonarClientRegistry.get( SERVER, "user", "secret" ), sameInstance( SonarClientRegistry.get( SERVER + "/", "user", "secret" ) ) );
+		assertThat( SonarClientRegistry.get( SERVER, "user", "secret" ), not( sameInstance( SonarClientRegistry.get( SERVER, "user", "other" ) ) ) );
+		assertThat( SonarClientRegistry.get( SERVER, "user", "secret" ), not( sameInstance( SonarClientRegistry.get( "http://other:9000", "user", "secret" ) ) ) );
+	}
+
+	@Test
+	public void keyDoesNotContainPassword() {
+		assertThat( SonarClientRegistry.key( SERVER, "user", "secret" ), not( containsString( "secret" ) ) );
+	}
+}
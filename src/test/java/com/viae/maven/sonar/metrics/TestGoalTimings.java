@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.metrics;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link GoalTimings}
+ */
+public class TestGoalTimings {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	private final Log log = mock( Log.class );
+
+	@Before
+	public void setupFreshFixture() {
+		GoalTimings.reset();
+	}
+
+	@Test
+	public void writeBreakdownPerPhase() throws Throwable {
+		GoalTimings.start( "validate-qualitygate" );
+		GoalTimings.record( GoalTimings.HTTP, "GET /api/ce/task", TimeUnit.MILLISECONDS.toNanos( 2 ) );
+		GoalTimings.record( GoalTimings.HTTP, "GET /api/ce/task", TimeUnit.MILLISECONDS.toNanos( 3 ) );
+		GoalTimings.record( GoalTimings.HTTP, "POST /api/qualitygates/select", TimeUnit.MILLISECONDS.toNanos( 5 ) );
+		GoalTimings.record( GoalTimings.WAIT, "poll", TimeUnit.MILLISECONDS.toNanos( 100 ) );
+		final File directory = new File( folder.getRoot(), "target" );
+
+		GoalTimings.finish( log, directory, true );
+
+		final String json = read( new File( directory, GoalTimings.FILE ) );
+		assertThat( json, containsString( "\"goal\":\"validate-qualitygate\"" ) );
+		assertThat( json, containsString( "\"success\":true" ) );
+		assertThat( json, containsString( "\"phasesMs\":{\"http\":10.0,\"wait\":100.0}" ) );
+		assertThat( json, containsString( "{\"phase\":\"http\",\"detail\":\"GET \\/api\\/ce\\/task\",\"count\":2,\"totalMs\":5.0,\"maxMs\":3.0}" ) );
+		assertThat( json, containsString( "{\"phase\":\"wait\",\"detail\":\"poll\",\"count\":1,\"totalMs\":100.0,\"maxMs\":100.0}" ) );
+	}
+
+	@Test
+	public void reportAllGoalsOfTheSession() throws Throwable {
+		final File directory = folder.getRoot();
+		GoalTimings.start( "set-git-branch" );
+		GoalTimings.record( GoalTimings.GIT_LOOKUP, "branch", TimeUnit.MILLISECONDS.toNanos( 1 ) );
+		GoalTimings.finish( log, directory, true );
+		GoalTimings.start( "validate-qualitygate" );
+		GoalTimings.finish( log, directory, false );
+
+		final String json = read( new File( directory, GoalTimings.FILE ) );
+		assertThat( json, containsString( "\"goal\":\"set-git-branch\"" ) );
+		assertThat( json, containsString( "\"goal\":\"validate-qualitygate\"" ) );
+		assertThat( json, containsString( "\"success\":false" ) );
+		assertThat( json, containsString( "\"phasesMs\":{}" ) );
+	}
+
+	@Test
+	public void startDropsEarlierPhases() {
+		GoalTimings.start( "set-git-branch" );
+		GoalTimings.record( GoalTimings.JSON_PARSE, null, 1000 );
+		assertThat( GoalTimings.totalNanos( GoalTimings.JSON_PARSE ), equalTo( 1000L ) );
+
+		GoalTimings.start( "link-project-to-qualitygate" );
+
+		assertThat( GoalTimings.totalNanos( GoalTimings.JSON_PARSE ), equalTo( 0L ) );
+	}
+
+	@Test
+	public void keepGoalsOfParallelBuildsApart() throws Throwable {
+		final File directory = folder.getRoot();
+		final CountDownLatch bothStarted = new CountDownLatch( 2 );
+		final ExecutorService builds = Executors.newFixedThreadPool( 2 );
+		final List<Future<Long>> totals = new ArrayList<>();
+		for ( final String goal : Arrays.asList( "validate-qualitygate", "link-project-to-qualitygate" ) ) {
+			totals.add( builds.submit( () -> {
+				GoalTimings.start( goal );
+				bothStarted.countDown();
+				bothStarted.await( 5, TimeUnit.SECONDS );
+				GoalTimings.record( GoalTimings.HTTP, goal, 1000 );
+				final long total = GoalTimings.totalNanos( GoalTimings.HTTP );
+				GoalTimings.finish( log, directory, true );
+				return total;
+			} ) );
+		}
+		builds.shutdown();
+
+		assertThat( totals.get( 0 ).get(), equalTo( 1000L ) );
+		assertThat( totals.get( 1 ).get(), equalTo( 1000L ) );
+		final String json = read( new File( directory, GoalTimings.FILE ) );
+		assertThat( json, containsString( "{\"phase\":\"http\",\"detail\":\"validate-qualitygate\",\"count\":1" ) );
+		assertThat( json, containsString( "{\"phase\":\"http\",\"detail\":\"link-project-to-qualitygate\",\"count\":1" ) );
+	}
+
+	@Test
+	public void recordBoundTasksOnTheGoalThatHandedThemOver() throws Throwable {
+		GoalTimings.start( "sync-git-branches" );
+		final Runnable task = GoalTimings.bind( () -> GoalTimings.record( GoalTimings.GIT_LOOKUP, "remote branches", 1000 ) );
+		final Thread worker = new Thread( task );
+		worker.start();
+		worker.join();
+		final Thread unbound = new Thread( () -> GoalTimings.record( GoalTimings.GIT_LOOKUP, "remote branches", 1000 ) );
+		unbound.start();
+		unbound.join();
+
+		assertThat( GoalTimings.totalNanos( GoalTimings.GIT_LOOKUP ), equalTo( 1000L ) );
+	}
+
+	@Test
+	public void dropRecordsOutsideAGoal() {
+		GoalTimings.record( GoalTimings.JSON_PARSE, null, 1000 );
+
+		assertThat( GoalTimings.totalNanos( GoalTimings.JSON_PARSE ), equalTo( 0L ) );
+	}
+
+	@Test
+	public void timeFailingCall() {
+		GoalTimings.start( "sync-git-branches" );
+		try {
+			GoalTimings.time( GoalTimings.GIT_LOOKUP, "remote branches", () -> {
+				Thread.sleep( 5 );
+				throw new SonarQualityException( "repository is down" );
+			} );
+			fail( "no error" );
+		}
+		catch ( final Exception e ) {
+			assertThat( e.getMessage(), equalTo( "repository is down" ) );
+		}
+		assertThat( GoalTimings.totalNanos( GoalTimings.GIT_LOOKUP ) >= TimeUnit.MILLISECONDS.toNanos( 5 ), equalTo( true ) );
+	}
+
+	@Test
+	public void httpCallsAreTimed() {
+		GoalTimings.start( "validate-qualitygate" );
+		PluginMetrics.timeHttpCall( "GET", "/api/ce/task?id=AVYVrjCVMq4y3xJ0q2Xc", () -> "{}" );
+
+		GoalTimings.finish( log, null, true );
+
+		assertThat( GoalTimings.toJson(), containsString( "\"detail\":\"GET \\/api\\/ce\\/task\"" ) );
+		assertThat( GoalTimings.toJson(), not( containsString( "AVYVrjCVMq4y3xJ0q2Xc" ) ) );
+	}
+
+	private static String read( final File file ) throws Exception {
+		return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.metrics;
+
+import com.viae.maven.sonar.exceptions.HttpStatusException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link PluginMetrics}
+ */
+public class TestPluginMetrics {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setupFreshFixture() {
+		PluginMetrics.reset();
+	}
+
+	@Test
+	public void countersStartAtZero() {
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_APPLIED ), equalTo( 0L ) );
+	}
+
+	@Test
+	public void increment() {
+		PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_SKIPPED );
+		PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_SKIPPED );
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_SKIPPED ), equalTo( 2L ) );
+		assertThat( PluginMetrics.counters().get( PluginMetrics.QUALITY_GATE_LINK_SKIPPED ), equalTo( 2L ) );
+	}
+
+	@Test
+	public void endpointWithoutHostQueryAndIds() {
+		assertThat( PluginMetrics.endpoint( "/api/qualitygates/show?name=gate" ), equalTo( "/api/qualitygates/show" ) );
+		assertThat( PluginMetrics.endpoint( "https://sonar.viae-it.com/api/projects/12/delete" ), equalTo( "/api/projects/{id}/delete" ) );
+		assertThat( PluginMetrics.endpoint( "/api/ce/task?id=AVYVrjCVMq4y3xJ0q2Xc" ), equalTo( "/api/ce/task" ) );
+		assertThat( PluginMetrics.endpoint( "/rest/branches/AVYVrjCVMq4y3xJ0q2Xc" ), equalTo( "/rest/branches/{id}" ) );
+		assertThat( PluginMetrics.endpoint( "https://sonar.viae-it.com" ), equalTo( "/" ) );
+	}
+
+	@Test
+	public void timeHttpCallTagsSuccess() {
+		assertThat( PluginMetrics.timeHttpCall( "GET", "/api/qualitygates/show?name=gate", () -> "{}" ), equalTo( "{}" ) );
+		final Distribution distribution =
+				PluginMetrics.distribution( PluginMetrics.HTTP_CLIENT_REQUESTS, "method", "GET", "endpoint", "/api/qualitygates/show", "status", PluginMetrics.STATUS_SUCCESS );
+		assertThat( distribution.getCount(), equalTo( 1L ) );
+	}
+
+	@Test
+	public void timeHttpCallTagsStatusOfFailure() {
+		try {
+			PluginMetrics.timeHttpCall( "DELETE", "/rest/branches/12", () -> {
+				throw new HttpStatusException( "DELETE", "/rest/branches/12", 503, "down", -1 );
+			} );
+			fail( "no error" );
+		}
+		catch ( final HttpStatusException e ) {
+			// expected
+		}
+		final Distribution distribution = PluginMetrics.distribution( PluginMetrics.HTTP_CLIENT_REQUESTS, "method", "DELETE", "endpoint", "/rest/branches/{id}", "status", "503" );
+		assertThat( distribution.getCount(), equalTo( 1L ) );
+	}
+
+	@Test
+	public void recordValueInBuckets() {
+		PluginMetrics.recordValue( PluginMetrics.QUALITY_GATE_POLLS, 1, "wait", "new-results", "outcome", "published" );
+		PluginMetrics.recordValue( PluginMetrics.QUALITY_GATE_POLLS, 4, "wait", "new-results", "outcome", "published" );
+		PluginMetrics.recordValue( PluginMetrics.QUALITY_GATE_POLLS, 1000, "outcome", "published", "wait", "new-results" );
+
+		final Distribution distribution = PluginMetrics.distribution( PluginMetrics.QUALITY_GATE_POLLS, "wait", "new-results", "outcome", "published" );
+		assertThat( distribution.getCount(), equalTo( 3L ) );
+		assertThat( distribution.getSum(), equalTo( 1005L ) );
+		assertThat( distribution.getMax(), equalTo( 1000L ) );
+		final long[] counts = distribution.getBucketCounts();
+		assertThat( counts[0], equalTo( 1L ) );
+		assertThat( counts[3], equalTo( 1L ) );
+		assertThat( counts[counts.length - 1], equalTo( 1L ) );
+	}
+
+	@Test
+	public void toJson() {
+		PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_APPLIED );
+		PluginMetrics.recordTime( PluginMetrics.QUALITY_GATE_VERDICT, TimeUnit.MILLISECONDS.toNanos( 30 ), "mode", "last-run", "outcome", "passed" );
+
+		final String json = PluginMetrics.toJson();
+		assertThat( json, containsString( "\"quality_gate_link_applied\":1" ) );
+		assertThat( json, containsString( "\"name\":\"quality_gate_verdict\"" ) );
+		assertThat( json, containsString( "\"totalMs\":30.0" ) );
+		assertThat( json, containsString( "\"50\":1" ) );
+	}
+
+	@Test
+	public void toPrometheus() {
+		PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_APPLIED );
+		PluginMetrics.recordTime( PluginMetrics.QUALITY_GATE_VERDICT, TimeUnit.MILLISECONDS.toNanos( 30 ), "mode", "last-run", "outcome", "passed" );
+
+		final String text = PluginMetrics.toPrometheus();
+		assertThat( text, containsString( "quality_gate_link_applied_total 1\n" ) );
+		assertThat( text, not( containsString( "\r" ) ) );
+		assertThat( text, containsString( "# TYPE quality_gate_verdict_seconds histogram" ) );
+		assertThat( text, containsString( "quality_gate_verdict_seconds_bucket{mode=\"last-run\",outcome=\"passed\",le=\"0.025\"} 0" ) );
+		assertThat( text, containsString( "quality_gate_verdict_seconds_bucket{mode=\"last-run\",outcome=\"passed\",le=\"0.05\"} 1" ) );
+		assertThat( text, containsString( "quality_gate_verdict_seconds_bucket{mode=\"last-run\",outcome=\"passed\",le=\"+Inf\"} 1" ) );
+		assertThat( text, containsString( "quality_gate_verdict_seconds_count{mode=\"last-run\",outcome=\"passed\"} 1" ) );
+	}
+
+	@Test
+	public void export() throws Exception {
+		PluginMetrics.increment( PluginMetrics.QUALITY_GATE_LINK_APPLIED );
+		final File directory = new File( folder.getRoot(), "target" );
+
+		PluginMetrics.export( mock( Log.class ), directory );
+
+		assertTrue( new File( directory, PluginMetrics.JSON_FILE ).isFile() );
+		final String text = new String( Files.readAllBytes( new File( directory, PluginMetrics.PROMETHEUS_FILE ).toPath() ), StandardCharsets.UTF_8 );
+		assertThat( text, containsString( "quality_gate_link_applied_total 1" ) );
+	}
+}
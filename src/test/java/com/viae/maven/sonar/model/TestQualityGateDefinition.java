@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link QualityGateDefinition}
+ */
+public class TestQualityGateDefinition {
+	private static final String QUALITY_GATE = "{\"id\":2,\"name\":\"strict\",\"conditions\":[" +
+			"{\"id\":1,\"metric\":\"blocker_violations\",\"op\":\"GT\",\"error\":\"0\"}," +
+			"{\"id\":2,\"metric\":\"new_coverage\",\"op\":\"LT\",\"warning\":\"90\",\"error\":\"80\",\"period\":1}," +
+			"{\"id\":3,\"metric\":\"blocker_violations\",\"op\":\"GT\",\"warning\":\"0\",\"period\":1}" +
+			"]}";
+
+	@Test
+	public void parse() throws Throwable {
+		final QualityGateDefinition qualityGate = QualityGateDefinition.parse( QUALITY_GATE );
+
+		assertThat( qualityGate.getId(), equalTo( "2" ) );
+		assertThat( qualityGate.getName(), equalTo( "strict" ) );
+		assertThat( qualityGate.getConditions().size(), equalTo( 3 ) );
+		final QualityGateStatus.Condition condition = qualityGate.getConditions().get( 1 );
+		assertThat( condition.getMetric(), equalTo( "new_coverage" ) );
+		assertThat( condition.getOp(), equalTo( "LT" ) );
+		assertThat( condition.getWarning(), equalTo( "90" ) );
+		assertThat( condition.getError(), equalTo( "80" ) );
+		assertThat( condition.getPeriod(), equalTo( "1" ) );
+		assertThat( condition.getActual(), nullValue() );
+	}
+
+	@Test
+	public void metricKeysAreDistinct() throws Throwable {
+		final QualityGateDefinition qualityGate = QualityGateDefinition.parse( QUALITY_GATE );
+
+		assertThat( new ArrayList<>( qualityGate.getMetricKeys() ), equalTo( Arrays.asList( "blocker_violations", "new_coverage" ) ) );
+	}
+
+	@Test
+	public void parseWithoutConditions() throws Throwable {
+		final QualityGateDefinition qualityGate = QualityGateDefinition.parse( "{\"id\":3,\"name\":\"empty\"}" );
+
+		assertTrue( qualityGate.getConditions().isEmpty() );
+		assertTrue( qualityGate.getMetricKeys().isEmpty() );
+	}
+}
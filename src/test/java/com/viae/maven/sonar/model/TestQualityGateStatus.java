@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.model;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link QualityGateStatus}
+ */
+public class TestQualityGateStatus {
+	private static final String CRITICAL_VIOLATIONS_TOO_HIGH = "[{\"msr\":{\"data\":" +
+			"{\"level\":\"ERROR\"," +
+			"\"conditions\":[" +
+			"{\"metric\":\"critical_violations\",\"op\":\"LT\",\"period\":3,\"warning\":\"1\",\"error\":\"1\",\"actual\":\"0.0\",\"level\":\"ERROR\"}" +
+			"]}}}]";
+	private static final String DATA_AS_STRING = "[{\"key\":\"project\",\"msr\":[{\"key\":\"quality_gate_details\"," +
+			"\"data\":\"{\\\"level\\\":\\\"ERROR\\\",\\\"conditions\\\":[{\\\"metric\\\":\\\"blocker_violations\\\",\\\"op\\\":\\\"GT\\\",\\\"level\\\":\\\"WARN\\\"}]}\"}]}]";
+
+	@Test
+	public void parse() throws Throwable {
+		final QualityGateStatus status = QualityGateStatus.parse( CRITICAL_VIOLATIONS_TOO_HIGH );
+		assertTrue( status.exists() );
+		assertTrue( status.isError() );
+		assertThat( status.getLevel(), equalTo( "ERROR" ) );
+		assertThat( status.getConditions().size(), equalTo( 1 ) );
+		final QualityGateStatus.Condition condition = status.getConditions().get( 0 );
+		assertThat( condition.getMetric(), equalTo( "critical_violations" ) );
+		assertThat( condition.getOp(), equalTo( "LT" ) );
+		assertThat( condition.getPeriod(), equalTo( "3" ) );
+		assertThat( condition.getError(), equalTo( "1" ) );
+		assertThat( condition.getActual(), equalTo( "0.0" ) );
+		assertThat( condition.toString(), containsString( "\"op\":\"LT\"" ) );
+	}
+
+	@Test
+	public void parseMeasureDataAsString() throws Throwable {
+		final QualityGateStatus status = QualityGateStatus.parse( DATA_AS_STRING );
+		assertTrue( status.isError() );
+		assertThat( status.getConditions().get( 0 ).getMetric(), equalTo( "blocker_violations" ) );
+		assertThat( status.getConditions().get( 0 ).getPeriod(), nullValue() );
+	}
+
+	@Test
+	public void parseWithQualityGateMet() throws Throwable {
+		final QualityGateStatus status = QualityGateStatus.parse( "[{\"msr\":[{\"key\":\"quality_gate_details\",\"data\":{\"level\":\"WARN\",\"conditions\":[{}]}}]}]" );
+		assertTrue( status.exists() );
+		assertFalse( status.isError() );
+		assertThat( status.getLevel(), equalTo( "WARN" ) );
+		assertTrue( status.getConditions().isEmpty() );
+	}
+
+	@Test
+	public void parseWithoutDetails() throws Throwable {
+		assertFalse( QualityGateStatus.parse( null ).exists() );
+		assertFalse( QualityGateStatus.parse( "" ).exists() );
+		assertFalse( QualityGateStatus.parse( "[{\"id\":1,\"key\":\"project\"}]" ).exists() );
+	}
+
+	@Test
+	public void parseInvalidJson() throws Throwable {
+		try {
+			QualityGateStatus.parse( "{invalid" );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "Unexpected character" ) );
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.mojos;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link SonarGitBranchDeletionSyncMojo}
+ */
+public class TestSonarGitBranchDeletionSyncMojo {
+	private static final String BRANCHES = "{\"size\":1,\"limit\":100,\"isLastPage\":true,\"start\":0,\"values\":[{\"id\":\"refs/heads/master\",\"displayId\":\"master\"}]}";
+	private static final String COMPONENTS = "{\"paging\":{\"pageIndex\":1,\"pageSize\":100,\"total\":2},\"components\":["
+	                                         + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0A\",\"key\":\"project:master\"},"
+	                                         + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0B\",\"key\":\"project:feature-x\"}]}";
+
+	private SonarGitBranchDeletionSyncMojo mojo;
+	private SonarGitBranchDeletionSyncMojo.SyncSummary summary;
+	private HttpServer server;
+	private volatile String components = COMPONENTS;
+	// a fault is the status code the next delete is answered with
+	private final Queue<Integer> deleteFaults = new ConcurrentLinkedQueue<>();
+	private final Map<String, Integer> deleteStatuses = new ConcurrentHashMap<>();
+	private final List<String> deletes = new CopyOnWriteArrayList<>();
+	private final List<String> infos = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void setupFreshFixture() throws Throwable {
+		mojo = new SonarGitBranchDeletionSyncMojo();
+		mojo.setLog( new SystemStreamLog() {
+			@Override
+			public void info( final CharSequence content ) {
+				infos.add( String.valueOf( content ) );
+				super.info( content );
+			}
+		} );
+		summary = new SonarGitBranchDeletionSyncMojo.SyncSummary();
+
+		server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		server.createContext( "/rest/api/1.0/projects/p/repos/r/branches", exchange -> respond( exchange, 200, BRANCHES ) );
+		server.createContext( "/api/components/search", exchange -> respond( exchange, 200, components ) );
+		server.createContext( "/api/projects/", exchange -> {
+			deletes.add( String.format( "%s %s", exchange.getRequestMethod(), exchange.getRequestURI() ) );
+			final Integer fault = deleteFaults.poll();
+			final String projectKey = exchange.getRequestURI().getPath().substring( "/api/projects/".length() );
+			respond( exchange, fault != null ? fault : deleteStatuses.getOrDefault( projectKey, 200 ), "" );
+		} );
+		server.start();
+		final String rootUrl = String.format( "http://localhost:%s", server.getAddress().getPort() );
+		mojo.sonarServer = rootUrl;
+		mojo.sonarUser = "admin";
+		mojo.sonarPassword = "secret";
+		mojo.repoUser = "git";
+		mojo.repoPassword = "secret";
+		mojo.retryInterval = 1;
+		mojo.repoConfigurations = new TreeMap<>();
+		mojo.repoConfigurations.put( "project", rootUrl + "/rest/api/1.0/projects/p/repos/r/branches" );
+	}
+
+	@After
+	public void tearDown() {
+		server.stop( 0 );
+	}
+
+	@Test
+	public void findBranchesToDelete() {
+		assertThat( SonarGitBranchDeletionSyncMojo.findBranchesToDelete( new HashSet<>( Arrays.asList( "master", "develop" ) ),
+		                                                                 new HashSet<>( Arrays.asList( "master", "feature-x" ) ) ),
+		            equalTo( Arrays.asList( "feature-x" ) ) );
+	}
+
+	@Test
+	public void readSonarProjects() throws Throwable {
+		final Map<String, String> projectIds = new HashMap<>();
+		final boolean hasNextPage = SonarGitBranchDeletionSyncMojo.readSonarProjects(
+				"{\"paging\":{\"pageIndex\":1,\"pageSize\":3,\"total\":4},\"components\":["
+				+ "{\"id\":\"AVd2v8m2Z9PnqPg1dJ01\",\"key\":\"project\",\"name\":\"Project\"},"
+				+ "{\"id\":\"AVd2v8m2Z9PnqPg1dJ02\",\"key\":\"project:feature-x\",\"name\":\"Project feature X\"},"
+				+ "{\"id\":\"AVd2v8m2Z9PnqPg1dJ03\",\"key\":\"project-other:feature-y\"}]}", Collections.singleton( "project:" ), projectIds );
+		assertThat( hasNextPage, equalTo( true ) );
+		assertThat( projectIds.get( "project:feature-x" ), equalTo( "AVd2v8m2Z9PnqPg1dJ02" ) );
+		assertThat( projectIds.keySet(), equalTo( Collections.singleton( "project:feature-x" ) ) );
+	}
+
+	@Test
+	public void readLastSonarPage() throws Throwable {
+		assertThat( SonarGitBranchDeletionSyncMojo.readSonarProjects(
+				"{\"paging\":{\"pageIndex\":2,\"pageSize\":3,\"total\":4},\"components\":[{\"id\":\"AVd2v8m2Z9PnqPg1dJ04\",\"key\":\"project:feature-z\"}]}",
+				Collections.singleton( "project:" ), new HashMap<>() ), equalTo( false ) );
+		assertThat( SonarGitBranchDeletionSyncMojo.readSonarProjects(
+				"{\"paging\":{\"pageIndex\":1,\"pageSize\":3,\"total\":4},\"components\":[]}", Collections.singleton( "project:" ), new HashMap<>() ), equalTo( false ) );
+	}
+
+	@Test
+	public void findSonarBranchesByKeyPrefix() {
+		final Map<String, String> projectIds = new HashMap<>();
+		projectIds.put( "project", "AVd2v8m2Z9PnqPg1dJ01" );
+		projectIds.put( "project:feature-x", "AVd2v8m2Z9PnqPg1dJ02" );
+		projectIds.put( "project-other:feature-y", "AVd2v8m2Z9PnqPg1dJ03" );
+
+		final Map<String, SonarGitBranchDeletionSyncMojo.BranchMetaData> sonarBranches = SonarGitBranchDeletionSyncMojo.findSonarBranches( "project", projectIds );
+
+		assertThat( sonarBranches.keySet(), equalTo( Collections.singleton( "feature-x" ) ) );
+		assertThat( sonarBranches.get( "feature-x" ).getId(), equalTo( "AVd2v8m2Z9PnqPg1dJ02" ) );
+		assertThat( sonarBranches.get( "feature-x" ).getName(), equalTo( "project:feature-x" ) );
+	}
+
+	@Test
+	public void deleteProjectByKey() throws Throwable {
+		assertThat( SonarGitBranchDeletionSyncMojo.deleteProjectUrl( "http://localhost:9000/", "project:feature/x" ),
+		            equalTo( "http://localhost:9000/api/projects/project%3Afeature%2Fx" ) );
+	}
+
+	@Test
+	public void readExistingBranchesFollowsPaging() throws Throwable {
+		final Set<String> existingBranches = new HashSet<>();
+		assertThat( SonarGitBranchDeletionSyncMojo.readExistingBranches(
+				"{\"size\":1,\"limit\":1,\"isLastPage\":false,\"start\":0,\"nextPageStart\":1,\"values\":[{\"id\":\"refs/heads/feature/x\",\"displayId\":\"feature/x\"}]}",
+				existingBranches ), equalTo( "1" ) );
+		assertThat( SonarGitBranchDeletionSyncMojo.readExistingBranches(
+				"{\"size\":1,\"limit\":1,\"isLastPage\":true,\"start\":1,\"values\":[{\"id\":\"refs/heads/master\",\"displayId\":\"master\"}]}",
+				existingBranches ), nullValue() );
+		assertThat( existingBranches, hasItems( "feature/x", "master" ) );
+	}
+
+	@Test
+	public void retryDeletesOfAnOverloadedServer() throws Throwable {
+		deleteFaults.add( 429 );
+		deleteFaults.add( 503 );
+
+		mojo.execute();
+
+		assertThat( deletes, equalTo( Collections.nCopies( 3, "DELETE /api/projects/project%3Afeature-x" ) ) );
+		assertThat( loggedSummary(), containsString( "sync summary: 1 deleted, 0 failed, 1 retried" ) );
+		assertThat( loggedSummary(), containsString( "retried: [project:feature-x]" ) );
+	}
+
+	@Test
+	public void syncTheOtherEntriesWhenSomeFailAndFailTheGoalAtTheEnd() throws Throwable {
+		components = "{\"paging\":{\"pageIndex\":1,\"pageSize\":100,\"total\":5},\"components\":["
+		             + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0A\",\"key\":\"project:master\"},"
+		             + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0B\",\"key\":\"project:feature-x\"},"
+		             + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0C\",\"key\":\"project:feature-y\"},"
+		             + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0D\",\"key\":\"project:feature-z\"},"
+		             + "{\"id\":\"AVd2v8m2Z9PnqPg1dJ0E\",\"key\":\"unknown-repo:feature-x\"}]}";
+		deleteStatuses.put( "project:feature-y", 404 );
+		mojo.repoConfigurations.put( "unknown-repo", mojo.sonarServer + "/rest/api/1.0/projects/u/repos/u/branches" );
+		mojo.parallelism = 3;
+		mojo.maxCallsPerHost = 1;
+
+		try {
+			mojo.execute();
+			fail( "no error" );
+		}
+		catch ( final MojoFailureException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "project:feature-y" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "unknown-repo" ) );
+		}
+
+		assertThat( deletes.size(), equalTo( 3 ) );
+		assertThat( loggedSummary(), containsString( "sync summary: 2 deleted, 2 failed, 0 retried" ) );
+		assertThat( loggedSummary(), containsString( "deleted: [project:feature-x, project:feature-z]" ) );
+	}
+
+	@Test
+	public void recordFailedLookupInsteadOfAbortingTheSync() throws Throwable {
+		mojo.sonarServer = "http://localhost:1";
+		mojo.repoConfigurations = new TreeMap<>();
+		mojo.repoConfigurations.put( "project-a", "http://localhost:1/rest/api/1.0/projects/a/repos/a/branches" );
+		mojo.repoConfigurations.put( "project-b", "http://localhost:1/rest/api/1.0/projects/b/repos/b/branches" );
+		mojo.maxRetries = 0;
+		try {
+			mojo.execute();
+			fail( "no error" );
+		}
+		catch ( final MojoFailureException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "could not sync: [project-a, project-b]" ) );
+		}
+	}
+
+	@Test
+	public void summary() {
+		summary.deleted( "feature-x" );
+		summary.retried( "feature-x" );
+		summary.failed( "feature-y", new IllegalStateException( "boom" ) );
+		assertThat( summary.toString().startsWith( "sync summary: 1 deleted, 1 failed, 1 retried" ), equalTo( true ) );
+	}
+
+	private String loggedSummary() {
+		return infos.stream().filter( info -> info.contains( "sync summary" ) ).findFirst().orElse( "" );
+	}
+
+	private static void respond( final HttpExchange exchange, final int status, final String body ) throws IOException {
+		final byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+		exchange.sendResponseHeaders( status, bytes.length == 0 ? -1 : bytes.length );
+		try ( final OutputStream outputStream = exchange.getResponseBody() ) {
+			outputStream.write( bytes );
+		}
+	}
+}
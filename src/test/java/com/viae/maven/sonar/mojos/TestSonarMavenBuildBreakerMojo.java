@@ -1,6 +1,7 @@
 package com.viae.maven.sonar.mojos;
 
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.model.QualityGateStatus;
 import com.viae.maven.sonar.services.SonarQualityGateService;
 import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
 import org.apache.maven.plugin.MojoFailureException;
@@ -14,9 +15,13 @@ import org.sonar.wsclient.SonarClient;
 import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -107,12 +112,84 @@ public class TestSonarMavenBuildBreakerMojo {
 				.doReturn( now.plusHours( 1 ) )
 				.when( service ).getLastRunTimeStamp( any( SonarClient.class ), anyString(), anyString() );
 
-		doNothing().when( (SonarQualityGateServiceImpl) service ).handleQualityGateState( any( SonarClient.class ), projectKeyCaptor.capture() );
-		doReturn(true).when( (SonarQualityGateServiceImpl) service ).qualityGateDetailsExists( any( SonarClient.class ), projectKeyCaptor.capture() );
+		doReturn( new QualityGateStatus( QualityGateStatus.LEVEL_OK, null ) ).when( (SonarQualityGateServiceImpl) service ).getQualityGateStatus(
+				any( SonarClient.class ), projectKeyCaptor.capture() );
 		mojo.execute();
 
 		verify( service, times( 1 ) ).validateQualityGate( any( SonarClient.class ), anyString(), anyString(), any( LocalDateTime.class ), anyInt() );
 		verify( service, times( 4 ) ).getLastRunTimeStamp( any( SonarClient.class ), anyString(), anyString() );
+		verify( (SonarQualityGateServiceImpl) service, times( 1 ) ).getQualityGateStatus( any( SonarClient.class ), anyString() );
+		assertThat( projectKeyCaptor.getValue(), equalTo( "sonarKey:branchName" ) );
 	}
 
+	@Test
+	public void validateReactorProjects() throws Throwable {
+		final MavenProject moduleA = new MavenProject();
+		moduleA.setGroupId( "groupId" );
+		moduleA.setArtifactId( "module-a" );
+		final MavenProject moduleB = new MavenProject();
+		moduleB.setGroupId( "groupId" );
+		moduleB.setArtifactId( "module-b" );
+		moduleB.getProperties().setProperty( "sonar.projectKey", "moduleB" );
+		final MavenProject moduleBTests = new MavenProject();
+		moduleBTests.setGroupId( "groupId" );
+		moduleBTests.setArtifactId( "module-b-tests" );
+		moduleBTests.getProperties().setProperty( "sonar.projectKey", "moduleB" );
+
+		mojo.sonarServer = "sonarServer";
+		mojo.sonarUser = "sonarUser";
+		mojo.sonarPassword = "sonarPassword";
+		mojo.branchName = "branchName";
+		mojo.validateReactor = true;
+		mojo.project = project;
+		mojo.reactorProjects = Arrays.asList( project, moduleA, moduleB, moduleBTests );
+
+		final Field field = mojo.getClass().getDeclaredField( "qualityGateService" );
+		field.setAccessible( true );
+		field.set( mojo, service );
+
+		final ArgumentCaptor<Map> executionStartsCaptor = ArgumentCaptor.forClass( Map.class );
+		doThrow( new SonarQualityException( "quality gate not met for 1 of 3 projects" ) ).when( service ).validateQualityGates( any( SonarClient.class ),
+		                                                                                                                      executionStartsCaptor.capture(),
+		                                                                                                                      anyString(),
+		                                                                                                                      anyInt(),
+		                                                                                                                      eq( SonarMavenBuildBreakerMojo.DEFAULT_PARALLELISM ) );
+		try {
+			mojo.execute();
+			fail( "no error" );
+		}
+		catch ( final MojoFailureException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 1 of 3 projects" ) );
+		}
+		assertThat( new ArrayList<>( executionStartsCaptor.getValue().keySet() ),
+		            equalTo( Arrays.asList( "groupId:artifactId:branchName", "groupId:module-a:branchName", "moduleB:branchName" ) ) );
+		verify( service, never() ).validateQualityGate( any( SonarClient.class ), anyString(), anyString() );
+	}
+
+	@Test
+	public void waitForTheExecutionStartOfEveryModule() throws Throwable {
+		final MavenProject moduleA = new MavenProject();
+		moduleA.setGroupId( "groupId" );
+		moduleA.setArtifactId( "module-a" );
+		moduleA.getProperties().setProperty( "sonar.execution.start", "2016-05-03T14:04:45" );
+		final MavenProject moduleB = new MavenProject();
+		moduleB.setGroupId( "groupId" );
+		moduleB.setArtifactId( "module-b" );
+		mojo.branchName = "branchName";
+		mojo.sonarExecutionStart = "2016-05-02T10:00:00";
+		mojo.project = project;
+		mojo.reactorProjects = Arrays.asList( project, moduleA, moduleB );
+
+		final Field field = mojo.getClass().getDeclaredField( "qualityGateService" );
+		field.setAccessible( true );
+		field.set( mojo, service );
+
+		final Map<String, LocalDateTime> executionStarts = mojo.composeReactorExecutionStarts();
+		assertThat( executionStarts.get( "groupId:artifactId:branchName" ), equalTo( LocalDateTime.of( 2016, 5, 2, 10, 0 ) ) );
+		assertThat( executionStarts.get( "groupId:module-a:branchName" ), equalTo( LocalDateTime.of( 2016, 5, 3, 14, 4, 45 ) ) );
+		assertThat( executionStarts.get( "groupId:module-b:branchName" ), equalTo( LocalDateTime.of( 2016, 5, 2, 10, 0 ) ) );
+
+		mojo.sonarExecutionStart = null;
+		assertThat( mojo.composeReactorExecutionStarts().get( "groupId:module-b:branchName" ), nullValue() );
+	}
 }
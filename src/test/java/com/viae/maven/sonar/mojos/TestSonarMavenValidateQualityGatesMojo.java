@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.mojos;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.services.SonarQualityGateService;
+import com.viae.maven.sonar.services.SonarQualityGateServiceImpl;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.wsclient.SonarClient;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link SonarMavenValidateQualityGatesMojo}
+ */
+public class TestSonarMavenValidateQualityGatesMojo {
+
+	private final SonarMavenValidateQualityGatesMojo mojo = new SonarMavenValidateQualityGatesMojo();
+	private final SonarQualityGateService service = spy( new SonarQualityGateServiceImpl( mock( Log.class ) ) );
+	private final ArgumentCaptor<Collection> projectKeysCaptor = ArgumentCaptor.forClass( Collection.class );
+
+	@Before
+	public void setupFreshFixture() throws Throwable {
+		reset( service );
+		mojo.sonarServer = "sonarServer";
+		mojo.sonarUser = "sonarUser";
+		mojo.sonarPassword = "sonarPassword";
+
+		final Field field = mojo.getClass().getDeclaredField( "qualityGateService" );
+		field.setAccessible( true );
+		field.set( mojo, service );
+	}
+
+	@Test
+	public void composeProjectKeyPatternsForEveryBranch() {
+		assertThat( SonarMavenValidateQualityGatesMojo.composeProjectKeyPatterns( Arrays.asList( "service-a", " service-b ", "" ),
+		                                                                         Arrays.asList( "master", "release/1.0" ) ),
+		            equalTo( Arrays.asList( "service-a:master", "service-a:release-1.0", "service-b:master", "service-b:release-1.0" ) ) );
+	}
+
+	@Test
+	public void composeProjectKeyPatternsWithoutBranches() {
+		assertThat( SonarMavenValidateQualityGatesMojo.composeProjectKeyPatterns( Arrays.asList( "service-a", "service-b" ), null ),
+		            equalTo( Arrays.asList( "service-a", "service-b" ) ) );
+		assertThat( SonarMavenValidateQualityGatesMojo.composeProjectKeyPatterns( Arrays.asList( "service-a" ), Collections.singletonList( "" ) ),
+		            equalTo( Arrays.asList( "service-a" ) ) );
+	}
+
+	@Test
+	public void globToRegularExpression() {
+		assertTrue( SonarMavenValidateQualityGatesMojo.isPattern( "com.acme:*:master" ) );
+		assertFalse( SonarMavenValidateQualityGatesMojo.isPattern( "com.acme:service-a:master" ) );
+		assertTrue( SonarMavenValidateQualityGatesMojo.toRegularExpression( "com.acme:*:master" ).matcher( "com.acme:service-a:master" ).matches() );
+		assertFalse( SonarMavenValidateQualityGatesMojo.toRegularExpression( "com.acme:*:master" ).matcher( "com.acme:service-a:develop" ).matches() );
+		assertFalse( SonarMavenValidateQualityGatesMojo.toRegularExpression( "com.acme:*:master" ).matcher( "comXacme:service-a:master" ).matches() );
+		assertTrue( SonarMavenValidateQualityGatesMojo.toRegularExpression( "service-?" ).matcher( "service-b" ).matches() );
+		assertFalse( SonarMavenValidateQualityGatesMojo.toRegularExpression( "service-?" ).matcher( "service-bc" ).matches() );
+	}
+
+	@Test
+	public void readAllProjectKeys() throws Throwable {
+		final List<String> matches = new ArrayList<>();
+		final boolean hasNextPage = SonarMavenValidateQualityGatesMojo.readProjectKeys(
+				"{\"paging\":{\"pageIndex\":1,\"pageSize\":3,\"total\":4},\"components\":["
+				+ "{\"id\":\"1\",\"key\":\"com.acme:service-a:master\"},"
+				+ "{\"id\":\"2\",\"key\":\"com.acme:service-a:develop\"},"
+				+ "{\"id\":\"3\",\"key\":\"com.acme:service-b:master\"}]}", matches );
+
+		assertThat( matches, equalTo( Arrays.asList( "com.acme:service-a:master", "com.acme:service-a:develop", "com.acme:service-b:master" ) ) );
+		assertTrue( hasNextPage );
+	}
+
+	@Test
+	public void matchProjectKeysOnTheWholeKey() throws Throwable {
+		final List<String> projectKeys = Arrays.asList( "com.acme:service-a:master", "com.acme:service-a:develop", "org.acme:service-b:master" );
+
+		assertThat( SonarMavenValidateQualityGatesMojo.matchProjectKeys( "com.acme:*", projectKeys ),
+		            equalTo( Arrays.asList( "com.acme:service-a:master", "com.acme:service-a:develop" ) ) );
+		assertThat( SonarMavenValidateQualityGatesMojo.matchProjectKeys( "*:service-?:master", projectKeys ),
+		            equalTo( Arrays.asList( "com.acme:service-a:master", "org.acme:service-b:master" ) ) );
+		assertTrue( SonarMavenValidateQualityGatesMojo.matchProjectKeys( "acme*", projectKeys ).isEmpty() );
+	}
+
+	@Test
+	public void readLastPageOfProjectKeys() throws Throwable {
+		final List<String> matches = new ArrayList<>();
+		final boolean hasNextPage = SonarMavenValidateQualityGatesMojo.readProjectKeys(
+				"{\"paging\":{\"pageIndex\":2,\"pageSize\":3,\"total\":4},\"components\":[{\"id\":\"4\",\"key\":\"com.acme:service-c:master\"}]}", matches );
+
+		assertThat( matches, equalTo( Arrays.asList( "com.acme:service-c:master" ) ) );
+		assertFalse( hasNextPage );
+	}
+
+	@Test
+	public void validateAllProjectsInOneRun() throws Throwable {
+		mojo.projectKeys = Arrays.asList( "service-a", "service-b" );
+		mojo.branches = Arrays.asList( "master" );
+		doNothing().when( service ).validateQualityGates( any( SonarClient.class ), projectKeysCaptor.capture(), anyString(), any( LocalDateTime.class ), anyInt(), anyInt() );
+
+		mojo.execute();
+
+		assertThat( new ArrayList<>( projectKeysCaptor.getValue() ), equalTo( Arrays.asList( "service-a:master", "service-b:master" ) ) );
+	}
+
+	@Test
+	public void validateAllProjectsInBulk() throws Throwable {
+		mojo.projectKeys = Arrays.asList( "service-a", "service-b" );
+		mojo.branches = Arrays.asList( "master" );
+		mojo.bulk = true;
+		doNothing().when( service ).validateQualityGatesInBulk( any( SonarClient.class ), projectKeysCaptor.capture() );
+
+		mojo.execute();
+
+		assertThat( new ArrayList<>( projectKeysCaptor.getValue() ), equalTo( Arrays.asList( "service-a:master", "service-b:master" ) ) );
+		verify( service, never() ).validateQualityGates( any( SonarClient.class ), anyCollection(), anyString(), any( LocalDateTime.class ), anyInt(), anyInt() );
+	}
+
+	@Test
+	public void evaluateGivenQualityGateLocally() throws Throwable {
+		mojo.projectKeys = Arrays.asList( "service-a", "service-b" );
+		mojo.qualityGateName = "strict";
+		mojo.bulk = true;
+		doNothing().when( service ).validateQualityGatesLocally( any( SonarClient.class ), projectKeysCaptor.capture(), eq( "strict" ) );
+
+		mojo.execute();
+
+		assertThat( new ArrayList<>( projectKeysCaptor.getValue() ), equalTo( Arrays.asList( "service-a", "service-b" ) ) );
+		verify( service, never() ).validateQualityGatesInBulk( any( SonarClient.class ), anyCollection() );
+	}
+
+	@Test
+	public void breakBuildWhenOneProjectFails() throws Throwable {
+		mojo.projectKeys = Arrays.asList( "service-a", "service-b" );
+		doThrow( new SonarQualityException( "quality gate not met for 1 of 2 projects" ) ).when( service ).validateQualityGates( any( SonarClient.class ),
+		                                                                                                                      anyCollection(),
+		                                                                                                                      anyString(),
+		                                                                                                                      any( LocalDateTime.class ),
+		                                                                                                                      anyInt(),
+		                                                                                                                      anyInt() );
+		try {
+			mojo.execute();
+			fail( "no error" );
+		}
+		catch ( final MojoFailureException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 1 of 2 projects" ) );
+		}
+	}
+}
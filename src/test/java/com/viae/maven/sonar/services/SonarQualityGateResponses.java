@@ -49,6 +49,30 @@ public class SonarQualityGateResponses {
 
 	public static final String PROJECT_DETAIL_AS_LIST = "[{\"id\":22295,\"key\":\"test.package:sample-project:master\",\"name\":\"test.package:sample-project master\",\"scope\":\"PRJ\",\"qualifier\":\"TRK\",\"date\":\"2016-05-03T14:04:45+0200\",\"creationDate\":\"2016-05-02T16:32:23+0200\",\"lname\":\"test.package:sample-project master\",\"version\":\"0.0.1-SNAPSHOT\",\"branch\":\"master\",\"description\":\"\"}]";
 
+	public static final String QUALITY_GATE_OF_PROJECT = "{\"qualityGate\":{\"id\":\"2\",\"name\":\"SampleQualityGate\"}}";
+
+	public static final String DEFAULT_QUALITY_GATE_OF_PROJECT = "{\"qualityGate\":{\"id\":\"2\",\"name\":\"SampleQualityGate\",\"default\":true}}";
+
+	public static final String STRICT_QUALITY_GATE = "{\"id\":3,\"name\":\"strict\",\"conditions\":[" +
+	                                                 "{\"id\":1,\"metric\":\"blocker_violations\",\"op\":\"GT\",\"error\":\"0\"}," +
+	                                                 "{\"id\":2,\"metric\":\"new_coverage\",\"op\":\"LT\",\"error\":\"80\",\"period\":1}" +
+	                                                 "]}";
+
+	public static final String RAW_MEASURES_SEARCH = "{\"measures\":[" +
+	                                                 "{\"metric\":\"blocker_violations\",\"value\":\"0\",\"component\":\"module-a\"}," +
+	                                                 "{\"metric\":\"new_coverage\",\"periods\":[{\"index\":1,\"value\":\"64.5\"}],\"component\":\"module-a\"}," +
+	                                                 "{\"metric\":\"blocker_violations\",\"value\":\"0\",\"component\":\"module-b\"}," +
+	                                                 "{\"metric\":\"new_coverage\",\"periods\":[{\"index\":1,\"value\":\"91.0\"},{\"index\":2,\"value\":\"40.0\"}],\"component\":\"module-b\"}," +
+	                                                 "{\"metric\":\"blocker_violations\",\"value\":\"1\",\"component\":\"module-c\"}" +
+	                                                 "]}";
+
+	public static final String MEASURES_SEARCH = "{\"measures\":[" +
+	                                             "{\"metric\":\"quality_gate_details\",\"value\":\"{\\\"level\\\":\\\"ERROR\\\",\\\"conditions\\\":[{\\\"metric\\\":\\\"critical_violations\\\",\\\"op\\\":\\\"GT\\\",\\\"error\\\":\\\"0\\\",\\\"actual\\\":\\\"3\\\",\\\"level\\\":\\\"ERROR\\\"}]}\",\"component\":\"module-a\"}," +
+	                                             "{\"metric\":\"alert_status\",\"value\":\"ERROR\",\"component\":\"module-a\"}," +
+	                                             "{\"metric\":\"quality_gate_details\",\"value\":\"{\\\"level\\\":\\\"OK\\\",\\\"conditions\\\":[]}\",\"component\":\"module-b\"}," +
+	                                             "{\"metric\":\"alert_status\",\"value\":\"ERROR\",\"component\":\"module-c\"}" +
+	                                             "]}";
+
 	public static final String QUALITY_GATE_DETAIL = "{\"id\":2,\"name\":\"SampleQualityGate\",\"conditions\":[{\"id\":9,\"metric\":\"new_coverage\",\"op\":\"LT\",\"warning\":\"\",\"error\":\"90\",\"period\":3}]}";
 
 	public static final String QUALITY_GATE_DETAIL_AS_LIST = "[{\"id\":2,\"name\":\"SampleQualityGate\",\"conditions\":[{\"id\":9,\"metric\":\"new_coverage\",\"op\":\"LT\",\"warning\":\"\",\"error\":\"90\",\"period\":3}]}]";
@@ -76,4 +100,20 @@ public class SonarQualityGateResponses {
 				                      "	}" +
 				                      "]" +
 				                      "";
-}
\ No newline at end of file
+
+	public static final String CE_TASK_IN_PROGRESS = "{\"task\":{\"id\":\"AVdXRfEMJ6WpmFgMY3W_\",\"type\":\"REPORT\",\"componentKey\":\"DUMMY_PROJECT_KEY\",\"status\":\"IN_PROGRESS\"}}";
+
+	public static final String CE_TASK_SUCCESS = "{\"task\":{\"id\":\"AVdXRfEMJ6WpmFgMY3W_\",\"type\":\"REPORT\",\"componentKey\":\"DUMMY_PROJECT_KEY\",\"status\":\"SUCCESS\",\"analysisId\":\"AVdXRfTbtxYk2aVFGIvn\"}}";
+
+	public static final String CE_TASK_FAILED = "{\"task\":{\"id\":\"AVdXRfEMJ6WpmFgMY3W_\",\"type\":\"REPORT\",\"componentKey\":\"DUMMY_PROJECT_KEY\",\"status\":\"FAILED\"}}";
+
+	public static final String WEBHOOK_OK = "{\"serverUrl\":\"http://localhost:9000\",\"taskId\":\"AVdXRfEMJ6WpmFgMY3W_\",\"status\":\"SUCCESS\"," +
+			"\"project\":{\"key\":\"DUMMY_PROJECT_KEY\",\"name\":\"DUMMY_PROJECT_KEY\"}," +
+			"\"qualityGate\":{\"name\":\"SampleQualityGate\",\"status\":\"OK\",\"conditions\":[]}}";
+
+	public static final String WEBHOOK_ERROR = "{\"serverUrl\":\"http://localhost:9000\",\"taskId\":\"AVdXRfEMJ6WpmFgMY3W_\",\"status\":\"SUCCESS\"," +
+			"\"project\":{\"key\":\"DUMMY_PROJECT_KEY\",\"name\":\"DUMMY_PROJECT_KEY\"}," +
+			"\"qualityGate\":{\"name\":\"SampleQualityGate\",\"status\":\"ERROR\",\"conditions\":[" +
+			"{\"metric\":\"new_coverage\",\"operator\":\"LESS_THAN\",\"value\":\"12.5\",\"status\":\"ERROR\",\"errorThreshold\":\"90\"}" +
+			"]}}";
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AsyncSonarExecutor}
+ */
+public class TestAsyncSonarExecutor {
+	private final AsyncSonarExecutor executor = new AsyncSonarExecutor( 2 );
+
+	@After
+	public void closeExecutor() {
+		executor.close();
+	}
+
+	@Test
+	public void supplyResult() throws Throwable {
+		assertThat( executor.supply( () -> "result", null ).get( 5, TimeUnit.SECONDS ), equalTo( "result" ) );
+	}
+
+	@Test
+	public void supplyFailure() throws Throwable {
+		final CompletableFuture<String> future = executor.supply( () -> {
+			throw new SonarQualityException( "sonar is down" );
+		}, null );
+		try {
+			future.join();
+			fail( "no error" );
+		}
+		catch ( final CompletionException e ) {
+			assertThat( e.getCause(), instanceOf( SonarQualityException.class ) );
+		}
+	}
+
+	@Test
+	public void timeoutInterruptsCall() throws Throwable {
+		final CountDownLatch interrupted = new CountDownLatch( 1 );
+		final CompletableFuture<String> future = executor.supply( () -> blockUntilInterrupted( interrupted ), Duration.ofMillis( 50 ) );
+		try {
+			future.join();
+			fail( "no timeout" );
+		}
+		catch ( final CompletionException e ) {
+			assertThat( e.getCause(), instanceOf( TimeoutException.class ) );
+		}
+		assertTrue( interrupted.await( 5, TimeUnit.SECONDS ) );
+	}
+
+	@Test
+	public void cancelInterruptsCall() throws Throwable {
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch interrupted = new CountDownLatch( 1 );
+		final CompletableFuture<String> future = executor.supply( () -> {
+			started.countDown();
+			return blockUntilInterrupted( interrupted );
+		}, null );
+		assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+		future.cancel( true );
+		assertTrue( interrupted.await( 5, TimeUnit.SECONDS ) );
+		try {
+			future.join();
+			fail( "not cancelled" );
+		}
+		catch ( final CancellationException e ) {
+			// expected
+		}
+	}
+
+	@Test
+	public void pollUntilResult() throws Throwable {
+		final AtomicInteger polls = new AtomicInteger();
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 1, 1, 1.0, 0 ).start( 10 );
+		final CompletableFuture<String> future = executor.poll( () -> polls.incrementAndGet() < 3 ? null : "published",
+		                                                        session,
+		                                                        () -> new SonarQualityException( "expired" ),
+		                                                        null );
+
+		assertThat( future.get( 5, TimeUnit.SECONDS ), equalTo( "published" ) );
+		assertThat( polls.get(), equalTo( 3 ) );
+		assertThat( session.getPollCount(), equalTo( 3 ) );
+	}
+
+	@Test
+	public void pollUntilSessionExpires() throws Throwable {
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 1, 1, 1.0, 0 ).start( -1 );
+		final CompletableFuture<String> future = executor.poll( () -> null, session, () -> new SonarQualityException( "expired" ), null );
+		try {
+			future.get( 5, TimeUnit.SECONDS );
+			fail( "no error" );
+		}
+		catch ( final ExecutionException e ) {
+			assertThat( e.getCause().getMessage(), equalTo( "expired" ) );
+		}
+	}
+
+	@Test
+	public void cancelStopsPolls() throws Throwable {
+		final AtomicInteger polls = new AtomicInteger();
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 10, 10, 1.0, 0 ).start( 60 );
+		final CompletableFuture<String> future = executor.poll( () -> {
+			polls.incrementAndGet();
+			return null;
+		}, session, () -> new SonarQualityException( "expired" ), null );
+		Thread.sleep( 100 );
+		future.cancel( true );
+		final int pollsAtCancel = polls.get();
+		Thread.sleep( 100 );
+		assertTrue( polls.get() <= pollsAtCancel + 1 );
+	}
+
+	private static String blockUntilInterrupted( final CountDownLatch interrupted ) {
+		try {
+			Thread.sleep( TimeUnit.MINUTES.toMillis( 1 ) );
+		}
+		catch ( final InterruptedException e ) {
+			interrupted.countDown();
+		}
+		return "too late";
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link BackoffPollScheduler}
+ */
+public class TestBackoffPollScheduler {
+
+	@Test
+	public void intervalGrowsExponentiallyUntilCap() throws Throwable {
+		final BackoffPollScheduler scheduler = new BackoffPollScheduler( 100, 1000, 2.0, 0 );
+		assertThat( scheduler.computeInterval( 1 ), equalTo( 100L ) );
+		assertThat( scheduler.computeInterval( 2 ), equalTo( 200L ) );
+		assertThat( scheduler.computeInterval( 3 ), equalTo( 400L ) );
+		assertThat( scheduler.computeInterval( 4 ), equalTo( 800L ) );
+		assertThat( scheduler.computeInterval( 5 ), equalTo( 1000L ) );
+		assertThat( scheduler.computeInterval( 50 ), equalTo( 1000L ) );
+	}
+
+	@Test
+	public void intervalStaysWithinJitter() throws Throwable {
+		final BackoffPollScheduler scheduler = new BackoffPollScheduler( 1000, 1000, 1.0, 0.2 );
+		for ( int i = 0; i < 100; i++ ) {
+			final long interval = scheduler.computeInterval( 1 );
+			assertTrue( String.valueOf( interval ), interval >= 800 && interval <= 1000 );
+		}
+	}
+
+	@Test
+	public void sessionCountsPolls() throws Throwable {
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 1, 1, 1.0, 0 ).start( 10 );
+		assertThat( session.getPollCount(), equalTo( 1 ) );
+		session.awaitNextPoll();
+		session.awaitNextPoll();
+		assertThat( session.getPollCount(), equalTo( 3 ) );
+		assertFalse( session.isExpired() );
+	}
+
+	@Test
+	public void nextPollDelayDoesNotBlock() throws Throwable {
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 60000, 60000, 1.0, 0 ).start( 3600 );
+		final long start = System.currentTimeMillis();
+		assertThat( session.nextPollDelay(), equalTo( 60000L ) );
+		assertThat( session.getPollCount(), equalTo( 2 ) );
+		assertTrue( System.currentTimeMillis() - start < 5000 );
+	}
+
+	@Test
+	public void sessionDoesNotSleepPastDeadline() throws Throwable {
+		final PollScheduler.PollSession session = new BackoffPollScheduler( 60000, 60000, 1.0, 0 ).start( 0 );
+		final long start = System.currentTimeMillis();
+		session.awaitNextPoll();
+		assertTrue( session.isExpired() );
+		assertTrue( System.currentTimeMillis() - start < 5000 );
+	}
+
+	@Test
+	public void invalidConfiguration() throws Throwable {
+		invalidConfiguration( 0, 100, 2.0, 0.2, "initial poll interval" );
+		invalidConfiguration( 100, 10, 2.0, 0.2, "max poll interval" );
+		invalidConfiguration( 100, 1000, 0.5, 0.2, "multiplier" );
+		invalidConfiguration( 100, 1000, 2.0, 1.5, "jitter" );
+	}
+
+	private void invalidConfiguration( final long initial, final long max, final double multiplier, final double jitter, final String errorMessage ) {
+		try {
+			new BackoffPollScheduler( initial, max, multiplier, jitter );
+			fail( "no error" );
+		}
+		catch ( final IllegalArgumentException e ) {
+			assertTrue( e.getLocalizedMessage(), e.getLocalizedMessage().contains( errorMessage ) );
+		}
+	}
+}
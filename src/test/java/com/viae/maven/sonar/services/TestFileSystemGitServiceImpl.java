@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link FileSystemGitServiceImpl}
+ */
+public class TestFileSystemGitServiceImpl {
+    private static final String COMMIT = "4b825dc642cb6eb9a060e54bf8d69288fbee4904";
+    private static final String OTHER_COMMIT = "e69de29bb2d1d6434b8b29ae775ad8c2e48c5391";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private final Runtime runtime = mock(Runtime.class);
+    private final Map<String, String> environment = new HashMap<>();
+    private File workspace;
+    private File gitDirectory;
+
+    @Before
+    public void setupFreshFixture() throws Throwable {
+        workspace = folder.newFolder("workspace");
+        gitDirectory = new File(workspace, ".git");
+        write(new File(gitDirectory, "HEAD"), "ref: refs/heads/feature/test");
+    }
+
+    @Test
+    public void branchOfHead() throws Throwable {
+        assertThat(service(workspace).getBranchName(runtime), equalTo("feature/test"));
+        verify(log, times(1)).info("set sonar.branch [feature/test]");
+        verifyZeroInteractions(runtime);
+    }
+
+    @Test
+    public void branchOfHeadFromSubModule() throws Throwable {
+        final File module = new File(workspace, "module/src");
+        module.mkdirs();
+        assertThat(service(module).getBranchName(runtime), equalTo("feature/test"));
+    }
+
+    @Test
+    public void branchOfWorktree() throws Throwable {
+        final File worktreeGitDirectory = new File(gitDirectory, "worktrees/other");
+        write(new File(worktreeGitDirectory, "HEAD"), "ref: refs/heads/other");
+        write(new File(worktreeGitDirectory, "commondir"), "../..");
+        final File worktree = folder.newFolder("other");
+        write(new File(worktree, ".git"), "gitdir: " + worktreeGitDirectory.getAbsolutePath());
+        assertThat(service(worktree).getBranchName(runtime), equalTo("other"));
+    }
+
+    @Test
+    public void detachedHeadOnCiServer() throws Throwable {
+        write(new File(gitDirectory, "HEAD"), COMMIT);
+        environment.put("GIT_BRANCH", "origin/feature/ci");
+        assertThat(service(workspace).getBranchName(runtime), equalTo("feature/ci"));
+    }
+
+    @Test
+    public void detachedHeadOnLooseRef() throws Throwable {
+        write(new File(gitDirectory, "HEAD"), COMMIT);
+        write(new File(gitDirectory, "refs/heads/feature/loose"), COMMIT);
+        write(new File(gitDirectory, "refs/heads/master"), OTHER_COMMIT);
+        assertThat(service(workspace).getBranchName(runtime), equalTo("feature/loose"));
+    }
+
+    @Test
+    public void detachedHeadOnPackedRef() throws Throwable {
+        write(new File(gitDirectory, "HEAD"), COMMIT);
+        write(new File(gitDirectory, "packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n"
+                + OTHER_COMMIT + " refs/heads/master\n"
+                + COMMIT + " refs/heads/feature/packed\n"
+                + COMMIT + " refs/tags/v1.0\n");
+        assertThat(service(workspace).getBranchName(runtime), equalTo("feature/packed"));
+    }
+
+    @Test
+    public void detachedHeadOnStalePackedRef() throws Throwable {
+        write(new File(gitDirectory, "HEAD"), COMMIT);
+        write(new File(gitDirectory, "packed-refs"), COMMIT + " refs/heads/feature/packed\n");
+        write(new File(gitDirectory, "refs/heads/feature/packed"), OTHER_COMMIT);
+        assertThat(service(workspace).getBranchName(runtime), equalTo(FileSystemGitServiceImpl.DETACHED_HEAD));
+    }
+
+    @Test
+    public void detachedHeadOnMultipleBranches() throws Throwable {
+        write(new File(gitDirectory, "HEAD"), COMMIT);
+        write(new File(gitDirectory, "refs/heads/one"), COMMIT);
+        write(new File(gitDirectory, "refs/heads/two"), COMMIT);
+        assertThat(service(workspace).getBranchName(runtime), equalTo(FileSystemGitServiceImpl.DETACHED_HEAD));
+    }
+
+    @Test
+    public void noGitDirectoryOnCiServer() throws Throwable {
+        environment.put("CI_COMMIT_REF_NAME", "feature/gitlab");
+        assertThat(service(folder.newFolder("export")).getBranchName(runtime), equalTo("feature/gitlab"));
+    }
+
+    @Test
+    public void gitDirVariable() throws Throwable {
+        environment.put("GIT_DIR", gitDirectory.getAbsolutePath());
+        assertThat(service(folder.newFolder("elsewhere")).getBranchName(runtime), equalTo("feature/test"));
+    }
+
+    @Test
+    public void ciBranchName() {
+        assertThat(new FileSystemGitServiceImpl(log, workspace, Collections.singletonMap("BRANCH_NAME", " refs/heads/develop ")).getCiBranchName(),
+                   equalTo("develop"));
+        assertThat(new FileSystemGitServiceImpl(log, workspace, Collections.emptyMap()).getCiBranchName(), equalTo(null));
+    }
+
+    private FileSystemGitServiceImpl service(final File workingDirectory) {
+        return new FileSystemGitServiceImpl(log, workingDirectory, environment);
+    }
+
+    private static void write(final File file, final String content) throws Throwable {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), (content + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
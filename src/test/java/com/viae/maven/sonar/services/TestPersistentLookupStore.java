@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link PersistentLookupStore}
+ */
+public class TestPersistentLookupStore {
+	private static final String NAMESPACE = "http://localhost:9000|user";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void entrySurvivesBetweenStores() throws Throwable {
+		final File directory = folder.newFolder();
+		store( directory ).put( "project-id:projectKey", "22295" );
+		assertThat( store( directory ).get( "project-id:projectKey" ), equalTo( "22295" ) );
+		assertThat( new PersistentLookupStore( directory, "http://other:9000|user", 1000, now::get ).get( "project-id:projectKey" ), nullValue() );
+	}
+
+	@Test
+	public void entryExpiresAfterTtl() throws Throwable {
+		final PersistentLookupStore store = store( folder.newFolder() );
+		store.put( "project-id:projectKey", "22295" );
+		now.set( 1001 );
+		assertThat( store.get( "project-id:projectKey" ), nullValue() );
+	}
+
+	@Test
+	public void invalidate() throws Throwable {
+		final PersistentLookupStore store = store( folder.newFolder() );
+		store.put( "project-id:projectKey", "22295" );
+		store.invalidate( "project-id:projectKey" );
+		assertThat( store.get( "project-id:projectKey" ), nullValue() );
+	}
+
+	@Test
+	public void entryOfOtherVersionIsIgnored() throws Throwable {
+		final File directory = folder.newFolder();
+		final PersistentLookupStore store = store( directory );
+		store.put( "project-id:projectKey", "22295" );
+		final File file = directory.listFiles( ( dir, name ) -> name.endsWith( ".properties" ) )[0];
+		final String content = new String( Files.readAllBytes( file.toPath() ), StandardCharsets.ISO_8859_1 );
+		Files.write( file.toPath(), content.replace( "=1|", "=0|" ).getBytes( StandardCharsets.ISO_8859_1 ) );
+		assertThat( store.get( "project-id:projectKey" ), nullValue() );
+	}
+
+	@Test
+	public void concurrentWritersKeepAllEntries() throws Throwable {
+		final File directory = folder.newFolder();
+		final List<Thread> writers = new ArrayList<>();
+		for ( int i = 0; i < 10; i++ ) {
+			final String key = "project-id:project" + i;
+			writers.add( new Thread( () -> store( directory ).put( key, key ) ) );
+		}
+		writers.forEach( Thread::start );
+		for ( final Thread writer : writers ) {
+			writer.join();
+		}
+		for ( int i = 0; i < 10; i++ ) {
+			assertThat( store( directory ).get( "project-id:project" + i ), equalTo( "project-id:project" + i ) );
+		}
+	}
+
+	@Test
+	public void unwritableDirectoryBehavesAsEmptyStore() throws Throwable {
+		final PersistentLookupStore store = store( folder.newFile() );
+		store.put( "project-id:projectKey", "22295" );
+		assertThat( store.get( "project-id:projectKey" ), nullValue() );
+	}
+
+	private PersistentLookupStore store( final File directory ) {
+		return new PersistentLookupStore( directory, NAMESPACE, 1000, now::get );
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link QualityGateEvaluator}
+ */
+public class TestQualityGateEvaluator {
+	private static final QualityGateDefinition QUALITY_GATE = new QualityGateDefinition( "2", "strict", Arrays.asList(
+			condition( "blocker_violations", "GT", null, "0" ),
+			condition( "coverage", "LT", "90", "80" ),
+			condition( "sqale_rating", "NE", null, "1" ),
+			condition( "new_duplicated_lines_density", "GT", "3", "5" ) ) );
+
+	@Test
+	public void evaluateMetGate() {
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( QUALITY_GATE, measures( "blocker_violations", "0",
+		                                                                                        "coverage", "95.5",
+		                                                                                        "sqale_rating", "1.0",
+		                                                                                        "new_duplicated_lines_density", "0.0" ) );
+
+		assertThat( status.getLevel(), equalTo( QualityGateStatus.LEVEL_OK ) );
+		assertThat( status.getConditions().size(), equalTo( 4 ) );
+		assertTrue( status.getConditions().stream().allMatch( c -> QualityGateStatus.LEVEL_OK.equals( c.getLevel() ) ) );
+	}
+
+	@Test
+	public void errorThresholdWinsOverWarningThreshold() {
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( QUALITY_GATE, measures( "coverage", "70.1", "new_duplicated_lines_density", "4" ) );
+
+		assertTrue( status.isError() );
+		assertThat( status.getConditions().get( 0 ).getMetric(), equalTo( "coverage" ) );
+		assertThat( status.getConditions().get( 0 ).getLevel(), equalTo( QualityGateStatus.LEVEL_ERROR ) );
+		assertThat( status.getConditions().get( 0 ).getActual(), equalTo( "70.1" ) );
+		assertThat( status.getConditions().get( 1 ).getLevel(), equalTo( QualityGateStatus.LEVEL_WARN ) );
+		assertThat( status.getConditions().get( 0 ).toString(),
+		            equalTo( "{\"metric\":\"coverage\",\"op\":\"LT\",\"warning\":\"90\",\"error\":\"80\",\"actual\":\"70.1\",\"level\":\"ERROR\"}" ) );
+	}
+
+	@Test
+	public void warningThreshold() {
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( QUALITY_GATE, measures( "coverage", "85" ) );
+
+		assertThat( status.getLevel(), equalTo( QualityGateStatus.LEVEL_WARN ) );
+		assertFalse( status.isError() );
+	}
+
+	@Test
+	public void conditionsWithoutMeasureAreLeftOut() {
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( QUALITY_GATE, measures( "blocker_violations", "2" ) );
+
+		assertTrue( status.isError() );
+		assertThat( status.getConditions().size(), equalTo( 1 ) );
+		assertThat( status.getConditions().get( 0 ).toString(), containsString( "\"metric\":\"blocker_violations\"" ) );
+	}
+
+	@Test
+	public void noLevelWithoutMeasures() {
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( QUALITY_GATE, Collections.emptyMap() );
+
+		assertFalse( status.exists() );
+		assertTrue( status.getConditions().isEmpty() );
+	}
+
+	@Test
+	public void evaluateOperators() {
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "GT", null, "10" ), "10.0" ), equalTo( QualityGateStatus.LEVEL_OK ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "GT", null, "10" ), "10.5" ), equalTo( QualityGateStatus.LEVEL_ERROR ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "LT", null, "10" ), "9" ), equalTo( QualityGateStatus.LEVEL_ERROR ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "EQ", null, "0" ), "0.0" ), equalTo( QualityGateStatus.LEVEL_ERROR ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "NE", null, "1" ), "1" ), equalTo( QualityGateStatus.LEVEL_OK ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "eq", null, "ERROR" ), "ERROR" ), equalTo( QualityGateStatus.LEVEL_ERROR ) );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "NE", null, "OK" ), "OK" ), equalTo( QualityGateStatus.LEVEL_OK ) );
+	}
+
+	@Test
+	public void conditionsThatCantBeEvaluated() {
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "GT", null, "10" ), "A" ), nullValue() );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "BETWEEN", null, "10" ), "11" ), nullValue() );
+		assertThat( QualityGateEvaluator.evaluate( condition( "m", "GT", "", null ), "11" ), nullValue() );
+		assertThat( QualityGateEvaluator.evaluate( new QualityGateDefinition( "1", "odd", Collections.singletonList( condition( "m", "GT", null, "10" ) ) ),
+		                                           measures( "m", "A" ) ).exists(), equalTo( false ) );
+	}
+
+	@Test
+	public void evaluateConditionOnItsPeriod() {
+		final QualityGateDefinition qualityGate = new QualityGateDefinition( "3", "new code", Collections.singletonList(
+				new QualityGateStatus.Condition( "new_coverage", "LT", "1", null, "80", null, null, null ) ) );
+
+		final QualityGateStatus status = QualityGateEvaluator.evaluate( qualityGate, measures( "new_coverage", "95",
+		                                                                                       "new_coverage@1", "64.5",
+		                                                                                       "new_coverage@2", "91" ) );
+
+		assertTrue( status.isError() );
+		assertThat( status.getConditions().get( 0 ).getActual(), equalTo( "64.5" ) );
+		assertFalse( QualityGateEvaluator.evaluate( qualityGate, measures( "new_coverage", "64.5" ) ).exists() );
+	}
+
+	private static QualityGateStatus.Condition condition( final String metric, final String op, final String warning, final String error ) {
+		return new QualityGateStatus.Condition( metric, op, null, warning, error, null, null, null );
+	}
+
+	private static Map<String, String> measures( final String... metricsAndValues ) {
+		final Map<String, String> measures = new HashMap<>();
+		for ( int i = 0; i < metricsAndValues.length; i += 2 ) {
+			measures.put( metricsAndValues[i], metricsAndValues[i + 1] );
+		}
+		return measures;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static com.viae.maven.sonar.services.SonarQualityGateResponses.WEBHOOK_OK;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link QualityGateWebhookReceiver}
+ */
+public class TestQualityGateWebhookReceiver {
+	private static final String DUMMY_PROJECT_KEY = "DUMMY_PROJECT_KEY";
+
+	private QualityGateWebhookReceiver receiver;
+
+	@Before
+	public void setupFreshFixture() throws Throwable {
+		receiver = QualityGateWebhookReceiver.start( mock( Log.class ), null, 0, QualityGateWebhookReceiver.DEFAULT_PATH, null );
+	}
+
+	@After
+	public void tearDown() {
+		receiver.close();
+	}
+
+	@Test
+	public void receivePayloadPostedBeforeWaiting() throws Throwable {
+		assertThat( post( WEBHOOK_OK ), equalTo( 200 ) );
+		assertThat( receiver.awaitPayload( DUMMY_PROJECT_KEY, 5 ), equalTo( WEBHOOK_OK ) );
+	}
+
+	@Test
+	public void receivePayloadPostedWhileWaiting() throws Throwable {
+		final Thread sonarStub = new Thread( () -> {
+			try {
+				Thread.sleep( 200 );
+				post( WEBHOOK_OK );
+			}
+			catch ( final Exception e ) {
+				throw new RuntimeException( e );
+			}
+		} );
+		sonarStub.start();
+		assertThat( receiver.awaitPayload( DUMMY_PROJECT_KEY, 5 ), equalTo( WEBHOOK_OK ) );
+		sonarStub.join();
+	}
+
+	@Test
+	public void noPayloadForOtherProject() throws Throwable {
+		post( WEBHOOK_OK );
+		try {
+			receiver.awaitPayload( "OTHER_PROJECT_KEY", 1 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "no sonar webhook call for OTHER_PROJECT_KEY arrived" ) );
+		}
+	}
+
+	@Test
+	public void ignorePayloadsOfOtherTasks() throws Throwable {
+		post( WEBHOOK_OK );
+		try {
+			receiver.awaitPayload( DUMMY_PROJECT_KEY, "AVdXRfEMJ6WpmFgMY3X0", 1 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "no sonar webhook call for DUMMY_PROJECT_KEY (task AVdXRfEMJ6WpmFgMY3X0) arrived" ) );
+		}
+		assertThat( receiver.awaitPayload( DUMMY_PROJECT_KEY, "AVdXRfEMJ6WpmFgMY3W_", 5 ), equalTo( WEBHOOK_OK ) );
+	}
+
+	@Test
+	public void rejectPayloadOfTheTaskForAnOtherProject() throws Throwable {
+		post( WEBHOOK_OK );
+		try {
+			receiver.awaitPayload( "OTHER_PROJECT_KEY", "AVdXRfEMJ6WpmFgMY3W_", 5 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "is for project DUMMY_PROJECT_KEY, not for OTHER_PROJECT_KEY" ) );
+		}
+	}
+
+	@Test
+	public void invalidPayload() throws Throwable {
+		assertThat( post( "{\"project\":{}}" ), equalTo( 400 ) );
+	}
+
+	@Test
+	public void receiverIsSharedPerPort() throws Throwable {
+		assertThat( QualityGateWebhookReceiver.start( mock( Log.class ), null, receiver.getPort(), QualityGateWebhookReceiver.DEFAULT_PATH, null ),
+		            sameInstance( receiver ) );
+	}
+
+	@Test
+	public void acceptOnlyCallsSignedWithTheSecret() throws Throwable {
+		receiver.close();
+		receiver = QualityGateWebhookReceiver.start( mock( Log.class ), null, 0, QualityGateWebhookReceiver.DEFAULT_PATH, "s3cr3t" );
+
+		assertThat( post( WEBHOOK_OK, null ), equalTo( 401 ) );
+		assertThat( post( WEBHOOK_OK, QualityGateWebhookReceiver.sign( "other", WEBHOOK_OK.getBytes( StandardCharsets.UTF_8 ) ) ), equalTo( 401 ) );
+		assertThat( post( WEBHOOK_OK, QualityGateWebhookReceiver.sign( "s3cr3t", WEBHOOK_OK.getBytes( StandardCharsets.UTF_8 ) ) ), equalTo( 200 ) );
+		assertThat( receiver.awaitPayload( DUMMY_PROJECT_KEY, 5 ), equalTo( WEBHOOK_OK ) );
+	}
+
+	@Test
+	public void signLikeSonar() {
+		assertThat( QualityGateWebhookReceiver.sign( "key", "The quick brown fox jumps over the lazy dog".getBytes( StandardCharsets.UTF_8 ) ),
+		            equalTo( "f7bc83f430538424b13298e6aa6fb143ef4d59a14946175997479dbc2d1a3cd8" ) );
+	}
+
+	@Test
+	public void failToBindAnUnknownAddress() throws Throwable {
+		try {
+			QualityGateWebhookReceiver.start( mock( Log.class ), "unknown.host.invalid", 0, QualityGateWebhookReceiver.DEFAULT_PATH, null );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "could not start sonar webhook listener on unknown.host.invalid:0" ) );
+		}
+	}
+
+	private int post( final String payload ) throws Exception {
+		return post( payload, null );
+	}
+
+	private int post( final String payload, final String signature ) throws Exception {
+		final URL url = new URL( String.format( "http://127.0.0.1:%s%s", receiver.getPort(), QualityGateWebhookReceiver.DEFAULT_PATH ) );
+		final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setDoOutput( true );
+		connection.setRequestMethod( "POST" );
+		connection.setRequestProperty( "Content-Type", "application/json" );
+		if ( signature != null ) {
+			connection.setRequestProperty( QualityGateWebhookReceiver.SIGNATURE_HEADER, signature );
+		}
+		try ( final OutputStream outputStream = connection.getOutputStream() ) {
+			outputStream.write( payload.getBytes( StandardCharsets.UTF_8 ) );
+		}
+		return connection.getResponseCode();
+	}
+}
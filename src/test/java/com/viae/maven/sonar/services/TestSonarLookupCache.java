@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.services;
+
+import org.junit.Test;
+import org.sonar.wsclient.SonarClient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link SonarLookupCache}
+ */
+public class TestSonarLookupCache {
+	private final AtomicLong now = new AtomicLong();
+	private final SonarLookupCache cache = new SonarLookupCache( 1000, now::get );
+
+	@Test
+	public void entryExpiresAfterTtl() {
+		cache.put( SonarLookupCache.projectIdKey( "projectKey" ), "22295" );
+		now.set( 1000 );
+		assertThat( cache.get( SonarLookupCache.projectIdKey( "projectKey" ) ), equalTo( "22295" ) );
+		now.set( 1001 );
+		assertThat( cache.get( SonarLookupCache.projectIdKey( "projectKey" ) ), nullValue() );
+	}
+
+	@Test
+	public void invalidate() {
+		cache.put( SonarLookupCache.qualityGateIdKey( "gate" ), "2" );
+		cache.invalidate( SonarLookupCache.qualityGateIdKey( "gate" ) );
+		assertThat( cache.get( SonarLookupCache.qualityGateIdKey( "gate" ) ), nullValue() );
+	}
+
+	@Test
+	public void putNullRemovesEntry() {
+		cache.put( SonarLookupCache.qualityGateIdKey( "gate" ), "2" );
+		cache.put( SonarLookupCache.qualityGateIdKey( "gate" ), null );
+		assertThat( cache.get( SonarLookupCache.qualityGateIdKey( "gate" ) ), nullValue() );
+	}
+
+	@Test
+	public void cacheIsSharedPerClient() {
+		final SonarClient client = mock( SonarClient.class );
+		assertThat( SonarLookupCache.forClient( client ), sameInstance( SonarLookupCache.forClient( client ) ) );
+		assertThat( SonarLookupCache.forClient( client ), not( sameInstance( SonarLookupCache.forClient( mock( SonarClient.class ) ) ) ) );
+	}
+}
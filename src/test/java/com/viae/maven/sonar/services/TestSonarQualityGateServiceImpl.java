@@ -4,7 +4,14 @@
 
 package com.viae.maven.sonar.services;
 
+import com.viae.maven.sonar.exceptions.CircuitOpenException;
 import com.viae.maven.sonar.exceptions.SonarQualityException;
+import com.viae.maven.sonar.http.CircuitBreaker;
+import com.viae.maven.sonar.http.RateLimiter;
+import com.viae.maven.sonar.http.RetryPolicy;
+import com.viae.maven.sonar.metrics.PluginMetrics;
+import com.viae.maven.sonar.model.QualityGateDefinition;
+import com.viae.maven.sonar.model.QualityGateStatus;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
@@ -12,10 +19,19 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sonar.wsclient.SonarClient;
+import org.sonar.wsclient.base.HttpException;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.viae.maven.sonar.services.SonarQualityGateResponses.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -30,6 +46,7 @@ public class TestSonarQualityGateServiceImpl {
 	public static final String QUALITY_GATE_QUERY_URL = "/api/resources/index?metrics=quality_gate_details&format=json&resource=%s";
 	private static final String DUMMY_PROJECT_KEY = "DUMMY_PROJECT_KEY";
 	private static final String DUMMY_BRANCH_NAME = "DUMMY_BRANCH_NAME";
+	private static final String CE_TASK_ID = "AVdXRfEMJ6WpmFgMY3W_";
 	private final ArgumentCaptor<Map> MAP_CAPTOR = ArgumentCaptor.forClass( Map.class );
 
 	private final SonarQualityGateService qualityGateService = spy( new SonarQualityGateServiceImpl( mock( Log.class ) ) );
@@ -246,6 +263,86 @@ public class TestSonarQualityGateServiceImpl {
 		assertTrue( String.valueOf( duration ), duration == 3 );
 	}
 
+	@Test
+	public void waitForComputeEngineTask() throws Throwable {
+		final String url = String.format( SonarQualityGateServiceImpl.CE_TASK_QUERY_URL, CE_TASK_ID );
+		doReturn( CE_TASK_IN_PROGRESS ).doReturn( CE_TASK_IN_PROGRESS ).doReturn( CE_TASK_SUCCESS ).when( client ).get( url );
+
+		qualityGateService().waitForComputeEngineTask( client, CE_TASK_ID, 10 );
+
+		verify( client, times( 3 ) ).get( url );
+	}
+
+	@Test
+	public void waitForFailedComputeEngineTask() throws Throwable {
+		doReturn( CE_TASK_FAILED ).when( client ).get( String.format( SonarQualityGateServiceImpl.CE_TASK_QUERY_URL, CE_TASK_ID ) );
+		try {
+			qualityGateService().waitForComputeEngineTask( client, CE_TASK_ID, 10 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "FAILED" ) );
+		}
+	}
+
+	@Test
+	public void waitForComputeEngineTaskAndIntervalExpires() throws Throwable {
+		doReturn( CE_TASK_IN_PROGRESS ).when( client ).get( String.format( SonarQualityGateServiceImpl.CE_TASK_QUERY_URL, CE_TASK_ID ) );
+		try {
+			qualityGateService().waitForComputeEngineTask( client, CE_TASK_ID, 0 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "is still IN_PROGRESS" ) );
+		}
+	}
+
+	@Test
+	public void validateQualityGateForTask() throws Throwable {
+		doReturn( CE_TASK_SUCCESS ).when( client ).get( String.format( SonarQualityGateServiceImpl.CE_TASK_QUERY_URL, CE_TASK_ID ) );
+		doReturn( CRITICAL_VIOLATIONS_TOO_HIGH ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, DUMMY_PROJECT_KEY ) );
+		try {
+			qualityGateService.validateQualityGateForTask( client, DUMMY_PROJECT_KEY, CE_TASK_ID, 10 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met" ) );
+		}
+	}
+
+	@Test
+	public void handleWebhookPayload() throws Throwable {
+		qualityGateService().handleWebhookPayload( WEBHOOK_OK );
+	}
+
+	@Test
+	public void handleWebhookPayloadWithQualityGateNotMet() throws Throwable {
+		try {
+			qualityGateService().handleWebhookPayload( WEBHOOK_ERROR );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "new_coverage" ) );
+		}
+	}
+
+	@Test
+	public void validateQualityGateReusesLastPollResponse() throws Throwable {
+		final LocalDateTime executionStart = LocalDateTime.now();
+		final String url = String.format( QUALITY_GATE_QUERY_URL, DUMMY_PROJECT_KEY );
+		doReturn( executionStart ).doReturn( executionStart.plusMinutes( 1 ) ).when( qualityGateService() ).getLastRunTimeStamp( client, DUMMY_PROJECT_KEY, null );
+		doReturn( CRITICAL_VIOLATIONS_TOO_HIGH ).when( client ).get( url );
+		try {
+			qualityGateService.validateQualityGate( client, DUMMY_PROJECT_KEY, null, executionStart, 10 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met" ) );
+		}
+		verify( client, times( 1 ) ).get( url );
+	}
+
 	@Test
 	public void getLastRunTimeStampWithNullSonarClient() throws Throwable {
 		try {
@@ -334,6 +431,378 @@ public class TestSonarQualityGateServiceImpl {
 		}
 	}
 
+	@Test
+	public void linkQualityGateToNewProjectOnceVisible() throws Throwable {
+		doReturn( "[]" ).doReturn( "[]" ).doReturn( "[]" ).doReturn( PROJECT_DETAIL_AS_LIST )
+		                .when( client ).get( "/api/projects/index?format=json&key=projectKey" );
+		doReturn( PROJECT_DETAIL_AS_LIST ).when( client ).get( "/api/projects?key=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+
+		final long start = System.currentTimeMillis();
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		assertThat( System.currentTimeMillis() - start < 10000, equalTo( true ) );
+		verify( client, times( 4 ) ).get( "/api/projects/index?format=json&key=projectKey" );
+		verify( client, times( 1 ) ).post( eq( "/api/qualitygates/select" ), MAP_CAPTOR.capture() );
+		assertThat( MAP_CAPTOR.getValue().get( "projectId" ), equalTo( 22295 ) );
+	}
+
+	@Test
+	public void lookupsAreCachedWithinSession() throws Throwable {
+		doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+
+		qualityGateService.getLastRunTimeStamp( client, "projectKey", "qualityGateName" );
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+		new SonarQualityGateServiceImpl( mock( Log.class ) ).linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		verify( client, times( 1 ) ).get( "/api/resources?format=json&resource=projectKey" );
+		verify( client, times( 1 ) ).get( "/api/qualitygates/show?name=qualityGateName" );
+		verify( client, times( 2 ) ).post( eq( "/api/qualitygates/select" ), anyMap() );
+	}
+
+	@Test
+	public void retryTransientServerErrors() throws Throwable {
+		qualityGateService.setRetryPolicy( new RetryPolicy( 3, 1 ) );
+		final HttpException unavailable = mock( HttpException.class );
+		doReturn( 503 ).when( unavailable ).status();
+		doThrow( unavailable ).doThrow( unavailable ).doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+
+		final LocalDateTime lastRun = qualityGateService.getLastRunTimeStamp( client, "projectKey", null );
+
+		assertThat( lastRun, equalTo( LocalDateTime.of( 2016, 5, 3, 14, 4, 45 ) ) );
+		verify( client, times( 3 ) ).get( "/api/resources?format=json&resource=projectKey" );
+		assertFalse( CircuitBreaker.forClient( client ).isOpen() );
+	}
+
+	@Test
+	public void failFastWhileTheCircuitBreakerIsOpen() throws Throwable {
+		qualityGateService.setRetryPolicy( RetryPolicy.NO_RETRIES );
+		final HttpException serverError = mock( HttpException.class );
+		doReturn( 500 ).when( serverError ).status();
+		doThrow( serverError ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		for ( int i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++ ) {
+			try {
+				qualityGateService.getLastRunTimeStamp( client, "projectKey", null );
+				fail( "no error" );
+			}
+			catch ( final SonarQualityException e ) {
+				assertThat( e.getCause(), equalTo( serverError ) );
+			}
+		}
+
+		try {
+			qualityGateService.getLastRunTimeStamp( client, "projectKey", null );
+			fail( "no error" );
+		}
+		catch ( final CircuitOpenException e ) {
+			assertTrue( e.retryInMillis() > 0 );
+		}
+		verify( client, times( CircuitBreaker.DEFAULT_FAILURE_THRESHOLD ) ).get( "/api/resources?format=json&resource=projectKey" );
+	}
+
+	@Test
+	public void holdEveryAttemptBackByTheRateLimiter() throws Throwable {
+		qualityGateService.setRetryPolicy( new RetryPolicy( 3, 1 ) );
+		qualityGateService.setRateLimiter( new RateLimiter( "sonar.service.test:9000", 20, 1, System::nanoTime ) );
+		final HttpException unavailable = mock( HttpException.class );
+		doReturn( 503 ).when( unavailable ).status();
+		doThrow( unavailable ).doThrow( unavailable ).doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		final long start = System.nanoTime();
+
+		qualityGateService.getLastRunTimeStamp( client, "projectKey", null );
+
+		verify( client, times( 3 ) ).get( "/api/resources?format=json&resource=projectKey" );
+		assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 100 ) );
+		assertThat( PluginMetrics.distribution( PluginMetrics.RATE_LIMITER_WAIT, "host", "sonar.service.test:9000" ).getCount(), equalTo( 2L ) );
+	}
+
+	@Test
+	public void staleCachedIdsAreLookedUpAgain() throws Throwable {
+		final SonarLookupCache cache = SonarLookupCache.forClient( client );
+		cache.put( SonarLookupCache.projectIdKey( "projectKey" ), "1" );
+		cache.put( SonarLookupCache.qualityGateIdKey( "qualityGateName" ), "1" );
+		final HttpException notFound = mock( HttpException.class );
+		doReturn( 404 ).when( notFound ).status();
+		doAnswer( invocation -> {
+			if ( "1".equals( String.valueOf( ( (Map) invocation.getArguments()[1] ).get( "gateId" ) ) ) ) {
+				throw notFound;
+			}
+			return "";
+		} ).when( client ).post( eq( "/api/qualitygates/select" ), anyMap() );
+		doReturn( PROJECT_DETAIL_AS_LIST ).when( client ).get( "/api/projects?key=projectKey" );
+		doReturn( PROJECT_DETAIL_AS_LIST ).when( client ).get( "/api/projects/index?format=json&key=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		verify( client, times( 2 ) ).post( eq( "/api/qualitygates/select" ), MAP_CAPTOR.capture() );
+		assertThat( MAP_CAPTOR.getValue().get( "gateId" ), equalTo( "2" ) );
+		assertThat( MAP_CAPTOR.getValue().get( "projectId" ), equalTo( 22295 ) );
+		assertThat( cache.get( SonarLookupCache.projectIdKey( "projectKey" ) ), equalTo( "22295" ) );
+		assertThat( cache.get( SonarLookupCache.qualityGateIdKey( "qualityGateName" ) ), equalTo( "2" ) );
+	}
+
+	@Test
+	public void skipLinkWhenProjectIsOnQualityGateAlready() throws Throwable {
+		PluginMetrics.reset();
+		doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+		doReturn( QUALITY_GATE_OF_PROJECT ).when( client ).get( "/api/qualitygates/get_by_project?project=projectKey" );
+
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		verify( client, never() ).post( eq( "/api/qualitygates/select" ), anyMap() );
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_SKIPPED ), equalTo( 1L ) );
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_APPLIED ), equalTo( 0L ) );
+	}
+
+	@Test
+	public void linkWhenProjectIsOnDefaultQualityGate() throws Throwable {
+		PluginMetrics.reset();
+		doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+		doReturn( DEFAULT_QUALITY_GATE_OF_PROJECT ).when( client ).get( "/api/qualitygates/get_by_project?project=projectKey" );
+
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		verify( client, times( 1 ) ).post( eq( "/api/qualitygates/select" ), anyMap() );
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_SKIPPED ), equalTo( 0L ) );
+		assertThat( PluginMetrics.count( PluginMetrics.QUALITY_GATE_LINK_APPLIED ), equalTo( 1L ) );
+	}
+
+	@Test
+	public void linkWhenTheQualityGateOfTheProjectIsUnknown() throws Throwable {
+		final HttpException notFound = mock( HttpException.class );
+		doReturn( 404 ).when( notFound ).status();
+		doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+		doThrow( notFound ).when( client ).get( "/api/qualitygates/get_by_project?project=projectKey" );
+
+		qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+
+		verify( client, times( 1 ) ).post( eq( "/api/qualitygates/select" ), anyMap() );
+	}
+
+	@Test
+	public void failWhenTheQualityGateOfTheProjectCannotBeRead() throws Throwable {
+		final HttpException forbidden = mock( HttpException.class );
+		doReturn( 403 ).when( forbidden ).status();
+		doReturn( PROJECT_DETAIL ).when( client ).get( "/api/resources?format=json&resource=projectKey" );
+		doReturn( QUALITY_GATE_DETAIL ).when( client ).get( "/api/qualitygates/show?name=qualityGateName" );
+		doThrow( forbidden ).when( client ).get( "/api/qualitygates/get_by_project?project=projectKey" );
+
+		try {
+			qualityGateService.linkQualityGateToProject( client, "projectKey", "qualityGateName" );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), equalTo( "Could not get the quality gate of project projectKey" ) );
+		}
+		verify( client, never() ).post( eq( "/api/qualitygates/select" ), anyMap() );
+	}
+
+	@Test
+	public void recordMetricsOfCallsAndVerdict() throws Throwable {
+		PluginMetrics.reset();
+		doReturn( SonarQualityGateResponses.CRITICAL_VIOLATIONS_TOO_HIGH ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, DUMMY_PROJECT_KEY ) );
+		try {
+			qualityGateService.validateQualityGate( client, DUMMY_PROJECT_KEY, null );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			// expected
+		}
+
+		assertThat( PluginMetrics.distribution( PluginMetrics.HTTP_CLIENT_REQUESTS,
+		                                        "method", "GET", "endpoint", "/api/resources/index", "status", PluginMetrics.STATUS_SUCCESS ).getCount(),
+		            equalTo( 1L ) );
+		assertThat( PluginMetrics.distribution( PluginMetrics.QUALITY_GATE_VERDICT, "mode", "last-run", "result", "failed" ).getCount(), equalTo( 1L ) );
+	}
+
+	@Test
+	public void waitForProjectToBeVisibleAndIntervalExpires() throws Throwable {
+		doReturn( "[]" ).when( client ).get( "/api/projects/index?format=json&key=projectKey" );
+		qualityGateService.setProjectReadyTimeout( 0 );
+		try {
+			qualityGateService().waitForProjectToBeVisible( client, "projectKey" );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "project projectKey did not become visible" ) );
+		}
+	}
+
+	@Test
+	public void validateQualityGatesReportsAllFailingProjects() throws Throwable {
+		doReturn( CRITICAL_VIOLATIONS_TOO_HIGH ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, "module-a" ) );
+		doReturn( OK ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, "module-b" ) );
+		doReturn( ERROR_WITHOUT_CONDITIONS ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, "module-c" ) );
+		try {
+			qualityGateService.validateQualityGates( client, Arrays.asList( "module-a", "module-b", "module-c", "module-a" ), null, null, -1, 2 );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 2 of 3 projects" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-a:" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "critical_violations" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-c:" ) );
+			assertThat( e.getLocalizedMessage(), not( containsString( "project module-b:" ) ) );
+		}
+		verify( client, times( 1 ) ).get( String.format( QUALITY_GATE_QUERY_URL, "module-a" ) );
+	}
+
+	@Test
+	public void getQualityGateStatusesInChunks() throws Throwable {
+		doReturn( "{\"measures\":[]}" ).when( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+		final List<String> projectKeys = new ArrayList<>();
+		for ( int i = 0; i < 2 * SonarQualityGateServiceImpl.MEASURES_SEARCH_CHUNK_SIZE + 1; i++ ) {
+			projectKeys.add( "module-" + i );
+		}
+
+		final Map<String, QualityGateStatus> statuses = qualityGateService.getQualityGateStatuses( client, projectKeys );
+
+		assertThat( new ArrayList<>( statuses.keySet() ), equalTo( projectKeys ) );
+		assertFalse( statuses.get( "module-0" ).exists() );
+		verify( client, times( 3 ) ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), MAP_CAPTOR.capture() );
+		assertThat( MAP_CAPTOR.getAllValues().get( 2 ).get( "projectKeys" ), equalTo( "module-" + 2 * SonarQualityGateServiceImpl.MEASURES_SEARCH_CHUNK_SIZE ) );
+		assertThat( MAP_CAPTOR.getAllValues().get( 0 ).get( "metricKeys" ), equalTo( "quality_gate_details,alert_status" ) );
+	}
+
+	@Test
+	public void getQualityGateStatusesDemultiplexesMeasures() throws Throwable {
+		doReturn( MEASURES_SEARCH ).when( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+
+		final Map<String, QualityGateStatus> statuses = qualityGateService.getQualityGateStatuses( client, Arrays.asList( "module-a", "module-b", "module-c" ) );
+
+		assertTrue( statuses.get( "module-a" ).isError() );
+		assertThat( statuses.get( "module-a" ).getConditions().get( 0 ).getMetric(), equalTo( "critical_violations" ) );
+		assertThat( statuses.get( "module-a" ).getConditions().get( 0 ).getActual(), equalTo( "3" ) );
+		assertThat( statuses.get( "module-b" ).getLevel(), equalTo( "OK" ) );
+		assertTrue( statuses.get( "module-c" ).isError() );
+		assertTrue( statuses.get( "module-c" ).getConditions().isEmpty() );
+	}
+
+	@Test
+	public void validateQualityGatesInBulkReportsAllFailingProjects() throws Throwable {
+		doReturn( MEASURES_SEARCH ).when( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+		try {
+			qualityGateService.validateQualityGatesInBulk( client, Arrays.asList( "module-a", "module-b", "module-c", "module-d" ) );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 3 of 4 projects" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-a:" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "critical_violations" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-c:" ) );
+			assertThat( e.getLocalizedMessage(), not( containsString( "project module-b:" ) ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-d:\nno measures found, the project is unknown to SONAR or has not been analysed yet" ) );
+		}
+		verify( client, times( 1 ) ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+		verify( client, never() ).get( anyString() );
+	}
+
+	@Test
+	public void evaluateQualityGatesLocally() throws Throwable {
+		doReturn( RAW_MEASURES_SEARCH ).when( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+
+		final Map<String, QualityGateStatus> statuses = qualityGateService.evaluateQualityGates( client,
+		                                                                                        Arrays.asList( "module-a", "module-b", "module-c", "module-d" ),
+		                                                                                        QualityGateDefinition.parse( STRICT_QUALITY_GATE ) );
+
+		assertTrue( statuses.get( "module-a" ).isError() );
+		assertThat( statuses.get( "module-a" ).getConditions().get( 1 ).getActual(), equalTo( "64.5" ) );
+		assertThat( statuses.get( "module-b" ).getLevel(), equalTo( "OK" ) );
+		assertTrue( statuses.get( "module-c" ).isError() );
+		assertFalse( statuses.get( "module-d" ).exists() );
+		verify( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), MAP_CAPTOR.capture() );
+		assertThat( MAP_CAPTOR.getValue().get( "metricKeys" ), equalTo( "blocker_violations,new_coverage" ) );
+	}
+
+	@Test
+	public void readMeasureOnEveryPeriod() throws Throwable {
+		final Map<String, String> measures = new HashMap<>();
+
+		SonarQualityGateServiceImpl.readMeasure( "{\"metric\":\"new_coverage\",\"periods\":[{\"index\":1,\"value\":\"64.5\"},{\"index\":3,\"value\":\"91.0\"}]}",
+		                                         measures );
+		SonarQualityGateServiceImpl.readMeasure( "{\"metric\":\"coverage\",\"value\":\"70.1\",\"periods\":[{\"index\":1,\"value\":\"-2.0\"}]}", measures );
+
+		assertThat( measures.get( "new_coverage@1" ), equalTo( "64.5" ) );
+		assertThat( measures.get( "new_coverage@3" ), equalTo( "91.0" ) );
+		assertFalse( measures.containsKey( "new_coverage" ) );
+		assertThat( measures.get( "coverage" ), equalTo( "70.1" ) );
+		assertThat( measures.get( "coverage@1" ), equalTo( "-2.0" ) );
+	}
+
+	@Test
+	public void validateQualityGatesLocallyFetchesTheDefinitionOnce() throws Throwable {
+		final String definitionUrl = String.format( SonarQualityGateServiceImpl.QUALITY_GATE_SHOW_URL, "strict" );
+		doReturn( STRICT_QUALITY_GATE ).when( client ).get( definitionUrl );
+		doReturn( RAW_MEASURES_SEARCH ).when( client ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+
+		qualityGateService.validateQualityGatesLocally( client, Collections.singletonList( "module-b" ), "strict" );
+		try {
+			qualityGateService.validateQualityGatesLocally( client, Arrays.asList( "module-a", "module-b", "module-c" ), "strict" );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 2 of 3 projects" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "\"metric\":\"new_coverage\"" ) );
+			assertThat( e.getLocalizedMessage(), not( containsString( "project module-b:" ) ) );
+		}
+		try {
+			qualityGateService.validateQualityGatesLocally( client, Arrays.asList( "module-b", "module-d" ), "strict" );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "quality gate not met for 1 of 2 projects" ) );
+			assertThat( e.getLocalizedMessage(), containsString( "project module-d:\nno measures found" ) );
+		}
+		verify( client, times( 1 ) ).get( definitionUrl );
+		verify( client, times( 3 ) ).get( eq( SonarQualityGateServiceImpl.MEASURES_SEARCH_URL ), anyMap() );
+	}
+
+	@Test
+	public void validateQualityGatesPollsProjectsConcurrently() throws Throwable {
+		final CountDownLatch bothPolling = new CountDownLatch( 2 );
+		doAnswer( invocation -> {
+			bothPolling.countDown();
+			assertTrue( "projects are not polled concurrently", bothPolling.await( 5, TimeUnit.SECONDS ) );
+			return OK;
+		} ).when( client ).get( anyString() );
+
+		qualityGateService.validateQualityGates( client, Arrays.asList( "module-a", "module-b" ), null, null, -1, 2 );
+
+		verify( client, times( 2 ) ).get( anyString() );
+	}
+
+	@Test
+	public void validateQualityGateAsyncCompletesWithVerdict() throws Throwable {
+		doReturn( CRITICAL_VIOLATIONS_TOO_HIGH ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, DUMMY_PROJECT_KEY ) );
+		try {
+			qualityGateService.validateQualityGateAsync( client, DUMMY_PROJECT_KEY, null, null, -1, Duration.ofSeconds( 5 ) ).join();
+			fail( "no error" );
+		}
+		catch ( final CompletionException e ) {
+			assertThat( e.getCause(), instanceOf( SonarQualityException.class ) );
+			assertThat( e.getCause().getLocalizedMessage(), containsString( "quality gate not met" ) );
+		}
+	}
+
+	@Test
+	public void validateQualityGateAsyncWaitsForNewRun() throws Throwable {
+		final LocalDateTime executionStart = LocalDateTime.now();
+		qualityGateService.setPollScheduler( new BackoffPollScheduler( 1, 1, 1.0, 0 ) );
+		doReturn( executionStart )
+				.doReturn( executionStart.plusHours( 1 ) )
+				.when( qualityGateService ).getLastRunTimeStamp( any( SonarClient.class ), anyString(), anyString() );
+		doReturn( OK ).when( client ).get( String.format( QUALITY_GATE_QUERY_URL, DUMMY_PROJECT_KEY ) );
+
+		qualityGateService.validateQualityGateAsync( client, DUMMY_PROJECT_KEY, "qualityGateName", executionStart, 10, Duration.ofSeconds( 5 ) ).join();
+
+		verify( qualityGateService, times( 2 ) ).getLastRunTimeStamp( any( SonarClient.class ), anyString(), anyString() );
+	}
+
 	private SonarQualityGateServiceImpl qualityGateService() {
 		return (SonarQualityGateServiceImpl) qualityGateService;
 	}
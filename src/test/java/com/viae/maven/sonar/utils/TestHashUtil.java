@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link HashUtil}
+ */
+public class TestHashUtil {
+
+	@Test
+	public void sha1Hex() {
+		assertThat( HashUtil.sha1Hex( "abc" ), equalTo( "a9993e364706816aba3e25717850c26c9cd0d89d" ) );
+		assertThat( HashUtil.sha1Hex( null ), equalTo( HashUtil.sha1Hex( "" ) ) );
+	}
+
+	@Test
+	public void hex() {
+		assertThat( HashUtil.hex( new byte[]{ 0, 15, 16, (byte) 255 } ), equalTo( "000f10ff" ) );
+	}
+}
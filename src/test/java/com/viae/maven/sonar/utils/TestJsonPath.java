@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JsonPath}
+ */
+public class TestJsonPath {
+	private static final String QUALITY_GATE_DETAILS = "[{\"id\":20035,\"key\":\"project\",\"msr\":[{\"key\":\"quality_gate_details\"," +
+			"\"data\":{\"level\":\"ERROR\",\"conditions\":[{\"metric\":\"critical_violations\",\"op\":\"LT\",\"period\":3}]}}]}]";
+
+	@Test
+	public void readNestedPathThroughArrays() throws Throwable {
+		assertThat( JsonPath.compile( "msr.data.level" ).read( QUALITY_GATE_DETAILS ), equalTo( "ERROR" ) );
+		assertThat( JsonPath.compile( "id" ).read( QUALITY_GATE_DETAILS ), equalTo( "20035" ) );
+		assertThat( JsonPath.compile( "msr.data.conditions" ).read( QUALITY_GATE_DETAILS ),
+		            equalTo( "[{\"metric\":\"critical_violations\",\"op\":\"LT\",\"period\":3}]" ) );
+	}
+
+	@Test
+	public void readPathThroughEmbeddedJsonString() throws Throwable {
+		final String json = "{\"msr\":[{\"data\":\"{\\\"level\\\":\\\"OK\\\",\\\"conditions\\\":[]}\"}]}";
+		assertThat( JsonPath.compile( "msr.data.level" ).read( json ), equalTo( "OK" ) );
+	}
+
+	@Test
+	public void readMissingValues() throws Throwable {
+		assertThat( JsonPath.compile( "msr.data.level" ).read( null ), nullValue() );
+		assertThat( JsonPath.compile( "msr.data.level" ).read( " " ), nullValue() );
+		assertThat( JsonPath.compile( "msr.data.level" ).read( "[]" ), nullValue() );
+		assertThat( JsonPath.compile( "msr.data.level" ).read( "{\"msr\":{}}" ), nullValue() );
+		assertThat( JsonPath.compile( "msr.data.level" ).read( "{\"msr\":5}" ), nullValue() );
+		assertThat( JsonPath.compile( "level" ).read( "{\"level\":null}" ), nullValue() );
+	}
+
+	@Test
+	public void readOnlyMatchesOnTheGivenLevel() throws Throwable {
+		final String json = "{\"task\":{\"nested\":{\"status\":\"FAILED\"},\"status\":\"SUCCESS\"},\"status\":\"IGNORED\"}";
+		assertThat( JsonPath.compile( "task.status" ).read( json ), equalTo( "SUCCESS" ) );
+	}
+
+	@Test
+	public void readScalars() throws Throwable {
+		final String json = "{ \"string\" : \"a\\\"b\\u0041\\n\", \"number\" : -1.5e3, \"true\" : true, \"false\" : false }";
+		assertThat( JsonPath.field( "string" ).read( json ), equalTo( "a\"bA\n" ) );
+		assertThat( JsonPath.field( "number" ).read( json ), equalTo( "-1.5e3" ) );
+		assertThat( JsonPath.field( "true" ).read( json ), equalTo( "true" ) );
+		assertThat( JsonPath.field( "false" ).read( json ), equalTo( "false" ) );
+	}
+
+	@Test
+	public void fieldWithDotsAndEscapes() throws Throwable {
+		assertThat( JsonPath.field( "sonar.branch" ).read( "{\"sonar.branch\":\"master\"}" ), equalTo( "master" ) );
+		assertThat( JsonPath.field( "a\"b" ).read( "{\"a\\\"b\":1}" ), equalTo( "1" ) );
+	}
+
+	@Test
+	public void readArray() throws Throwable {
+		final JsonPath path = JsonPath.compile( "values" );
+		assertThat( path.readArray( "{\"values\":[1, \"two\", {\"three\":[3]}, null,]}" ), equalTo( Arrays.asList( "1", "two", "{\"three\":[3]}", null ) ) );
+		assertThat( path.readArray( "{\"values\":{\"one\":1}}" ), equalTo( Collections.singletonList( "{\"one\":1}" ) ) );
+		assertThat( path.readArray( "{\"other\":[]}" ), equalTo( Collections.<String>emptyList() ) );
+		assertThat( path.readArray( null ), equalTo( Collections.<String>emptyList() ) );
+	}
+
+	@Test
+	public void trailingCommasAreIgnored() throws Throwable {
+		assertThat( JsonPath.compile( "data.conditions" ).read( "{\"data\":{\"level\":\"ERROR\",}}" ), nullValue() );
+	}
+
+	@Test
+	public void invalidJson() throws Throwable {
+		invalidJson( "{test = not a valid json", "Unexpected character (t) at position 1." );
+		invalidJson( "{\"other\":tru, \"level\":1}", "Unexpected character (,)" );
+		invalidJson( "{\"other\":\"never closed", "Unexpected token END OF FILE" );
+	}
+
+	@Test
+	public void blankPath() throws Throwable {
+		try {
+			JsonPath.compile( " " );
+			fail( "no error" );
+		}
+		catch ( final IllegalArgumentException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "json path" ) );
+		}
+	}
+
+	private void invalidJson( final String json, final String errorMessage ) {
+		try {
+			JsonPath.field( "level" ).read( json );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( errorMessage ) );
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link LogUtil}
+ */
+public class TestLogUtil {
+	private static final String PAYLOAD = "{\"level\":\"ERROR\",\"conditions\":[]}";
+
+	private final Log log = mock( Log.class );
+
+	@Test
+	public void truncate() {
+		assertThat( LogUtil.truncate( PAYLOAD, 100 ), equalTo( PAYLOAD ) );
+		assertThat( LogUtil.truncate( PAYLOAD, PAYLOAD.length() ), equalTo( PAYLOAD ) );
+		assertThat( LogUtil.truncate( PAYLOAD, 16 ), equalTo( "{\"level\":\"ERROR\"... (17 more characters, use -X to log them)" ) );
+		assertThat( LogUtil.truncate( PAYLOAD, 0 ), equalTo( "(33 characters, use -X to log them)" ) );
+		assertThat( LogUtil.truncate( "", 0 ), equalTo( "" ) );
+		assertThat( LogUtil.truncate( null, 10 ), nullValue() );
+	}
+
+	@Test
+	public void payloadTruncatedAtInfo() {
+		doReturn( true ).when( log ).isInfoEnabled();
+
+		LogUtil.payload( log, "Resulting quality gate state", PAYLOAD, 16 );
+
+		verify( log ).info( "Resulting quality gate state: {\"level\":\"ERROR\"... (17 more characters, use -X to log them)" );
+		verify( log, never() ).debug( anyString() );
+	}
+
+	@Test
+	public void payloadInFullAtDebug() {
+		doReturn( true ).when( log ).isInfoEnabled();
+		doReturn( true ).when( log ).isDebugEnabled();
+
+		LogUtil.payload( log, "Resulting quality gate state", PAYLOAD, 16 );
+
+		verify( log ).debug( "Resulting quality gate state: " + PAYLOAD );
+		verify( log, never() ).info( anyString() );
+	}
+
+	@Test
+	public void messageNotBuiltWhenLevelIsDisabled() {
+		LogUtil.info( log, () -> {
+			fail( "message built" );
+			return null;
+		} );
+		LogUtil.debug( log, () -> {
+			fail( "message built" );
+			return null;
+		} );
+		LogUtil.payload( log, "Resulting quality gate state", PAYLOAD, 16 );
+
+		verify( log, never() ).info( anyString() );
+		verify( log, never() ).debug( anyString() );
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 by VIAE (http///viae-it.com)
+ */
+
+package com.viae.maven.sonar.utils;
+
+import com.viae.maven.sonar.exceptions.SonarQualityException;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ReportTaskUtil}
+ */
+public class TestReportTaskUtil {
+
+	@Test
+	public void getCeTaskId() throws Throwable {
+		final File file = reportTaskFile( "projectKey=groupId:artifactId\n" +
+				                                  "serverUrl=http://localhost:9000\n" +
+				                                  "ceTaskId=AVdXRfEMJ6WpmFgMY3W_\n" +
+				                                  "ceTaskUrl=http://localhost:9000/api/ce/task?id=AVdXRfEMJ6WpmFgMY3W_\n" );
+		assertThat( ReportTaskUtil.getCeTaskId( file ), equalTo( "AVdXRfEMJ6WpmFgMY3W_" ) );
+	}
+
+	@Test
+	public void getCeTaskIdWithoutTaskId() throws Throwable {
+		final File file = reportTaskFile( "projectKey=groupId:artifactId\n" );
+		try {
+			ReportTaskUtil.getCeTaskId( file );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "no ceTaskId found" ) );
+		}
+	}
+
+	@Test
+	public void getCeTaskIdWithoutFile() throws Throwable {
+		try {
+			ReportTaskUtil.getCeTaskId( new File( "does-not-exist/report-task.txt" ) );
+			fail( "no error" );
+		}
+		catch ( final SonarQualityException e ) {
+			assertThat( e.getLocalizedMessage(), containsString( "not found" ) );
+		}
+	}
+
+	@Test
+	public void findCeTaskId() throws Throwable {
+		assertThat( ReportTaskUtil.findCeTaskId( reportTaskFile( "ceTaskId=AVdXRfEMJ6WpmFgMY3W_\n" ) ), equalTo( "AVdXRfEMJ6WpmFgMY3W_" ) );
+		assertThat( ReportTaskUtil.findCeTaskId( new File( "does-not-exist/report-task.txt" ) ), nullValue() );
+	}
+
+	private File reportTaskFile( final String content ) throws Throwable {
+		final File file = File.createTempFile( "report-task", ".txt" );
+		file.deleteOnExit();
+		Files.write( file.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+		return file;
+	}
+}